@@ -0,0 +1,145 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.checks.CheckList;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the benchmarks whose name matches the optional regular expression given as argument, with every visitor and every check,
+ * and the GC profiler. Without argument, all of them run but {@link SourceMembersBenchmark}, which does not go over the source
+ * files and needs a large heap. Then prints the throughput, the allocation per KB of source and the time per AST node of the benchmarks running
+ * over the source files.
+ */
+public final class CSharpBenchmarks {
+
+  private static final Set<String> SOURCE_FILES_BENCHMARKS = ImmutableSet.of(
+    LexerBenchmark.class.getName(),
+    ParserBenchmark.class.getName(),
+    VisitorBenchmark.class.getName(),
+    CheckBenchmark.class.getName(),
+    CpdTokenizerBenchmark.class.getName(),
+    WalkerBenchmark.class.getName(),
+    FileLinesBenchmark.class.getName(),
+    PreprocessorBenchmark.class.getName());
+
+  private CSharpBenchmarks() {
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    SourceFiles sources = new SourceFiles();
+    sources.load();
+
+    ChainedOptionsBuilder builder = new OptionsBuilder();
+    if (args.length > 0) {
+      builder.include(args[0]);
+    } else {
+      builder.include(CSharpBenchmarks.class.getPackage().getName() + ".*").exclude(SourceMembersBenchmark.class.getName());
+    }
+    Options options = builder
+      .param("visitor", visitorNames(sources))
+      .param("check", checkNames())
+      .addProfiler(GCProfiler.class)
+      .forks(1)
+      .warmupIterations(5)
+      .measurementIterations(5)
+      .build();
+    Collection<RunResult> results = new Runner(options).run();
+
+    double kilobytes = sources.getSizeInKilobytes();
+    long nodes = sources.getNodeCount();
+    System.out.println();
+    System.out.println(String.format("%d files, %.0f KB, %d AST nodes", sources.getFiles().size(), kilobytes, nodes));
+    System.out.println(String.format("%-70s %12s %12s %12s", "Benchmark", "KB/s", "Bytes/KB", "ns/node"));
+    for (RunResult result : results) {
+      BenchmarkParams params = result.getParams();
+      String benchmark = params.getBenchmark();
+      if (SOURCE_FILES_BENCHMARKS.contains(benchmark.substring(0, benchmark.lastIndexOf('.')))) {
+        double operationsPerSecond = result.getPrimaryResult().getScore();
+        System.out.println(String.format("%-70s %12.0f %12.0f %12.2f",
+          name(params),
+          operationsPerSecond * kilobytes,
+          allocatedBytesPerOperation(result) / kilobytes,
+          1e9 / (operationsPerSecond * nodes)));
+      }
+    }
+  }
+
+  private static String[] visitorNames(SourceFiles sources) {
+    List<String> names = Lists.newArrayList(VisitorBenchmark.WALK, VisitorBenchmark.TREE);
+    List<SquidAstVisitor<Grammar>> visitors = CSharpAstScanner.createBuiltInVisitors(sources.getConfiguration());
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      if (!VisitorBenchmark.isTreeVisitor(visitor)) {
+        names.add(VisitorBenchmark.nameOf(visitor, visitors));
+      }
+    }
+    return names.toArray(new String[names.size()]);
+  }
+
+  private static String[] checkNames() {
+    List<String> names = Lists.newArrayList(CheckBenchmark.NONE);
+    for (Class<?> check : CheckList.getChecks()) {
+      names.add(check.getSimpleName());
+    }
+    return names.toArray(new String[names.size()]);
+  }
+
+  private static String name(BenchmarkParams params) {
+    String benchmark = params.getBenchmark();
+    List<String> values = Lists.newArrayList();
+    for (String key : params.getParamsKeys()) {
+      values.add(key + "=" + params.getParam(key));
+    }
+    String simpleName = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+    return values.isEmpty() ? simpleName : (simpleName + " (" + Joiner.on(", ").join(values) + ")");
+  }
+
+  /**
+   * The name of the normalized allocation rate of the GC profiler depends on the version of JMH.
+   */
+  private static double allocatedBytesPerOperation(RunResult result) {
+    for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+      if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+        return entry.getValue().getScore();
+      }
+    }
+    return Double.NaN;
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.checks.CheckList;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.List;
+
+/**
+ * Runs the built-in visitors of {@link CSharpAstScanner} followed by one of the checks of {@link CheckList}, with its default
+ * parameters, over the parsed source files. "none" runs the built-in visitors only: the cost of a check is the difference with it.
+ * {@link CSharpBenchmarks} runs every check of the list, the default value of the parameter only benchmarks the built-in visitors.
+ */
+@State(Scope.Thread)
+public class CheckBenchmark {
+
+  static final String NONE = "none";
+
+  /**
+   * Simple class name of the check.
+   */
+  @Param({NONE})
+  public String check;
+
+  private SourceFiles sources;
+  private Class<?> checkClass;
+
+  @Setup
+  public void setUp(SourceFiles sources) {
+    this.sources = sources;
+    if (!NONE.equals(check)) {
+      checkClass = findCheck(check);
+    }
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public Object walk() throws Exception {
+    List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList(CSharpAstScanner.createBuiltInVisitors(sources.getConfiguration()));
+    if (checkClass != null) {
+      visitors.add((SquidAstVisitor<Grammar>) checkClass.newInstance());
+    }
+    return TreeWalker.walk(sources, visitors);
+  }
+
+  private static Class<?> findCheck(String simpleName) {
+    for (Class<?> candidate : CheckList.getChecks()) {
+      if (candidate.getSimpleName().equals(simpleName)) {
+        return candidate;
+      }
+    }
+    throw new IllegalArgumentException("Unknown check: " + simpleName);
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCPDTokenizer;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCpdLexer;
+import org.sonar.plugins.csharp.squid.cpd.CSharpTokenCache;
+
+import java.io.File;
+
+/**
+ * Tokenizes all the source files for the copy-paste detection, without tokens cached by a previous analysis: one after the
+ * other as the CPD engine does, or in parallel as the sensor does for the files it does not analyze again.
+ */
+@State(Scope.Thread)
+public class CpdTokenizerBenchmark {
+
+  @Param({"2", "4"})
+  public int threads;
+
+  private CSharpCPDTokenizer tokenizer;
+  private CSharpCpdLexer lexer;
+  private String encoding;
+
+  @Setup
+  public void setUp(SourceFiles sources) {
+    tokenizer = new CSharpCPDTokenizer(sources.getConfiguration().getCharset());
+    encoding = sources.getConfiguration().getCharset().name();
+    lexer = new CSharpCpdLexer(sources.getConfiguration().getCharset());
+  }
+
+  @Benchmark
+  public Object tokenize(SourceFiles sources) {
+    Tokens tokens = new Tokens();
+    for (File file : sources.getFiles()) {
+      tokenizer.tokenize(new SourceCode(new SourceCode.FileCodeLoader(file, encoding)), tokens);
+    }
+    return tokens;
+  }
+
+  @Benchmark
+  public Object tokenizeInParallel(SourceFiles sources) {
+    CSharpTokenCache tokenCache = new CSharpTokenCache();
+    lexer.tokenize(sources.getFiles(), threads, tokenCache);
+    return tokenCache;
+  }
+
+  @TearDown
+  public void tearDown() {
+    // The images of the tokens are interned in a static map
+    TokenEntry.clearImages();
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.metric.CSharpFileLinesVisitor;
+import com.sonar.csharp.squid.metric.FileProvider;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.resources.Resource;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.metrics.LinesVisitor;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Computes the lines of code and comment lines data of the source files, which the sensor saves for each line of each file.
+ * "lines" only counts the lines of the files, which the data visitor relies on: the cost of the data visitor, including its
+ * allocations, is the difference with "lines".
+ */
+@State(Scope.Thread)
+public class FileLinesBenchmark {
+
+  @Param({"lines", "data"})
+  public String visitors;
+
+  private SourceFiles sources;
+  private final FileLinesContextFactory fileLinesContextFactory = new FileLinesContextFactory() {
+    public FileLinesContext createFor(Resource resource) {
+      return new DiscardingFileLinesContext();
+    }
+  };
+  private final FileProvider fileProvider = new FileProvider(null) {
+    @Override
+    public org.sonar.api.resources.File fromIOFile(File file) {
+      return null;
+    }
+  };
+
+  @Setup
+  public void setUp(SourceFiles sources) {
+    this.sources = sources;
+  }
+
+  @Benchmark
+  public Object walk() {
+    List<SquidAstVisitor<Grammar>> visitorList = "lines".equals(visitors)
+      ? ImmutableList.<SquidAstVisitor<Grammar>>of(new LinesVisitor<Grammar>(CSharpMetric.LINES))
+      : ImmutableList.<SquidAstVisitor<Grammar>>of(new LinesVisitor<Grammar>(CSharpMetric.LINES),
+        new CSharpFileLinesVisitor(fileProvider, fileLinesContextFactory));
+    return TreeWalker.walk(sources, visitorList);
+  }
+
+  private static class DiscardingFileLinesContext implements FileLinesContext {
+
+    public void setIntValue(String metricKey, int line, int value) {
+      // The data are not saved
+    }
+
+    public Integer getIntValue(String metricKey, int line) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void setStringValue(String metricKey, int line, String value) {
+      throw new UnsupportedOperationException();
+    }
+
+    public String getStringValue(String metricKey, int line) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void save() {
+      // The data are not saved
+    }
+
+  }
+
+}
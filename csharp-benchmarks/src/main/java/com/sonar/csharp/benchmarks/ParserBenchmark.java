@@ -0,0 +1,84 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Parses the tokens of all the source files, lexed beforehand, with each of the memoization modes of the parser.
+ */
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+  /**
+   * "default" memoizes {@link CSharpConfiguration#DEFAULT_MEMOIZED_RULES}, "all" every rule and "none" no rule at all.
+   */
+  @Param({"default", "all", "none"})
+  public String memoization;
+
+  private Parser<Grammar> parser;
+  private List<List<Token>> tokens;
+
+  @Setup
+  public void setUp(SourceFiles sources) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    if ("all".equals(memoization)) {
+      conf.setMemoizeAllRules(true);
+    } else if ("none".equals(memoization)) {
+      conf.setMemoizedRules(ImmutableSet.<CSharpGrammar>of());
+    } else if (!"default".equals(memoization)) {
+      throw new IllegalArgumentException("Unknown memoization mode: " + memoization);
+    }
+    parser = CSharpParser.create(conf);
+
+    Lexer lexer = CSharpLexer.create(conf);
+    tokens = Lists.newArrayList();
+    for (File file : sources.getFiles()) {
+      tokens.add(lexer.lex(file));
+    }
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) {
+    for (List<Token> fileTokens : tokens) {
+      blackhole.consume(parser.parse(fileTokens));
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.sslr.impl.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lexes all the source files, either only skipping the conditional compilation directives, or evaluating them with a set of
+ * defined symbols. The last case produces the token streams of all the sets of symbols, with one lexer for each set.
+ */
+@State(Scope.Thread)
+public class PreprocessorBenchmark {
+
+  private static final Map<String, Set<String>> SYMBOLS = ImmutableMap.<String, Set<String>> of(
+    "none", ImmutableSet.<String> of(),
+    "debug", ImmutableSet.of("DEBUG", "TRACE"),
+    "release", ImmutableSet.of("TRACE", "NET_4_0"));
+
+  @Param({"skipped", "none", "debug", "release", "all-separately"})
+  public String directives;
+
+  private final List<Lexer> lexers = Lists.newArrayList();
+
+  @Setup
+  public void setUp() {
+    if ("all-separately".equals(directives)) {
+      for (Set<String> symbols : SYMBOLS.values()) {
+        lexers.add(createLexer(symbols));
+      }
+    } else {
+      lexers.add(createLexer(SYMBOLS.get(directives)));
+    }
+  }
+
+  private static Lexer createLexer(Set<String> symbols) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setPreprocessorSymbols(symbols);
+    return CSharpLexer.create(conf);
+  }
+
+  @Benchmark
+  public void lex(SourceFiles sources, Blackhole blackhole) {
+    for (File file : sources.getFiles()) {
+      for (Lexer lexer : lexers) {
+        blackhole.consume(lexer.lex(file));
+      }
+    }
+  }
+
+}
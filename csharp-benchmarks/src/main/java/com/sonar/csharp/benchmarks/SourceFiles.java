@@ -0,0 +1,127 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.Parser;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The C# files the benchmarks run over: the ones of the csharp-squid test resources which can be parsed.
+ * Another directory can be given through the "csharp.benchmarks.sources" system property.
+ */
+@State(Scope.Benchmark)
+public class SourceFiles {
+
+  public static final String DIRECTORY_PROPERTY = "csharp.benchmarks.sources";
+  private static final String DEFAULT_DIRECTORY = "../csharp-squid/src/test/resources";
+
+  private final CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+  private final Parser<Grammar> parser = CSharpParser.create(conf);
+
+  private List<File> files;
+  private List<AstNode> trees;
+  private long size;
+  private long nodes;
+
+  @Setup(Level.Trial)
+  public void load() {
+    File directory = new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+    if (!directory.isDirectory()) {
+      throw new IllegalStateException("The directory of the C# files to benchmark does not exist: " + directory.getAbsolutePath()
+        + ", set it with -D" + DIRECTORY_PROPERTY);
+    }
+
+    List<File> sortedFiles = Lists.newArrayList(FileUtils.listFiles(directory, new String[] {"cs"}, true));
+    Collections.sort(sortedFiles);
+
+    ImmutableList.Builder<File> parsedFiles = ImmutableList.builder();
+    ImmutableList.Builder<AstNode> parsedTrees = ImmutableList.builder();
+    size = 0;
+    nodes = 0;
+    for (File file : sortedFiles) {
+      try {
+        AstNode tree = parser.parse(file);
+        parsedTrees.add(tree);
+        parsedFiles.add(file);
+        nodes += countNodes(tree);
+        size += file.length();
+      } catch (RecognitionException e) {
+        // Only the files that can be parsed are benchmarked, so that every benchmark runs over the same source
+      }
+    }
+    files = parsedFiles.build();
+    trees = parsedTrees.build();
+  }
+
+  public CSharpConfiguration getConfiguration() {
+    return conf;
+  }
+
+  public Grammar getGrammar() {
+    return parser.getGrammar();
+  }
+
+  public List<File> getFiles() {
+    return files;
+  }
+
+  /**
+   * Trees of the files, in the same order, parsed with the default configuration.
+   */
+  public List<AstNode> getTrees() {
+    return trees;
+  }
+
+  public double getSizeInKilobytes() {
+    return size / 1024.0;
+  }
+
+  /**
+   * Number of nodes of all the trees, tokens included.
+   */
+  public long getNodeCount() {
+    return nodes;
+  }
+
+  private static long countNodes(AstNode node) {
+    long count = 1;
+    for (AstNode child : node.getChildren()) {
+      count += countNodes(child);
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.sonar.csharp.squid.api.source.SourceClass;
+import com.sonar.csharp.squid.api.source.SourceMember;
+import com.sonar.csharp.squid.api.source.SourceMembers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.indexer.QueryByParent;
+import org.sonar.squidbridge.indexer.QueryByType;
+import org.sonar.squidbridge.indexer.SquidIndex;
+
+/**
+ * Looks up the members of one file of a synthetic project, by walking the source code tree of the file with
+ * {@link SourceMembers} and by querying the whole index by parent, as the function complexity distribution of each file
+ * used to. Only runs when named, e.g. "java -jar benchmarks.jar SourceMembers".
+ */
+@State(Scope.Benchmark)
+// The largest project holds 5 million members, which take about 3 GB
+@Fork(jvmArgsAppend = "-Xmx4g")
+public class SourceMembersBenchmark {
+
+  private static final int CLASSES_PER_FILE = 5;
+  private static final int MEMBERS_PER_CLASS = 20;
+
+  @Param({"100", "1000", "10000", "50000"})
+  public int files;
+
+  private SquidIndex index;
+  private SourceFile file;
+
+  @Setup
+  public void setUp() {
+    index = new SquidIndex();
+    SourceProject project = new SourceProject("C# Project");
+    index.index(project);
+
+    for (int i = 0; i < files; i++) {
+      SourceFile sourceFile = new SourceFile("File" + i + ".cs");
+      project.addChild(sourceFile);
+      for (int j = 0; j < CLASSES_PER_FILE; j++) {
+        SourceClass sourceClass = new SourceClass("Namespace" + i + ".Class" + j);
+        sourceFile.addChild(sourceClass);
+        for (int k = 0; k < MEMBERS_PER_CLASS; k++) {
+          sourceClass.addChild(new SourceMember(sourceClass, "Method" + k + "()", k + 1));
+        }
+      }
+      if (i == files / 2) {
+        file = sourceFile;
+      }
+    }
+  }
+
+  @Benchmark
+  public Object walkTree() {
+    return SourceMembers.of(file);
+  }
+
+  @Benchmark
+  public Object queryIndex() {
+    return index.search(new QueryByParent(file), new QueryByType(SourceMember.class));
+  }
+
+}
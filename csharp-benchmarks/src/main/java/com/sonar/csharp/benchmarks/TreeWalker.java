@@ -0,0 +1,89 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.csharp.squid.scanner.CSharpAstWalker;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.ast.AstWalker;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.indexer.SquidIndex;
+
+import java.util.List;
+
+/**
+ * Runs visitors over the trees of the source files the same way as the C# scanner does, but without parsing them again.
+ */
+final class TreeWalker {
+
+  enum Walker {
+    /**
+     * The walker of SSLR, which looks up the visitors of each node in a map.
+     */
+    GENERIC,
+    /**
+     * The walker of the C# scanner, which looks them up in arrays indexed by the ordinal of the node type.
+     */
+    DISPATCHING
+  }
+
+  private TreeWalker() {
+  }
+
+  static SourceProject walk(SourceFiles sources, List<SquidAstVisitor<Grammar>> visitors) {
+    return walk(sources, visitors, Walker.DISPATCHING);
+  }
+
+  static SourceProject walk(SourceFiles sources, List<SquidAstVisitor<Grammar>> visitors, Walker walker) {
+    SourceProject project = new SourceProject("C# Project");
+    project.setSourceCodeIndexer(new SquidIndex());
+    SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<Grammar>(project);
+    context.setGrammar(sources.getGrammar());
+    context.setCommentAnalyser(CSharpAstScanner.createCommentAnalyser());
+
+    CSharpAstScanner.configureVisitors(sources.getConfiguration(), visitors);
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      visitor.setContext(context);
+      visitor.init();
+    }
+
+    AstWalker genericWalker = walker == Walker.GENERIC ? new AstWalker(visitors) : null;
+    CSharpAstWalker dispatchingWalker = walker == Walker.DISPATCHING ? new CSharpAstWalker(visitors) : null;
+    for (int i = 0; i < sources.getFiles().size(); i++) {
+      context.setFile(sources.getFiles().get(i), CSharpMetric.FILES);
+      AstNode tree = sources.getTrees().get(i);
+      if (genericWalker != null) {
+        genericWalker.walkAndVisit(tree);
+      } else {
+        dispatchingWalker.walkAndVisit(tree);
+      }
+    }
+
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      visitor.destroy();
+    }
+    return project;
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.csharp.squid.tree.CSharpMemberVisitor;
+import com.sonar.csharp.squid.tree.CSharpTypeVisitor;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.List;
+
+/**
+ * Runs each of the metric visitors of {@link CSharpAstScanner} over the parsed source files, after the tree visitors which
+ * build the types and members they rely on. "tree" only runs those tree visitors and "walk" walks the trees without any visitor:
+ * the cost of a metric visitor is the difference with "tree".
+ */
+@State(Scope.Thread)
+public class VisitorBenchmark {
+
+  static final String WALK = "walk";
+  static final String TREE = "tree";
+
+  /**
+   * Simple class name of the visitor, followed by "#n" for the n-th visitor of a class which is registered several times.
+   */
+  @Param({WALK, TREE, "LinesVisitor", "LinesOfCodeVisitor", "CommentsVisitor", "CounterVisitor", "CounterVisitor#2",
+    "CSharpComplexityVisitor", "CSharpPublicApiVisitor"})
+  public String visitor;
+
+  private SourceFiles sources;
+
+  @Setup
+  public void setUp(SourceFiles sources) {
+    this.sources = sources;
+    // Fails fast on an unknown name
+    createVisitors();
+  }
+
+  @Benchmark
+  public Object walk() {
+    return TreeWalker.walk(sources, createVisitors());
+  }
+
+  private List<SquidAstVisitor<Grammar>> createVisitors() {
+    if (WALK.equals(visitor)) {
+      return ImmutableList.of();
+    }
+
+    List<SquidAstVisitor<Grammar>> builtInVisitors = CSharpAstScanner.createBuiltInVisitors(sources.getConfiguration());
+    List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList();
+    SquidAstVisitor<Grammar> selected = null;
+    for (SquidAstVisitor<Grammar> builtInVisitor : builtInVisitors) {
+      if (isTreeVisitor(builtInVisitor)) {
+        visitors.add(builtInVisitor);
+      } else if (visitor.equals(nameOf(builtInVisitor, builtInVisitors))) {
+        selected = builtInVisitor;
+      }
+    }
+    if (selected != null) {
+      visitors.add(selected);
+    } else if (!TREE.equals(visitor)) {
+      throw new IllegalArgumentException("Unknown visitor: " + visitor);
+    }
+    return visitors;
+  }
+
+  static boolean isTreeVisitor(SquidAstVisitor<Grammar> visitor) {
+    return visitor instanceof CSharpTypeVisitor || visitor instanceof CSharpMemberVisitor;
+  }
+
+  static String nameOf(SquidAstVisitor<Grammar> visitor, List<SquidAstVisitor<Grammar>> visitors) {
+    String name = visitor.getClass().getSimpleName();
+    int rank = 1;
+    for (SquidAstVisitor<Grammar> other : visitors.subList(0, visitors.indexOf(visitor))) {
+      if (other.getClass() == visitor.getClass()) {
+        rank++;
+      }
+    }
+    return rank == 1 ? name : (name + "#" + rank);
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Benchmarks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.benchmarks;
+
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.sslr.api.Grammar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.List;
+
+/**
+ * Walks the parsed source files with all the built-in visitors, with the generic walker of SSLR or with the one of the C# scanner.
+ * The cost per AST node is printed by {@link CSharpBenchmarks}.
+ */
+@State(Scope.Thread)
+public class WalkerBenchmark {
+
+  @Param({"GENERIC", "DISPATCHING"})
+  public TreeWalker.Walker walker;
+
+  private SourceFiles sources;
+
+  @Setup
+  public void setUp(SourceFiles sources) {
+    this.sources = sources;
+  }
+
+  @Benchmark
+  public Object walk() {
+    List<SquidAstVisitor<Grammar>> visitors = CSharpAstScanner.createBuiltInVisitors(sources.getConfiguration());
+    return TreeWalker.walk(sources, visitors, walker);
+  }
+
+}
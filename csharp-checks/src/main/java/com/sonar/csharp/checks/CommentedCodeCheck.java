@@ -19,8 +19,9 @@
  */
 package com.sonar.csharp.checks;
 
-import com.google.common.collect.Sets;
-import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
@@ -29,15 +30,6 @@ import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.squidbridge.checks.SquidCheck;
-import org.sonar.squidbridge.recognizer.CodeRecognizer;
-import org.sonar.squidbridge.recognizer.ContainsDetector;
-import org.sonar.squidbridge.recognizer.Detector;
-import org.sonar.squidbridge.recognizer.EndWithDetector;
-import org.sonar.squidbridge.recognizer.KeywordsDetector;
-import org.sonar.squidbridge.recognizer.LanguageFootprint;
-
-import java.util.Set;
-import java.util.regex.Pattern;
 
 @Rule(
   key = "CommentedCode",
@@ -47,23 +39,31 @@ public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTok
 
   private static final double THRESHOLD = 0.94;
 
-  private final CodeRecognizer codeRecognizer = new CodeRecognizer(THRESHOLD, new CSharpRecognizer());
-  private final Pattern regexpToDivideStringByLine = Pattern.compile("(\r?\n)|(\r)");
-
-  private static class CSharpRecognizer implements LanguageFootprint {
-
-    public Set<Detector> getDetectors() {
-      Set<Detector> detectors = Sets.newHashSet();
+  private final CommentedCodeRecognizer recognizer = new CommentedCodeRecognizer(THRESHOLD);
 
-      detectors.add(new EndWithDetector(0.95, '}', ';', '{'));
-      detectors.add(new KeywordsDetector(0.7, "||", "&&"));
-      detectors.add(new KeywordsDetector(0.3, CSharpKeyword.keywordValues()));
-      detectors.add(new ContainsDetector(0.95, "++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"));
-
-      return detectors;
+  /**
+   * The cache loader runs on the thread asking for a verdict, and a recognizer must be used by a single thread.
+   */
+  private static final ThreadLocal<CommentedCodeRecognizer> LOADER_RECOGNIZER = new ThreadLocal<CommentedCodeRecognizer>() {
+    @Override
+    protected CommentedCodeRecognizer initialValue() {
+      return new CommentedCodeRecognizer(THRESHOLD);
     }
-
-  }
+  };
+
+  /**
+   * License headers and banners are repeated in many files, so the verdicts are kept for the whole analysis and shared by all the
+   * instances of the check, one per scanner thread. Keys are the texts given to the recognizer, without their leading and trailing
+   * blanks, which do not change the verdict. Values are the offsets of the first line of code, or -1.
+   */
+  private static final Cache<String, Integer> FIRST_LINES_OF_CODE = CacheBuilder.newBuilder()
+    .maximumSize(10000)
+    .build(new CacheLoader<String, Integer>() {
+      @Override
+      public Integer load(String text) {
+        return LOADER_RECOGNIZER.get().firstLineOfCode(text);
+      }
+    });
 
   public void visitToken(Token token) {
     Trivia previousTrivia = null;
@@ -82,13 +82,9 @@ public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTok
       }
 
     } else if (!trivia.getToken().getOriginalValue().startsWith("///")) {
-      String[] lines = regexpToDivideStringByLine.split(getContext().getCommentAnalyser().getContents(trivia.getToken().getOriginalValue()));
-
-      for (int lineOffset = 0; lineOffset < lines.length; lineOffset++) {
-        if (isCommentedCode(lines[lineOffset])) {
-          reportIssue(trivia.getToken().getLine() + lineOffset);
-          break;
-        }
+      int lineOffset = firstLineOfCode(getContext().getCommentAnalyser().getContents(trivia.getToken().getOriginalValue()));
+      if (lineOffset != -1) {
+        reportIssue(trivia.getToken().getLine() + lineOffset);
       }
     }
   }
@@ -103,7 +99,31 @@ public class CommentedCodeCheck extends SquidCheck<Grammar> implements AstAndTok
   }
 
   private boolean isCommentedCode(String line) {
-    return codeRecognizer.isLineOfCode(line);
+    if (line.indexOf('\n') != -1 || line.indexOf('\r') != -1) {
+      // Judged as a single line, which cannot be answered from the cache
+      return recognizer.isLineOfCode(line, 0, line.length());
+    }
+    return firstLineOfCode(line) == 0;
+  }
+
+  private int firstLineOfCode(String text) {
+    return FIRST_LINES_OF_CODE.getUnchecked(trimBlanks(text));
+  }
+
+  private static String trimBlanks(String text) {
+    int start = 0;
+    int end = text.length();
+    while (start < end && isBlank(text.charAt(start))) {
+      start++;
+    }
+    while (end > start && isBlank(text.charAt(end - 1))) {
+      end--;
+    }
+    return text.substring(start, end);
+  }
+
+  private static boolean isBlank(char c) {
+    return c == ' ' || c == '\t';
   }
 
   private boolean isInlineComment(Trivia trivia) {
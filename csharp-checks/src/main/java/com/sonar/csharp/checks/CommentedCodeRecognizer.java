@@ -0,0 +1,210 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.sonar.csharp.squid.api.CSharpKeyword;
+
+import java.util.Arrays;
+
+/**
+ * Tells whether a line of comment looks like C# code, with the same verdicts as a squid-bridge CodeRecognizer with an
+ * EndWithDetector(0.95, '}', ';', '{'), a KeywordsDetector(0.7, "||", "&&"), a KeywordsDetector(0.3, C# keywords) and a
+ * ContainsDetector(0.95, "++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"), but computed in a single scan
+ * over the characters of the line, without creating any substring nor array. Must therefore be used by a single thread.
+ */
+final class CommentedCodeRecognizer {
+
+  private static final double END_WITH_PROBABILITY = 0.95;
+  private static final double OPERATORS_PROBABILITY = 0.7;
+  private static final double KEYWORDS_PROBABILITY = 0.3;
+  private static final double CONTAINS_PROBABILITY = 0.95;
+
+  private static final String[] OPERATORS = {"||", "&&"};
+  private static final String[] CONTAINED = {"++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"};
+
+  /**
+   * Keywords indexed by their length.
+   */
+  private static final String[][] KEYWORDS_BY_LENGTH = byLength(CSharpKeyword.keywordValues());
+
+  private static final int HISTORY_SIZE = 8;
+
+  private final double threshold;
+
+  /**
+   * Last non-whitespace characters of the current line, for the ContainsDetector which ignores whitespace.
+   */
+  private final char[] history = new char[HISTORY_SIZE];
+
+  /**
+   * Number of non-whitespace characters of the current line seen at the end of the last match of each contained pattern.
+   */
+  private final int[] lastMatchEnds = new int[CONTAINED.length];
+
+  CommentedCodeRecognizer(double threshold) {
+    this.threshold = threshold;
+  }
+
+  /**
+   * Offset of the first line of the given text which looks like code, or -1. Lines are split on "\r\n", "\r" and "\n".
+   */
+  int firstLineOfCode(String text) {
+    int lineOffset = 0;
+    int start = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r') {
+        if (isLineOfCode(text, start, i)) {
+          return lineOffset;
+        }
+        if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+          i++;
+        }
+        start = i + 1;
+        lineOffset++;
+      }
+    }
+    return isLineOfCode(text, start, length) ? lineOffset : -1;
+  }
+
+  /**
+   * Whether the characters of the given text from start (inclusive) to end (exclusive) look like code. As with CodeRecognizer,
+   * line terminators in this range are not handled specially.
+   */
+  boolean isLineOfCode(String text, int start, int end) {
+    char lastSignificant = 0;
+    int operators = 0;
+    int keywords = 0;
+    int contained = 0;
+
+    int tokenStart = start;
+
+    // Only the characters of this line are read back from the history
+    int stripped = 0;
+    Arrays.fill(lastMatchEnds, 0);
+
+    for (int i = start; i <= end; i++) {
+      char c = i < end ? text.charAt(i) : ' ';
+
+      if (i == end || isKeywordDelimiter(c)) {
+        if (tokenStart < i) {
+          if (matchesAny(text, tokenStart, i, OPERATORS)) {
+            operators++;
+          } else if (isKeyword(text, tokenStart, i)) {
+            keywords++;
+          }
+        }
+        tokenStart = i + 1;
+      }
+      if (i == end) {
+        break;
+      }
+
+      boolean whitespace = Character.isWhitespace(c);
+      if (!whitespace && c != '*' && c != '/') {
+        lastSignificant = c;
+      }
+      if (!whitespace) {
+        history[stripped % HISTORY_SIZE] = c;
+        stripped++;
+        for (int p = 0; p < CONTAINED.length; p++) {
+          String pattern = CONTAINED[p];
+          int matchStart = stripped - pattern.length();
+          if (matchStart >= lastMatchEnds[p] && endsWith(history, stripped, pattern)) {
+            contained++;
+            lastMatchEnds[p] = stripped;
+          }
+        }
+      }
+    }
+
+    double recognition = 0;
+    recognition = combine(recognition, END_WITH_PROBABILITY, lastSignificant == '}' || lastSignificant == ';' || lastSignificant == '{' ? 1 : 0);
+    recognition = combine(recognition, OPERATORS_PROBABILITY, operators);
+    recognition = combine(recognition, KEYWORDS_PROBABILITY, keywords);
+    recognition = combine(recognition, CONTAINS_PROBABILITY, contained);
+    return recognition - threshold > 0;
+  }
+
+  /**
+   * Same computation as CodeRecognizer.recognition() for one more detector.
+   */
+  private static double combine(double recognition, double probability, int matches) {
+    double detectorRecognition = matches == 0 ? 0 : (1 - Math.pow(1 - probability, matches));
+    return 1 - (1 - recognition) * (1 - detectorRecognition);
+  }
+
+  /**
+   * Same delimiters as the KeywordsDetector.
+   */
+  private static boolean isKeywordDelimiter(char c) {
+    return c == ' ' || c == '\t' || c == '(' || c == ')' || c == ',' || c == '{' || c == '}';
+  }
+
+  private static boolean isKeyword(String text, int start, int end) {
+    int length = end - start;
+    return length < KEYWORDS_BY_LENGTH.length && matchesAny(text, start, end, KEYWORDS_BY_LENGTH[length]);
+  }
+
+  private static boolean matchesAny(String text, int start, int end, String[] candidates) {
+    int length = end - start;
+    for (String candidate : candidates) {
+      if (candidate.length() == length && text.regionMatches(start, candidate, 0, length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean endsWith(char[] history, int stripped, String pattern) {
+    int length = pattern.length();
+    if (length > stripped) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (history[(stripped - length + i) % HISTORY_SIZE] != pattern.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String[][] byLength(String[] words) {
+    int maxLength = 0;
+    for (String word : words) {
+      maxLength = Math.max(maxLength, word.length());
+    }
+    int[] counts = new int[maxLength + 1];
+    for (String word : words) {
+      counts[word.length()]++;
+    }
+    String[][] result = new String[maxLength + 1][];
+    for (int length = 0; length <= maxLength; length++) {
+      result[length] = new String[counts[length]];
+      counts[length] = 0;
+    }
+    for (String word : words) {
+      result[word.length()][counts[word.length()]++] = word;
+    }
+    return result;
+  }
+
+}
@@ -20,28 +20,72 @@
 package com.sonar.csharp.checks;
 
 import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.SymbolTable;
+import com.sonar.csharp.squid.SymbolTableAwareVisitor;
+import com.sonar.csharp.squid.SymbolTableProvider;
 import com.sonar.csharp.squid.api.CSharpPunctuator;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
 import org.sonar.squidbridge.checks.SquidCheck;
 import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 
 import javax.annotation.Nullable;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.Set;
 
 @Rule(
   key = "S127",
   priority = Priority.MAJOR)
 @BelongsToProfile(title = CheckList.SONAR_WAY_PROFILE, priority = Priority.MAJOR)
-public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
+public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> implements SymbolTableAwareVisitor {
+
+  /**
+   * Counters of the enclosing loops: symbols for the locals and parameters, names for the fields and member accesses.
+   */
+  private static class Counters {
+    private final BitSet symbols = new BitSet();
+    private final Set<String> names = Sets.newHashSet();
+
+    private void add(int symbol, String name) {
+      if (symbol == SymbolTable.NO_SYMBOL) {
+        names.add(name);
+      } else {
+        symbols.set(symbol);
+      }
+    }
+
+    private boolean contains(int symbol, String name) {
+      return symbol == SymbolTable.NO_SYMBOL ? names.contains(name) : symbols.get(symbol);
+    }
+
+    private void addAll(Counters counters) {
+      symbols.or(counters.symbols);
+      names.addAll(counters.names);
+    }
 
-  private Set<String> counters = Sets.newHashSet();
-  private Set<String> pendingCounters = Sets.newHashSet();
+    private void removeAll(Counters counters) {
+      symbols.andNot(counters.symbols);
+      names.removeAll(counters.names);
+    }
+
+    private boolean isEmpty() {
+      return symbols.isEmpty() && names.isEmpty();
+    }
+  }
+
+  private SymbolTableProvider symbolTableProvider;
+  private SymbolTable symbolTable;
+  private Counters counters = new Counters();
+  private Counters pendingCounters = new Counters();
+
+  public void setSymbolTableProvider(SymbolTableProvider symbolTableProvider) {
+    this.symbolTableProvider = symbolTableProvider;
+  }
 
   @Override
   public void init() {
@@ -56,7 +100,8 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
 
   @Override
   public void visitFile(@Nullable AstNode astNode) {
-    counters.clear();
+    symbolTable = symbolTableProvider.get(astNode);
+    counters = new Counters();
   }
 
   @Override
@@ -65,7 +110,7 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
       pendingCounters = getLoopsCounters(astNode);
     } else if (astNode.is(CSharpGrammar.STATEMENT)) {
       counters.addAll(pendingCounters);
-      pendingCounters = Collections.emptySet();
+      pendingCounters = new Counters();
     } else if (!counters.isEmpty() && isAssignmentOrUnaryExpression(astNode)) {
       check(astNode);
     }
@@ -75,24 +120,37 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
   public void leaveNode(AstNode astNode) {
     if (astNode.is(CSharpGrammar.FOR_STATEMENT)) {
       counters.removeAll(getLoopsCounters(astNode));
-      pendingCounters = Collections.emptySet();
+      pendingCounters = new Counters();
     }
   }
 
   private void check(AstNode node) {
-    String modifiedVar;
-
     if (node.is(CSharpGrammar.ASSIGNMENT)) {
-      modifiedVar = getAssignmentTargetName(node);
+      AstNode primaryExpression = getAssignmentTargetPrimaryExpression(node);
+
+      if (primaryExpression != null && primaryExpression.getFirstChild().is(CSharpGrammar.SIMPLE_NAME)) {
+        check(node, primaryExpression.getToken());
+      } else if (primaryExpression != null && primaryExpression.getFirstChild().is(CSharpGrammar.POSTFIX_EXPRESSION)) {
+        String modifiedVar = getPostfixExpressionName(primaryExpression.getFirstChild());
+        if (counters.contains(SymbolTable.NO_SYMBOL, modifiedVar)) {
+          reportIssue(node, modifiedVar);
+        }
+      }
     } else if (isPostExpression(node)) {
-      modifiedVar = getModifiedVarByPostfixOp(node);
+      AstNode parentPreviousNode = node.getParent().getPreviousAstNode();
+
+      if (parentPreviousNode.is(CSharpGrammar.SIMPLE_NAME)) {
+        check(node, parentPreviousNode.getToken());
+      }
     } else {
       // Prefix expr
-      modifiedVar = node.getNextAstNode().getTokenValue();
+      check(node, node.getNextAstNode().getToken());
     }
+  }
 
-    if (modifiedVar != null && counters.contains(modifiedVar)) {
-      reportIssue(node, modifiedVar);
+  private void check(AstNode node, Token modifiedVar) {
+    if (counters.contains(symbolTable.getSymbol(modifiedVar), modifiedVar.getValue())) {
+      reportIssue(node, modifiedVar.getValue());
     }
   }
 
@@ -100,8 +158,8 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
     getContext().createLineViolation(this, "Refactor the code to avoid updating the loop counter \"{0}\" within the loop body.", astNode, counter);
   }
 
-  private Set<String> getLoopsCounters(AstNode astNode) {
-    Set<String> counterList = Sets.newHashSet();
+  private Counters getLoopsCounters(AstNode astNode) {
+    Counters loopCounters = new Counters();
     AstNode initializer = astNode.getFirstChild(CSharpGrammar.FOR_INITIALIZER);
 
     if (initializer != null) {
@@ -109,64 +167,58 @@ public class ForLoopCounterChangedCheck extends SquidCheck<Grammar> {
 
       if (initializerChild.is(CSharpGrammar.LOCAL_VARIABLE_DECLARATION)) {
         for (AstNode varDeclarator : initializerChild.getChildren(CSharpGrammar.LOCAL_VARIABLE_DECLARATOR)) {
-          counterList.add(varDeclarator.getFirstChild(GenericTokenType.IDENTIFIER).getTokenValue());
+          addCounter(loopCounters, varDeclarator.getFirstChild(GenericTokenType.IDENTIFIER).getToken());
         }
       } else {
         // Statement expression list
         for (AstNode expr : initializerChild.getChildren(CSharpGrammar.EXPRESSION)) {
           AstNode exprChild = expr.getFirstChild();
           if (exprChild.is(CSharpGrammar.ASSIGNMENT)) {
-            counterList.add(getAssignmentTargetName(exprChild));
+            addAssignmentTarget(loopCounters, exprChild);
           }
         }
       }
     }
-    return counterList;
+    return loopCounters;
   }
 
-  private static String getAssignmentTargetName(AstNode assignment) {
-    AstNode primaryExpression = assignment.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET).getFirstChild(CSharpGrammar.PRIMARY_EXPRESSION);
-    String targetName = null;
+  private void addAssignmentTarget(Counters loopCounters, AstNode assignment) {
+    AstNode primaryExpression = getAssignmentTargetPrimaryExpression(assignment);
 
-    if (primaryExpression == null) {
-      return targetName;
+    if (primaryExpression != null && primaryExpression.getFirstChild().is(CSharpGrammar.SIMPLE_NAME)) {
+      addCounter(loopCounters, primaryExpression.getToken());
+    } else if (primaryExpression != null && primaryExpression.getFirstChild().is(CSharpGrammar.POSTFIX_EXPRESSION)) {
+      loopCounters.add(SymbolTable.NO_SYMBOL, getPostfixExpressionName(primaryExpression.getFirstChild()));
     }
+  }
 
-    AstNode primaryChild = primaryExpression.getFirstChild();
+  private void addCounter(Counters loopCounters, Token counter) {
+    loopCounters.add(symbolTable.getSymbol(counter), counter.getValue());
+  }
 
-    if (primaryChild.is(CSharpGrammar.SIMPLE_NAME)) {
-      targetName = primaryExpression.getTokenValue();
+  @Nullable
+  private static AstNode getAssignmentTargetPrimaryExpression(AstNode assignment) {
+    return assignment.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET).getFirstChild(CSharpGrammar.PRIMARY_EXPRESSION);
+  }
 
-    } else if (primaryChild.is(CSharpGrammar.POSTFIX_EXPRESSION)) {
-      StringBuilder builder = new StringBuilder();
+  private static String getPostfixExpressionName(AstNode postfixExpression) {
+    StringBuilder builder = new StringBuilder();
 
-      for (AstNode varMember : primaryChild.getChildren()) {
-        if (varMember.is(CSharpGrammar.SIMPLE_NAME)) {
-          builder.append(varMember.getTokenValue());
+    for (AstNode varMember : postfixExpression.getChildren()) {
+      if (varMember.is(CSharpGrammar.SIMPLE_NAME)) {
+        builder.append(varMember.getTokenValue());
 
-        } else if (varMember.is(CSharpGrammar.POST_MEMBER_ACCESS)) {
-          builder.append(varMember.getFirstChild(CSharpPunctuator.DOT).getTokenValue());
-          builder.append(varMember.getFirstChild(GenericTokenType.IDENTIFIER).getTokenValue());
+      } else if (varMember.is(CSharpGrammar.POST_MEMBER_ACCESS)) {
+        builder.append(varMember.getFirstChild(CSharpPunctuator.DOT).getTokenValue());
+        builder.append(varMember.getFirstChild(GenericTokenType.IDENTIFIER).getTokenValue());
 
-        } else if (varMember.is(CSharpGrammar.POST_ELEMENT_ACCESS)) {
-          builder.append(CSharpPunctuator.LBRACKET);
-          builder.append(varMember.getFirstChild(CSharpGrammar.ARGUMENT_LIST).getTokenValue());
-          builder.append(CSharpPunctuator.RBRACKET);
-        }
+      } else if (varMember.is(CSharpGrammar.POST_ELEMENT_ACCESS)) {
+        builder.append(CSharpPunctuator.LBRACKET);
+        builder.append(varMember.getFirstChild(CSharpGrammar.ARGUMENT_LIST).getTokenValue());
+        builder.append(CSharpPunctuator.RBRACKET);
       }
-      targetName = builder.toString();
-
-    }
-    return targetName;
-  }
-
-  private static String getModifiedVarByPostfixOp(AstNode unaryOperator) {
-    AstNode parentPreviousNode = unaryOperator.getParent().getPreviousAstNode();
-
-    if (parentPreviousNode.is(CSharpGrammar.SIMPLE_NAME)) {
-      return parentPreviousNode.getTokenValue();
     }
-    return null;
+    return builder.toString();
   }
 
   private static boolean isAssignmentOrUnaryExpression(AstNode node) {
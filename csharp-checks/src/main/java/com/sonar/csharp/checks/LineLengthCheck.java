@@ -19,27 +19,22 @@
  */
 package com.sonar.csharp.checks;
 
-import com.google.common.io.Files;
-import com.sonar.csharp.squid.CharsetAwareVisitor;
+import com.sonar.csharp.squid.SourceText;
+import com.sonar.csharp.squid.SourceTextAwareVisitor;
+import com.sonar.csharp.squid.SourceTextProvider;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.checks.SquidCheck;
-import org.sonar.api.utils.SonarException;
 import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
-
 @Rule(
   key = "LineLength",
   priority = Priority.MINOR)
 @BelongsToProfile(title = CheckList.SONAR_WAY_PROFILE, priority = Priority.MINOR)
-public class LineLengthCheck extends SquidCheck<Grammar> implements CharsetAwareVisitor {
+public class LineLengthCheck extends SquidCheck<Grammar> implements SourceTextAwareVisitor {
 
   private static final int DEFAULT_MAXIMUM_LINE_LENHGTH = 200;
 
@@ -48,33 +43,24 @@ public class LineLengthCheck extends SquidCheck<Grammar> implements CharsetAware
     defaultValue = "" + DEFAULT_MAXIMUM_LINE_LENHGTH)
   public int maximumLineLength = DEFAULT_MAXIMUM_LINE_LENHGTH;
 
-  private Charset charset;
+  private SourceTextProvider sourceTextProvider;
 
   @Override
   public void visitFile(AstNode astNode) {
-    File file = getContext().getFile();
-    List<String> lines = readLines(file);
-    for (int i = 0; i < lines.size(); i++) {
-      int length = lines.get(i).length();
+    SourceText text = sourceTextProvider.get(getContext().getFile());
+    for (int line = 1; line <= text.getLineCount(); line++) {
+      int length = text.getLineLength(line);
       if (length > maximumLineLength) {
         getContext().createLineViolation(
             this,
             "Split this " + length + " characters long line (which is greater than " + maximumLineLength + " authorized).",
-            i + 1);
+            line);
       }
     }
   }
 
-  private List<String> readLines(File file) {
-    try {
-      return Files.readLines(file, charset);
-    } catch (IOException e) {
-      throw new SonarException("Unable to read " + file, e);
-    }
-  }
-
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  public void setSourceTextProvider(SourceTextProvider sourceTextProvider) {
+    this.sourceTextProvider = sourceTextProvider;
   }
 
 }
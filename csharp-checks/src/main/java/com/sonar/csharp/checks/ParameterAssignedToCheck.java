@@ -19,181 +19,71 @@
  */
 package com.sonar.csharp.checks;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
-import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.SymbolTable;
+import com.sonar.csharp.squid.SymbolTableAwareVisitor;
+import com.sonar.csharp.squid.SymbolTableProvider;
 import com.sonar.csharp.squid.parser.CSharpGrammar;
 import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.Token;
 import org.sonar.squidbridge.checks.SquidCheck;
 import org.sonar.check.BelongsToProfile;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
+import org.sonar.sslr.grammar.GrammarRuleKey;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import javax.annotation.Nullable;
 
 @Rule(
   key = "ParameterAssignedTo",
   priority = Priority.MAJOR)
 @BelongsToProfile(title = CheckList.SONAR_WAY_PROFILE, priority = Priority.MAJOR)
-public class ParameterAssignedToCheck extends SquidCheck<Grammar> {
+public class ParameterAssignedToCheck extends SquidCheck<Grammar> implements SymbolTableAwareVisitor {
 
-  private final Set<String> parameters = Sets.newHashSet();
+  private static final GrammarRuleKey[] FUNCTIONS = {
+    CSharpGrammar.METHOD_DECLARATION,
+    CSharpGrammar.INDEXER_DECLARATION,
+    CSharpGrammar.SET_ACCESSOR_DECLARATION,
+    CSharpGrammar.OPERATOR_DECLARATION,
+    CSharpGrammar.LAMBDA_EXPRESSION,
+    CSharpGrammar.ANONYMOUS_METHOD_EXPRESSION};
 
-  @Override
-  public void init() {
-    subscribeTo(
-        CSharpGrammar.ASSIGNMENT,
+  private SymbolTableProvider symbolTableProvider;
+  private SymbolTable symbolTable;
 
-        CSharpGrammar.METHOD_DECLARATION,
-        CSharpGrammar.INDEXER_DECLARATION,
-        CSharpGrammar.SET_ACCESSOR_DECLARATION,
-        CSharpGrammar.OPERATOR_DECLARATION,
-        CSharpGrammar.LAMBDA_EXPRESSION,
-        CSharpGrammar.ANONYMOUS_METHOD_EXPRESSION);
+  public void setSymbolTableProvider(SymbolTableProvider symbolTableProvider) {
+    this.symbolTableProvider = symbolTableProvider;
   }
 
   @Override
-  public void visitNode(AstNode node) {
-    if (node.is(CSharpGrammar.ASSIGNMENT)) {
-      String target = getAssignmentTarget(node);
-
-      if (parameters.contains(target)) {
-        getContext().createLineViolation(this, "Remove this assignment to the method parameter '" + target + "'.", node);
-      }
-    } else {
-      parameters.addAll(getNonOutNorRefParameters(node));
-    }
+  public void init() {
+    subscribeTo(CSharpGrammar.ASSIGNMENT);
   }
 
   @Override
-  public void leaveNode(AstNode node) {
-    if (!node.is(CSharpGrammar.ASSIGNMENT)) {
-      parameters.removeAll(getNonOutNorRefParameters(node));
-    }
-  }
-
-  private static Set<String> getNonOutNorRefParameters(AstNode node) {
-    Set<String> parameters;
-
-    if (node.is(CSharpGrammar.METHOD_DECLARATION)) {
-      parameters = getNonOutNorRefMethodParameters(node);
-    } else if (node.is(CSharpGrammar.INDEXER_DECLARATION)) {
-      parameters = getNonOutNorRefIndexerParameters(node);
-    } else if (node.is(CSharpGrammar.SET_ACCESSOR_DECLARATION)) {
-      parameters = ImmutableSet.of("value");
-    } else if (node.is(CSharpGrammar.OPERATOR_DECLARATION)) {
-      parameters = getOperatorParameters(node);
-    } else if (node.is(CSharpGrammar.LAMBDA_EXPRESSION)) {
-      AstNode anonymousFunctionSignature = node.getFirstChild(CSharpGrammar.ANONYMOUS_FUNCTION_SIGNATURE);
-
-      if (anonymousFunctionSignature.hasDirectChildren(CSharpGrammar.EXPLICIT_ANONYMOUS_FUNCTION_SIGNATURE)) {
-        AstNode explicitAnonymousFunctionSignature = anonymousFunctionSignature.getFirstChild(CSharpGrammar.EXPLICIT_ANONYMOUS_FUNCTION_SIGNATURE);
-        parameters = getNonOutNorRefExplicitAnonymousFunctionParameters(explicitAnonymousFunctionSignature);
-      } else {
-        AstNode implicitAnonymousFunctionSignature = anonymousFunctionSignature.getFirstChild(CSharpGrammar.IMPLICIT_ANONYMOUS_FUNCTION_SIGNATURE);
-        parameters = getImplicitAnonymousFunctionParameters(implicitAnonymousFunctionSignature);
-      }
-    } else if (node.is(CSharpGrammar.ANONYMOUS_METHOD_EXPRESSION)) {
-      AstNode explicitAnonymousFunctionSignature = node.getFirstChild(CSharpGrammar.EXPLICIT_ANONYMOUS_FUNCTION_SIGNATURE);
-      parameters = explicitAnonymousFunctionSignature == null ?
-          (Set<String>) Collections.EMPTY_SET :
-          getNonOutNorRefExplicitAnonymousFunctionParameters(explicitAnonymousFunctionSignature);
-    } else {
-      throw new IllegalArgumentException("Unexpected node type: " + node.getType() + ", " + node);
-    }
-
-    return parameters;
-  }
-
-  private static Set<String> getImplicitAnonymousFunctionParameters(AstNode node) {
-    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-
-    for (AstNode identifier : node.getDescendants(GenericTokenType.IDENTIFIER)) {
-      builder.add(identifier.getTokenOriginalValue());
-    }
-
-    return builder.build();
-  }
-
-  private static Set<String> getNonOutNorRefExplicitAnonymousFunctionParameters(AstNode node) {
-    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-
-    for (AstNode explicitAnonymousFunctionParameter : node.getChildren(CSharpGrammar.EXPLICIT_ANONYMOUS_FUNCTION_PARAMETER)) {
-      if (!isOutOrRefExplicitAnonymousFunctionParameter(explicitAnonymousFunctionParameter)) {
-        builder.add(explicitAnonymousFunctionParameter.getFirstChild(GenericTokenType.IDENTIFIER).getTokenOriginalValue());
-      }
-    }
-
-    return builder.build();
-  }
-
-  private static boolean isOutOrRefExplicitAnonymousFunctionParameter(AstNode node) {
-    return node.hasDirectChildren(CSharpGrammar.ANONYMOUS_FUNCTION_PARAMETER_MODIFIER) &&
-      node.getFirstChild(CSharpGrammar.ANONYMOUS_FUNCTION_PARAMETER_MODIFIER).hasDirectChildren(CSharpKeyword.OUT, CSharpKeyword.REF);
-  }
-
-  private static Set<String> getNonOutNorRefMethodParameters(AstNode node) {
-    return node.hasDirectChildren(CSharpGrammar.FORMAL_PARAMETER_LIST) ?
-        getNonOutNorRefFormalParameters(node.getFirstChild(CSharpGrammar.FORMAL_PARAMETER_LIST)) :
-        Collections.EMPTY_SET;
-  }
-
-  private static Set<String> getNonOutNorRefIndexerParameters(AstNode node) {
-    return getNonOutNorRefFormalParameters(node.getFirstChild(CSharpGrammar.INDEXER_DECLARATOR).getFirstChild(CSharpGrammar.FORMAL_PARAMETER_LIST));
+  public void visitFile(@Nullable AstNode astNode) {
+    symbolTable = symbolTableProvider.get(astNode);
   }
 
-  private static Set<String> getNonOutNorRefFormalParameters(AstNode node) {
-    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+  @Override
+  public void visitNode(AstNode node) {
+    AstNode target = node.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET);
+    Token token = target.getToken();
 
-    Iterable<AstNode> fixedParameters = node
-        .select()
-        .children(CSharpGrammar.FIXED_PARAMETERS)
-        .children(CSharpGrammar.FIXED_PARAMETER);
+    if (token == target.getLastToken()) {
+      int symbol = symbolTable.getSymbol(token);
 
-    for (AstNode fixedParameter : fixedParameters) {
-      if (!isOutOrRefFixedParameter(fixedParameter)) {
-        builder.add(fixedParameter.getFirstChild(GenericTokenType.IDENTIFIER).getTokenOriginalValue());
+      if (symbol != SymbolTable.NO_SYMBOL && isNonOutNorRefParameter(symbol)) {
+        getContext().createLineViolation(this, "Remove this assignment to the method parameter '" + token.getOriginalValue() + "'.", node);
       }
     }
-
-    return builder.build();
   }
 
-  private static boolean isOutOrRefFixedParameter(AstNode node) {
-    return node.hasDirectChildren(CSharpGrammar.PARAMETER_MODIFIER) &&
-      node.getFirstChild(CSharpGrammar.PARAMETER_MODIFIER).hasDirectChildren(CSharpKeyword.OUT, CSharpKeyword.REF);
-  }
-
-  private static Set<String> getOperatorParameters(AstNode node) {
-    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-
-    List<AstNode> identifiers = node
-        .getFirstChild(CSharpGrammar.OPERATOR_DECLARATOR)
-        .getFirstChild(CSharpGrammar.UNARY_OPERATOR_DECLARATOR, CSharpGrammar.BINARY_OPERATOR_DECLARATOR, CSharpGrammar.CONVERSION_OPERATOR_DECLARATOR)
-        .getChildren(GenericTokenType.IDENTIFIER);
-
-    for (AstNode identifier : identifiers) {
-      builder.add(identifier.getTokenOriginalValue());
-    }
-
-    return builder.build();
-  }
-
-  private String getAssignmentTarget(AstNode node) {
-    return joinTokens(node.getFirstChild(CSharpGrammar.ASSIGNMENT_TARGET).getTokens());
-  }
-
-  private String joinTokens(List<Token> tokens) {
-    StringBuilder sb = new StringBuilder();
-    for (Token token : tokens) {
-      sb.append(token.getOriginalValue());
-    }
-    return sb.toString();
+  private boolean isNonOutNorRefParameter(int symbol) {
+    SymbolTable.Kind kind = symbolTable.getKind(symbol);
+    return (kind == SymbolTable.Kind.PARAMETER || kind == SymbolTable.Kind.LAMBDA_PARAMETER) &&
+      !symbolTable.isOutOrRef(symbol) &&
+      symbolTable.getScope(symbol).is(FUNCTIONS);
   }
 
 }
@@ -19,6 +19,8 @@
  */
 package com.sonar.csharp.checks;
 
+import com.sonar.csharp.squid.parser.ParseBudgetExceeded;
+import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
 import org.sonar.squidbridge.AstScannerExceptionHandler;
@@ -34,6 +36,20 @@ import java.io.StringWriter;
   priority = Priority.MAJOR)
 public class ParsingErrorCheck extends SquidCheck<Grammar> implements AstScannerExceptionHandler {
 
+  @Override
+  public void init() {
+    subscribeTo(ParseBudgetExceeded.values());
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    if (astNode.is(ParseBudgetExceeded.TIME_LIMIT)) {
+      getContext().createFileViolation(this, "Parse dropped, as it took too long.");
+    } else {
+      getContext().createFileViolation(this, "Parse skipped, as this file has too many tokens.");
+    }
+  }
+
   @Override
   public void processException(Exception e) {
     StringWriter exception = new StringWriter();
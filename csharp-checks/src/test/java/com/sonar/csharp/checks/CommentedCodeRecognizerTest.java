@@ -0,0 +1,114 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Checks
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.checks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.recognizer.CodeRecognizer;
+import org.sonar.squidbridge.recognizer.ContainsDetector;
+import org.sonar.squidbridge.recognizer.Detector;
+import org.sonar.squidbridge.recognizer.EndWithDetector;
+import org.sonar.squidbridge.recognizer.KeywordsDetector;
+import org.sonar.squidbridge.recognizer.LanguageFootprint;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CommentedCodeRecognizerTest {
+
+  private static final double THRESHOLD = 0.94;
+
+  private final CommentedCodeRecognizer recognizer = new CommentedCodeRecognizer(THRESHOLD);
+
+  private final CodeRecognizer codeRecognizer = new CodeRecognizer(THRESHOLD, new LanguageFootprint() {
+    public Set<Detector> getDetectors() {
+      return ImmutableSet.of(
+        new EndWithDetector(0.95, '}', ';', '{'),
+        new KeywordsDetector(0.7, "||", "&&"),
+        new KeywordsDetector(0.3, CSharpKeyword.keywordValues()),
+        new ContainsDetector(0.95, "++", "for(", "if(", "while(", "catch(", "switch(", "try{", "else{"));
+    }
+  });
+
+  @Test
+  public void should_give_the_same_verdicts_as_the_code_recognizer() throws Exception {
+    List<String> lines = Lists.newArrayList(
+      "",
+      "int i = 0;",
+      "i++ ;",
+      "i + ++ + ++ +",
+      "+++",
+      "++++",
+      "a || b && c",
+      "if (a) { b(); } else { c(); }",
+      "for ( ; ; )",
+      "switch (value)",
+      "try {",
+      "catch(Exception e)",
+      "while(true)",
+      "return;  */ //",
+      "public static void main",
+      "This is a sentence, not code.",
+      "\tint\ti\t=\t0;\t");
+    for (File file : FileUtils.listFiles(new File("src/test/resources"), new String[] {"cs"}, true)) {
+      lines.addAll(Files.readLines(file, Charsets.UTF_8));
+    }
+
+    int code = 0;
+    for (String line : lines) {
+      boolean expected = codeRecognizer.isLineOfCode(line);
+      assertThat(recognizer.isLineOfCode(line, 0, line.length())).as(line).isEqualTo(expected);
+      assertThat(recognizer.firstLineOfCode(line)).as(line).isEqualTo(expected ? 0 : -1);
+      if (expected) {
+        code++;
+      }
+    }
+    assertThat(code).isGreaterThan(100);
+  }
+
+  @Test
+  public void should_find_first_line_of_code() {
+    assertThat(recognizer.firstLineOfCode("first\r\nsecond\rint i = 0;\nreturn;")).isEqualTo(2);
+    assertThat(recognizer.firstLineOfCode("first\n\nsecond\n")).isEqualTo(-1);
+    assertThat(recognizer.firstLineOfCode("\r\n\r\nreturn;")).isEqualTo(2);
+  }
+
+  @Test
+  public void should_forget_the_previous_line() {
+    assertThat(recognizer.isLineOfCode("a long line ending with i++", 0, 27)).isTrue();
+    assertThat(recognizer.isLineOfCode("i++", 0, 3)).isTrue();
+  }
+
+  @Test
+  public void should_look_at_a_range_only() {
+    String text = "Some text: i++; more text";
+    assertThat(recognizer.isLineOfCode(text, 11, 15)).isTrue();
+    assertThat(recognizer.isLineOfCode(text, 0, 10)).isFalse();
+  }
+
+}
@@ -19,6 +19,9 @@
  */
 package com.sonar.csharp.checks;
 
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.csharp.squid.scanner.CSharpAstScanner;
 import org.sonar.squidbridge.checks.CheckMessagesVerifierRule;
 import org.junit.Rule;
@@ -26,6 +29,9 @@ import org.junit.Test;
 import org.sonar.squidbridge.api.SourceFile;
 
 import java.io.File;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
 
 public class ParsingErrorCheckTest {
 
@@ -40,4 +46,33 @@ public class ParsingErrorCheckTest {
       .next().atLine(8);
   }
 
+  @Test
+  public void should_report_files_over_parse_budget() {
+    File file = new File("src/test/resources/checks/comments.cs");
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTokenLimit(10);
+    SourceFile sourceFile = CSharpAstScanner.scanSingleFile(file, conf, new ParsingErrorCheck());
+
+    checkMessagesVerifier.verify(sourceFile.getCheckMessages())
+      .next().withMessage("Parse skipped, as this file has too many tokens.");
+
+    SourceFile parsedFile = CSharpAstScanner.scanSingleFile(file);
+    for (CSharpMetric metric : Arrays.asList(CSharpMetric.LINES, CSharpMetric.LINES_OF_CODE, CSharpMetric.COMMENT_LINES)) {
+      assertThat(sourceFile.getInt(metric)).as(metric.getName()).isEqualTo(parsedFile.getInt(metric)).isGreaterThan(0);
+    }
+    assertThat(sourceFile.getInt(CSharpMetric.CLASSES)).isEqualTo(0);
+  }
+
+  @Test
+  public void should_report_files_whose_parse_takes_too_long() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setParseTimeLimit(1);
+    SourceFile sourceFile = CSharpAstScanner.scanSingleFile(new File("src/test/resources/checks/fileLoc/big.cs"), conf, new ParsingErrorCheck());
+
+    checkMessagesVerifier.verify(sourceFile.getCheckMessages())
+      .next().withMessage("Parse dropped, as it took too long.");
+    assertThat(sourceFile.getInt(CSharpMetric.LINES_OF_CODE)).isGreaterThan(0);
+    assertThat(sourceFile.getInt(CSharpMetric.CLASSES)).isEqualTo(0);
+  }
+
 }
@@ -19,13 +19,44 @@
  */
 package com.sonar.csharp.squid;
 
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
 import org.sonar.squidbridge.api.SquidConfiguration;
 
+import javax.annotation.Nullable;
+
 import java.nio.charset.Charset;
+import java.util.Set;
 
 public class CSharpConfiguration extends SquidConfiguration {
 
+  /**
+   * Rules which are the most often re-applied at the same token after a backtrack, measured on the files of the parser and
+   * integration test resources. Memoizing only those ones is faster and allocates less than memoizing all the rules.
+   */
+  public static final Set<CSharpGrammar> DEFAULT_MEMOIZED_RULES = Sets.immutableEnumSet(
+      CSharpGrammar.TYPE,
+      CSharpGrammar.TYPE_PRIMARY,
+      CSharpGrammar.SIMPLE_TYPE,
+      CSharpGrammar.NULLABLE_TYPE,
+      CSharpGrammar.NAMESPACE_OR_TYPE_NAME,
+      CSharpGrammar.TYPE_NAME,
+      CSharpGrammar.TYPE_ARGUMENT_LIST,
+      CSharpGrammar.EXPRESSION,
+      CSharpGrammar.ASSIGNMENT,
+      CSharpGrammar.NON_ASSIGNMENT_EXPRESSION,
+      CSharpGrammar.UNARY_EXPRESSION,
+      CSharpGrammar.POSTFIX_EXPRESSION,
+      CSharpGrammar.PRIMARY_EXPRESSION);
+
   private boolean ignoreHeaderComments = true;
+  private boolean handWrittenLexer = true;
+  private boolean memoizeAllRules = false;
+  private Set<CSharpGrammar> memoizedRules = DEFAULT_MEMOIZED_RULES;
+  private Set<String> preprocessorSymbols;
+  private long parseTimeLimit = 0;
+  private int parseTokenLimit = 0;
+  private long stallThreshold = ProgressReport.DEFAULT_STALL_THRESHOLD;
 
   public CSharpConfiguration(Charset charset) {
     super(charset);
@@ -43,4 +74,89 @@ public class CSharpConfiguration extends SquidConfiguration {
     return ignoreHeaderComments;
   }
 
+  /**
+   * When set, the tokens are scanned by hand instead of by the regular expression channels of the lexer. Both produce
+   * the same tokens and trivia.
+   */
+  public void setHandWrittenLexer(boolean handWrittenLexer) {
+    this.handWrittenLexer = handWrittenLexer;
+  }
+
+  public boolean getHandWrittenLexer() {
+    return handWrittenLexer;
+  }
+
+  /**
+   * When set, the matches of every rule of the grammar are memoized, whatever {@link #getMemoizedRules()} contains.
+   */
+  public void setMemoizeAllRules(boolean memoizeAllRules) {
+    this.memoizeAllRules = memoizeAllRules;
+  }
+
+  public boolean getMemoizeAllRules() {
+    return memoizeAllRules;
+  }
+
+  /**
+   * Rules whose matches are memoized by the parser, see {@link #DEFAULT_MEMOIZED_RULES}.
+   */
+  public void setMemoizedRules(Set<CSharpGrammar> memoizedRules) {
+    this.memoizedRules = memoizedRules;
+  }
+
+  public Set<CSharpGrammar> getMemoizedRules() {
+    return memoizedRules;
+  }
+
+  /**
+   * Time in milliseconds above which the tree of a file is dropped once parsed, and only the metrics computed from its tokens
+   * are kept. The parse is not interrupted, so this spares the visitors and not the parser, see {@link #setParseTokenLimit(int)}
+   * for that. 0, the default, means no limit.
+   */
+  public void setParseTimeLimit(long parseTimeLimit) {
+    this.parseTimeLimit = parseTimeLimit;
+  }
+
+  public long getParseTimeLimit() {
+    return parseTimeLimit;
+  }
+
+  /**
+   * Number of tokens above which files are not parsed, and only the metrics computed from their tokens are kept.
+   * The memory used by the parser, its memoization table first, grows with this number: SSLR does not expose the size of that
+   * table, so this limit stands for a bound on it. 0, the default, means no limit.
+   */
+  public void setParseTokenLimit(int parseTokenLimit) {
+    this.parseTokenLimit = parseTokenLimit;
+  }
+
+  public int getParseTokenLimit() {
+    return parseTokenLimit;
+  }
+
+  /**
+   * Time in milliseconds after which the progress report warns about each file still being analyzed, 30 seconds by default.
+   * 0 means no warning.
+   */
+  public void setStallThreshold(long stallThreshold) {
+    this.stallThreshold = stallThreshold;
+  }
+
+  public long getStallThreshold() {
+    return stallThreshold;
+  }
+
+  /**
+   * When set, the lexers evaluate the conditional compilation directives with the given defined symbols, so that the code
+   * excluded from the build is not parsed. Otherwise, the directives are skipped and all the code is parsed.
+   */
+  public void setPreprocessorSymbols(@Nullable Set<String> preprocessorSymbols) {
+    this.preprocessorSymbols = preprocessorSymbols;
+  }
+
+  @Nullable
+  public Set<String> getPreprocessorSymbols() {
+    return preprocessorSymbols;
+  }
+
 }
@@ -19,14 +19,10 @@
  */
 package com.sonar.csharp.squid;
 
-import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import org.sonar.squidbridge.AstScanner;
-import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.SquidAstVisitorContextImpl;
 
-import javax.annotation.Nullable;
-
 import java.io.File;
 import java.util.Collection;
 import java.util.concurrent.TimeUnit;
@@ -34,37 +30,43 @@ import java.util.concurrent.TimeUnit;
 public class ProgressAstScanner extends AstScanner<Grammar> {
 
   private final ProgressReport progressReport;
+  private final ProgressVisitor progressVisitor;
 
   protected ProgressAstScanner(Builder builder) {
     super(builder);
     this.progressReport = builder.progressReport;
+    this.progressVisitor = builder.progressVisitor;
   }
 
   @Override
   public void scanFiles(Collection<File> files) {
-    progressReport.start(files.size());
+    progressReport.start(files);
+    progressVisitor.setFiles(files);
     super.scanFiles(files);
     progressReport.stop();
   }
 
   public static class Builder extends AstScanner.Builder<Grammar> {
 
-    private final ProgressReport progressReport = new ProgressReport("Report about progress of C# analyzer", TimeUnit.SECONDS.toMillis(10));
+    private final ProgressReport progressReport;
+    private final ProgressVisitor progressVisitor;
 
     public Builder(SquidAstVisitorContextImpl<Grammar> context) {
+      this(context, ProgressReport.DEFAULT_STALL_THRESHOLD);
+    }
+
+    /**
+     * @param stallThreshold see {@link CSharpConfiguration#setStallThreshold(long)}
+     */
+    public Builder(SquidAstVisitorContextImpl<Grammar> context, long stallThreshold) {
       super(context);
+      this.progressReport = new ProgressReport("Report about progress of C# analyzer", TimeUnit.SECONDS.toMillis(10), stallThreshold);
+      this.progressVisitor = new ProgressVisitor(progressReport);
     }
 
     @Override
     public AstScanner<Grammar> build() {
-      super.withSquidAstVisitor(new SquidAstVisitor<Grammar>() {
-
-        @Override
-        public void visitFile(@Nullable AstNode astNode) {
-          progressReport.nextFile(getContext().getFile());
-        }
-
-      });
+      super.withSquidAstVisitor(progressVisitor);
 
       return new ProgressAstScanner(this);
     }
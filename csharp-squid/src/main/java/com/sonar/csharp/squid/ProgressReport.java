@@ -23,58 +23,159 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Periodically logs how many files have been analyzed, at which rate and how long the remaining ones should take,
+ * and warns about the files whose analysis takes longer than a given threshold.
+ * Files are reported through {@link #fileStarted(File)} and {@link #fileFinished(File, int)}, which may be called
+ * concurrently by several scanners without locking.
+ */
 public class ProgressReport implements Runnable {
 
+  static final long DEFAULT_STALL_THRESHOLD = TimeUnit.SECONDS.toMillis(30);
+
   private final long period;
+  private final long stallThreshold;
   private final Logger logger;
-  private int files;
-  private int count;
-  private File currentFile;
   private final Thread thread;
 
-  public ProgressReport(String threadName, long period, Logger logger) {
+  private volatile int files;
+  private volatile long totalBytes;
+  private volatile long startNanos;
+  private volatile File lastFile;
+  private final AtomicInteger count = new AtomicInteger();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong lines = new AtomicLong();
+  private final ConcurrentMap<File, Long> filesInProgress = new ConcurrentHashMap<File, Long>();
+
+  public ProgressReport(String threadName, long period, long stallThreshold, Logger logger) {
     this.period = period;
+    this.stallThreshold = stallThreshold;
     this.logger = logger;
     thread = new Thread(this);
     thread.setName(threadName);
   }
 
+  public ProgressReport(String threadName, long period, Logger logger) {
+    this(threadName, period, DEFAULT_STALL_THRESHOLD, logger);
+  }
+
   public ProgressReport(String threadName, long period) {
     this(threadName, period, LoggerFactory.getLogger(ProgressReport.class));
   }
 
+  /**
+   * @param stallThreshold time in milliseconds after which a file still being analyzed is warned about, or 0 for no warning
+   */
+  public ProgressReport(String threadName, long period, long stallThreshold) {
+    this(threadName, period, stallThreshold, LoggerFactory.getLogger(ProgressReport.class));
+  }
+
   @Override
   public void run() {
     while (!Thread.interrupted()) {
       try {
         Thread.sleep(period);
-        synchronized (ProgressReport.this) {
-          logger.info(count + "/" + files + " files analyzed, last was " + currentFile.getAbsolutePath());
-        }
+        logProgress();
+        logStalledFiles();
       } catch (InterruptedException e) {
         thread.interrupt();
       }
     }
 
-    synchronized (ProgressReport.this) {
-      logger.info(files + "/" + files + " source files analyzed");
-    }
+    logger.info(files + "/" + files + " source files analyzed (" + rates(System.nanoTime() - startNanos) + ")");
   }
 
-  public synchronized void start(int files) {
-    this.files = files;
+  public void start(Collection<File> filesToAnalyze) {
+    long size = 0;
+    for (File file : filesToAnalyze) {
+      size += file.length();
+    }
+    this.files = filesToAnalyze.size();
+    this.totalBytes = size;
+    this.startNanos = System.nanoTime();
     logger.info(files + " source files to be analyzed");
     thread.start();
   }
 
-  public synchronized void nextFile(File currentFile) {
-    count++;
-    this.currentFile = currentFile;
+  public void fileStarted(File file) {
+    filesInProgress.put(file, System.nanoTime());
   }
 
-  public synchronized void stop() {
+  public void fileFinished(File file, int fileLines) {
+    filesInProgress.remove(file);
+    bytes.addAndGet(file.length());
+    lines.addAndGet(fileLines);
+    lastFile = file;
+    count.incrementAndGet();
+  }
+
+  public void stop() {
     thread.interrupt();
   }
 
+  private void logProgress() {
+    File file = lastFile;
+    int analyzed = count.get();
+    long elapsedNanos = System.nanoTime() - startNanos;
+
+    StringBuilder message = new StringBuilder();
+    message.append(analyzed).append('/').append(files).append(" files analyzed");
+    if (file != null) {
+      message.append(", last was ").append(file.getAbsolutePath());
+    }
+    message.append(" (").append(rates(elapsedNanos));
+    if (analyzed > 0) {
+      message.append(", about ").append(formatDuration(remainingMillis(analyzed, elapsedNanos))).append(" remaining");
+    }
+    message.append(')');
+    logger.info(message.toString());
+  }
+
+  private String rates(long elapsedNanos) {
+    double seconds = Math.max(elapsedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+    return String.format(Locale.ENGLISH, "%.1f files/s, %.1f KB/s, %.0f lines/s",
+      count.get() / seconds, bytes.get() / 1024.0 / seconds, lines.get() / seconds);
+  }
+
+  /**
+   * Estimated from the size of the remaining files when known, from their number otherwise.
+   */
+  private long remainingMillis(int analyzed, long elapsedNanos) {
+    long analyzedBytes = bytes.get();
+    double remainingRatio;
+    if (totalBytes > 0 && analyzedBytes > 0) {
+      remainingRatio = Math.max(totalBytes - analyzedBytes, 0) / (double) analyzedBytes;
+    } else {
+      remainingRatio = Math.max(files - analyzed, 0) / (double) analyzed;
+    }
+    return (long) (TimeUnit.NANOSECONDS.toMillis(elapsedNanos) * remainingRatio);
+  }
+
+  private void logStalledFiles() {
+    long now = System.nanoTime();
+    for (Map.Entry<File, Long> fileInProgress : filesInProgress.entrySet()) {
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - fileInProgress.getValue());
+      if (stallThreshold > 0 && elapsedMillis >= stallThreshold) {
+        logger.warn("Analysis of " + fileInProgress.getKey().getAbsolutePath() + " has been running for " + formatDuration(elapsedMillis));
+      }
+    }
+  }
+
+  private static String formatDuration(long millis) {
+    long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+    if (seconds < 60) {
+      return seconds + " s";
+    }
+    return seconds / 60 + " min " + seconds % 60 + " s";
+  }
+
 }
@@ -0,0 +1,71 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Reports the files of a scanner to a {@link ProgressReport}. Files are parsed before being visited, so a file is
+ * considered started as soon as the previous one has been left: scanners go through their files in the given order.
+ */
+public class ProgressVisitor extends SquidAstVisitor<Grammar> {
+
+  private final ProgressReport progressReport;
+  private Iterator<File> files = ImmutableList.<File>of().iterator();
+
+  public ProgressVisitor(ProgressReport progressReport) {
+    this.progressReport = progressReport;
+  }
+
+  /**
+   * Must be called before each scan with the files given to the scanner, unless the start of each file is reported to the
+   * progress report by whatever hands them out to the scanner.
+   */
+  public void setFiles(Collection<File> files) {
+    this.files = files.iterator();
+  }
+
+  @Override
+  public void init() {
+    startNextFile();
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    progressReport.fileFinished(getContext().getFile(), astNode == null ? 0 : astNode.getLastToken().getLine());
+    startNextFile();
+  }
+
+  private void startNextFile() {
+    if (files.hasNext()) {
+      progressReport.fileStarted(files.next());
+    }
+  }
+
+}
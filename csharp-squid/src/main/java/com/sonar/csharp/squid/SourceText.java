@@ -0,0 +1,280 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Decoded content of a source file, with the offsets of its lines, so that it can be scanned line by line without creating a
+ * String per line. Lines are split on "\r\n", "\r" and "\n", as {@link Files#readLines(File, Charset)} does, and do not include
+ * their terminator.
+ * <p>
+ * The text of the tokens of the file, and of the nodes of its tree, can be had as views over the decoded characters, located from the
+ * line and column of the tokens, which are compared and hashed with {@link #contentEquals(CharSequence, CharSequence)} and
+ * {@link #hash(CharSequence, int, int)} without being copied into Strings.
+ * </p>
+ */
+public final class SourceText implements CharSequence {
+
+  private final File file;
+  private final char[] chars;
+  private final int length;
+  private final int[] lineStarts;
+  private final int[] lineEnds;
+  private final int lineCount;
+
+  private SourceText(File file, char[] chars, int length) {
+    this.file = file;
+    this.chars = chars;
+    this.length = length;
+
+    int[] starts = new int[16];
+    int[] ends = new int[16];
+    int lines = 0;
+    int start = 0;
+    int i = 0;
+    while (i < length) {
+      char c = chars[i];
+      if (c == '\n' || c == '\r') {
+        if (lines == starts.length) {
+          starts = Arrays.copyOf(starts, lines * 2);
+          ends = Arrays.copyOf(ends, lines * 2);
+        }
+        starts[lines] = start;
+        ends[lines] = i;
+        lines++;
+        i += c == '\r' && i + 1 < length && chars[i + 1] == '\n' ? 2 : 1;
+        start = i;
+      } else {
+        i++;
+      }
+    }
+    if (start < length) {
+      if (lines == starts.length) {
+        starts = Arrays.copyOf(starts, lines + 1);
+        ends = Arrays.copyOf(ends, lines + 1);
+      }
+      starts[lines] = start;
+      ends[lines] = length;
+      lines++;
+    }
+    this.lineStarts = starts;
+    this.lineEnds = ends;
+    this.lineCount = lines;
+  }
+
+  public static SourceText read(File file, Charset charset) {
+    byte[] bytes;
+    try {
+      bytes = Files.toByteArray(file);
+    } catch (IOException e) {
+      throw new SonarException("Unable to read " + file, e);
+    }
+    CharBuffer decoded = charset.decode(ByteBuffer.wrap(bytes));
+    return new SourceText(file, decoded.array(), decoded.limit());
+  }
+
+  public static SourceText of(String content) {
+    return new SourceText(null, content.toCharArray(), content.length());
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public char charAt(int index) {
+    Preconditions.checkElementIndex(index, length);
+    return chars[index];
+  }
+
+  /**
+   * Offset of the first occurrence of the given character from the given offset, or -1.
+   */
+  public int indexOf(char c, int fromIndex) {
+    for (int i = Math.max(fromIndex, 0); i < length; i++) {
+      if (chars[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns a view of the given range of the text, which does not copy it.
+   */
+  public CharSequence subSequence(int start, int end) {
+    Preconditions.checkPositionIndexes(start, end, length);
+    return new View(chars, start, end);
+  }
+
+  /**
+   * Offset of the first character of the given token, which must have been lexed from this text.
+   */
+  public int getOffset(Token token) {
+    return getLineStart(token.getLine()) + token.getColumn();
+  }
+
+  public CharSequence getText(Token token) {
+    int offset = getOffset(token);
+    return subSequence(offset, offset + token.getOriginalValue().length());
+  }
+
+  /**
+   * Text of the given node as written in the file, from its first token to its last one, including the whitespaces and comments in
+   * between. Empty for a node without token.
+   */
+  public CharSequence getText(AstNode node) {
+    if (!node.hasToken()) {
+      return subSequence(0, 0);
+    }
+    Token lastToken = node.getLastToken();
+    return subSequence(getOffset(node.getToken()), getOffset(lastToken) + lastToken.getOriginalValue().length());
+  }
+
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Offset of the first character of the given line, starting at 1.
+   */
+  public int getLineStart(int line) {
+    Preconditions.checkElementIndex(line - 1, lineCount);
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * Offset right after the last character of the given line, starting at 1, its terminator excluded.
+   */
+  public int getLineEnd(int line) {
+    Preconditions.checkElementIndex(line - 1, lineCount);
+    return lineEnds[line - 1];
+  }
+
+  public int getLineLength(int line) {
+    return getLineEnd(line) - getLineStart(line);
+  }
+
+  /**
+   * Line, starting at 1, of the character at the given offset. A line terminator belongs to the line it ends.
+   */
+  public int getLineOf(int index) {
+    Preconditions.checkElementIndex(index, length);
+    int position = Arrays.binarySearch(lineStarts, 0, lineCount, index);
+    return position >= 0 ? (position + 1) : -position - 1;
+  }
+
+  @Override
+  public String toString() {
+    return new String(chars, 0, length);
+  }
+
+  /**
+   * Hash of the given range of the text, which is the hash code of the String with the same content.
+   */
+  public static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return hash;
+  }
+
+  public static boolean contentEquals(CharSequence text, CharSequence other) {
+    return regionEquals(text, 0, text.length(), other);
+  }
+
+  /**
+   * Tells whether the given range of the text has the same characters as the other text.
+   */
+  public static boolean regionEquals(CharSequence text, int start, int end, CharSequence other) {
+    if (end - start != other.length()) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) != other.charAt(i - start)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Range of the characters of a text, equal to the other views with the same content.
+   */
+  private static final class View implements CharSequence {
+
+    private final char[] chars;
+    private final int start;
+    private final int end;
+
+    private View(char[] chars, int start, int end) {
+      this.chars = chars;
+      this.start = start;
+      this.end = end;
+    }
+
+    public int length() {
+      return end - start;
+    }
+
+    public char charAt(int index) {
+      Preconditions.checkElementIndex(index, end - start);
+      return chars[start + index];
+    }
+
+    public CharSequence subSequence(int from, int to) {
+      Preconditions.checkPositionIndexes(from, to, end - start);
+      return new View(chars, start + from, start + to);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof View && contentEquals(this, (View) obj);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash(this, 0, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, start, end - start);
+    }
+
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Objects;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+/**
+ * Reads each analyzed file once for all the visitors which need its text, by keeping the text of the last requested file.
+ * Each scanner owns its own provider, so it does not need to be thread-safe.
+ */
+public class SourceTextProvider {
+
+  private final Charset charset;
+  private SourceText last;
+
+  public SourceTextProvider(Charset charset) {
+    this.charset = charset;
+  }
+
+  public SourceText get(File file) {
+    if (last == null || !Objects.equal(file, last.getFile())) {
+      last = SourceText.read(file, charset);
+    }
+    return last;
+  }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declarations and references of the local variables, for loop counters, parameters and lambda parameters of one file, built in a
+ * single pass over its tree. Symbols are identified by consecutive ints, in the order of their declarations.
+ * <p>
+ * Each function member, accessor, anonymous method and lambda expression is a scope. A simple name references the last symbol of
+ * that name declared before it in its scope or in the enclosing ones, which is the one it binds to in code which compiles, as C#
+ * forbids a local from hiding another one of an enclosing block.
+ * </p>
+ */
+public final class SymbolTable {
+
+  public enum Kind {
+    LOCAL_VARIABLE,
+    /**
+     * Local variable declared in the initializer of a for statement.
+     */
+    FOR_LOOP_COUNTER,
+    PARAMETER,
+    /**
+     * Parameter of a lambda expression or of an anonymous method.
+     */
+    LAMBDA_PARAMETER
+  }
+
+  public static final int NO_SYMBOL = -1;
+
+  private static final GrammarRuleKey[] SCOPES = {
+    CSharpGrammar.METHOD_DECLARATION,
+    CSharpGrammar.CONSTRUCTOR_DECLARATION,
+    CSharpGrammar.STATIC_CONSTRUCTOR_DECLARATION,
+    CSharpGrammar.DESTRUCTOR_DECLARATION,
+    CSharpGrammar.OPERATOR_DECLARATION,
+    CSharpGrammar.INDEXER_DECLARATION,
+    CSharpGrammar.GET_ACCESSOR_DECLARATION,
+    CSharpGrammar.SET_ACCESSOR_DECLARATION,
+    CSharpGrammar.ADD_ACCESSOR_DECLARATION,
+    CSharpGrammar.REMOVE_ACCESSOR_DECLARATION,
+    CSharpGrammar.ANONYMOUS_METHOD_EXPRESSION,
+    CSharpGrammar.LAMBDA_EXPRESSION};
+
+  private static final String IMPLICIT_PARAMETER = "value";
+
+  private final List<String> names = Lists.newArrayList();
+  private final List<Kind> kinds = Lists.newArrayList();
+  private final List<AstNode> declarations = Lists.newArrayList();
+  private final List<AstNode> scopes = Lists.newArrayList();
+  private boolean[] outOrRef = new boolean[16];
+  private int[] referenceCounts = new int[16];
+  private final Map<Token, Integer> symbolsByToken = new IdentityHashMap<Token, Integer>();
+
+  private SymbolTable() {
+  }
+
+  /**
+   * Builds the symbol table of the given tree, which is empty if the file could not be parsed.
+   */
+  public static SymbolTable build(@Nullable AstNode compilationUnit) {
+    SymbolTable symbolTable = new SymbolTable();
+    if (compilationUnit != null) {
+      new Builder(symbolTable).visit(compilationUnit);
+    }
+    return symbolTable;
+  }
+
+  public int size() {
+    return names.size();
+  }
+
+  public String getName(int symbol) {
+    return names.get(symbol);
+  }
+
+  public Kind getKind(int symbol) {
+    return kinds.get(symbol);
+  }
+
+  /**
+   * Returns the identifier which declares the given symbol, or the accessor of the implicit "value" parameter.
+   */
+  public AstNode getDeclaration(int symbol) {
+    return declarations.get(symbol);
+  }
+
+  /**
+   * Returns the function member, accessor, anonymous method or lambda expression in which the given symbol is declared.
+   */
+  public AstNode getScope(int symbol) {
+    return scopes.get(symbol);
+  }
+
+  /**
+   * Tells whether the given parameter is declared with the "out" or "ref" modifier.
+   */
+  public boolean isOutOrRef(int symbol) {
+    return outOrRef[symbol];
+  }
+
+  /**
+   * Returns the number of simple names which reference the given symbol, assignments included.
+   */
+  public int getReferenceCount(int symbol) {
+    return referenceCounts[symbol];
+  }
+
+  /**
+   * Returns the symbol declared or referenced by the given identifier token, or {@link #NO_SYMBOL} if it is not a symbol of this table.
+   */
+  public int getSymbol(Token token) {
+    Integer symbol = symbolsByToken.get(token);
+    return symbol == null ? NO_SYMBOL : symbol;
+  }
+
+  private int declare(String name, Kind kind, AstNode declaration, AstNode scope) {
+    int symbol = names.size();
+    if (symbol == referenceCounts.length) {
+      referenceCounts = Arrays.copyOf(referenceCounts, symbol * 2);
+      outOrRef = Arrays.copyOf(outOrRef, symbol * 2);
+    }
+    names.add(name);
+    kinds.add(kind);
+    declarations.add(declaration);
+    scopes.add(scope);
+    if (declaration.is(GenericTokenType.IDENTIFIER)) {
+      symbolsByToken.put(declaration.getToken(), symbol);
+    }
+    return symbol;
+  }
+
+  private static class Scope {
+
+    private final AstNode node;
+    private final Map<String, Integer> symbols = Maps.newHashMap();
+
+    public Scope(AstNode node) {
+      this.node = node;
+    }
+
+  }
+
+  private static class Builder {
+
+    private final SymbolTable symbolTable;
+    private final Deque<Scope> scopes = new ArrayDeque<Scope>();
+
+    public Builder(SymbolTable symbolTable) {
+      this.symbolTable = symbolTable;
+    }
+
+    public void visit(AstNode node) {
+      boolean isScope = node.is(SCOPES);
+      if (isScope) {
+        scopes.push(new Scope(node));
+      }
+
+      if (!scopes.isEmpty()) {
+        declareOrReference(node);
+      }
+      for (AstNode child : node.getChildren()) {
+        visit(child);
+      }
+
+      if (isScope) {
+        scopes.pop();
+      }
+    }
+
+    private void declareOrReference(AstNode node) {
+      if (node.is(CSharpGrammar.SIMPLE_NAME)) {
+        reference(node.getFirstChild());
+      } else if (node.is(CSharpGrammar.LOCAL_VARIABLE_DECLARATOR)) {
+        boolean isForLoopCounter = node.getParent().getParent().is(CSharpGrammar.FOR_INITIALIZER);
+        declare(node.getFirstChild(GenericTokenType.IDENTIFIER), isForLoopCounter ? Kind.FOR_LOOP_COUNTER : Kind.LOCAL_VARIABLE);
+      } else if (node.is(CSharpGrammar.FIXED_PARAMETER)) {
+        int symbol = declare(node.getFirstChild(GenericTokenType.IDENTIFIER), Kind.PARAMETER);
+        symbolTable.outOrRef[symbol] = hasOutOrRefModifier(node.getFirstChild(CSharpGrammar.PARAMETER_MODIFIER));
+      } else if (node.is(CSharpGrammar.PARAMETER_ARRAY)) {
+        declare(node.getFirstChild(GenericTokenType.IDENTIFIER), Kind.PARAMETER);
+      } else if (node.is(CSharpGrammar.UNARY_OPERATOR_DECLARATOR, CSharpGrammar.BINARY_OPERATOR_DECLARATOR, CSharpGrammar.CONVERSION_OPERATOR_DECLARATOR)) {
+        for (AstNode identifier : node.getChildren(GenericTokenType.IDENTIFIER)) {
+          declare(identifier, Kind.PARAMETER);
+        }
+      } else if (node.is(CSharpGrammar.EXPLICIT_ANONYMOUS_FUNCTION_PARAMETER)) {
+        int symbol = declare(node.getFirstChild(GenericTokenType.IDENTIFIER), Kind.LAMBDA_PARAMETER);
+        symbolTable.outOrRef[symbol] = hasOutOrRefModifier(node.getFirstChild(CSharpGrammar.ANONYMOUS_FUNCTION_PARAMETER_MODIFIER));
+      } else if (node.is(CSharpGrammar.IMPLICIT_ANONYMOUS_FUNCTION_PARAMETER)) {
+        declare(node.getFirstChild(), Kind.LAMBDA_PARAMETER);
+      } else if (node.is(CSharpGrammar.SET_ACCESSOR_DECLARATION, CSharpGrammar.ADD_ACCESSOR_DECLARATION, CSharpGrammar.REMOVE_ACCESSOR_DECLARATION)) {
+        declare(IMPLICIT_PARAMETER, node, Kind.PARAMETER);
+      }
+    }
+
+    private static boolean hasOutOrRefModifier(@Nullable AstNode modifier) {
+      return modifier != null && modifier.hasDirectChildren(CSharpKeyword.OUT, CSharpKeyword.REF);
+    }
+
+    private int declare(AstNode identifier, Kind kind) {
+      return declare(identifier.getTokenValue(), identifier, kind);
+    }
+
+    private int declare(String name, AstNode declaration, Kind kind) {
+      Scope scope = scopes.peek();
+      int symbol = symbolTable.declare(name, kind, declaration, scope.node);
+      scope.symbols.put(name, symbol);
+      return symbol;
+    }
+
+    private void reference(AstNode identifier) {
+      String name = identifier.getTokenValue();
+      for (Scope scope : scopes) {
+        Integer symbol = scope.symbols.get(name);
+        if (symbol != null) {
+          symbolTable.referenceCounts[symbol]++;
+          symbolTable.symbolsByToken.put(identifier.getToken(), symbol);
+          return;
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.sonar.sslr.api.AstNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * Builds the symbol table of each analyzed file once for all the visitors which need it, on the first request, by keeping the
+ * table of the last requested tree. Files are not analyzed for symbols when no visitor asks for them. A tree is visited by the
+ * visitors of a single scanner, and every scanner creates its own provider, so the last table is not shared between threads.
+ */
+public class SymbolTableProvider {
+
+  private AstNode lastTree;
+  private SymbolTable last;
+
+  public SymbolTable get(@Nullable AstNode compilationUnit) {
+    if (last == null || compilationUnit != lastTree) {
+      last = SymbolTable.build(compilationUnit);
+      lastTree = compilationUnit;
+    }
+    return last;
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.api.source;
+
+import com.google.common.collect.Lists;
+import org.sonar.squidbridge.api.SourceCode;
+
+import java.util.List;
+
+/**
+ * Gives access to the {@link SourceMember}s of a file, or of a type, by walking down its source code tree.
+ * This only costs the size of that tree, whereas querying the index by parent goes through every source code of the project.
+ */
+public final class SourceMembers {
+
+  private SourceMembers() {
+  }
+
+  /**
+   * Returns all the members found under the given source code, including the ones of nested types, in the tree order.
+   */
+  public static List<SourceMember> of(SourceCode parent) {
+    List<SourceMember> members = Lists.newArrayList();
+    addMembers(parent, members);
+    return members;
+  }
+
+  private static void addMembers(SourceCode parent, List<SourceMember> members) {
+    if (!parent.hasChildren()) {
+      return;
+    }
+
+    for (SourceCode child : parent.getChildren()) {
+      if (child instanceof SourceMember) {
+        members.add((SourceMember) child);
+      }
+      addMembers(child, members);
+    }
+  }
+
+}
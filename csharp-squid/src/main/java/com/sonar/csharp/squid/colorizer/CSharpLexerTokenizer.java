@@ -0,0 +1,219 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.colorizer;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.lexer.ThreadLocalLexer;
+import com.sonar.csharp.squid.lexer.preprocessors.KeepDirectivesPreprocessor;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.LexerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.channel.CodeReader;
+import org.sonar.colorizer.HtmlCodeBuilder;
+import org.sonar.colorizer.Tokenizer;
+
+import java.util.List;
+
+/**
+ * Highlights C# code from the tokens and trivia of {@link CSharpLexer}, instead of scanning it again with regular expressions.
+ * The remaining code is lexed on the first call for a given {@link HtmlCodeBuilder}, and the resulting spans are then emitted
+ * line by line while the reader reaches them, so that line terminators are left to the HTML decorator.
+ * <p>
+ * Directives are highlighted as they are written, whatever the symbols. The lexer is a {@link ThreadLocalLexer}, so a single
+ * tokenizer can highlight files in several threads.
+ * </p>
+ */
+public class CSharpLexerTokenizer extends Tokenizer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpLexerTokenizer.class);
+
+  private static final String SPAN_END = "</span>";
+
+  private static final String LINE_COMMENT = "<span class=\"cd\">";
+  private static final String BLOCK_COMMENT = "<span class=\"cppd\">";
+  private static final String KEYWORD = "<span class=\"k\">";
+  private static final String STRING = "<span class=\"s\">";
+  private static final String PREPROCESSOR = "<span class=\"j\">";
+  private static final String NUMBER = "<span class=\"c\">";
+
+  private final ThreadLocalLexer lexer = new ThreadLocalLexer(new CSharpConfiguration()) {
+    @Override
+    protected Preprocessor[] createPreprocessors() {
+      return new Preprocessor[] {new KeepDirectivesPreprocessor()};
+    }
+  };
+
+  @Override
+  public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
+    Highlighting highlighting = (Highlighting) codeBuilder.getVariable(this);
+    if (highlighting == null) {
+      highlighting = highlight(code);
+      codeBuilder.setVariable(this, highlighting);
+    }
+
+    Span span = highlighting.next(code.getLinePosition(), code.getColumnPosition());
+    if (span == null) {
+      return false;
+    }
+
+    codeBuilder.appendWithoutTransforming(span.tagBefore);
+    for (int i = 0; i < span.length; i++) {
+      code.pop(codeBuilder);
+    }
+    codeBuilder.appendWithoutTransforming(SPAN_END);
+    return true;
+  }
+
+  private Highlighting highlight(CodeReader code) {
+    StringBuilder sb = new StringBuilder(code.length());
+    for (int i = 0; i < code.length(); i++) {
+      sb.append(code.charAt(i));
+    }
+
+    Highlighting highlighting = new Highlighting(code.getLinePosition(), code.getColumnPosition());
+    try {
+      for (Token token : lexer.get().lex(sb.toString())) {
+        for (Trivia trivia : token.getTrivia()) {
+          for (Token triviaToken : trivia.getTokens()) {
+            highlighting.add(triviaToken);
+          }
+        }
+        highlighting.add(token);
+      }
+    } catch (LexerException e) {
+      LOG.debug("Unable to lex the code to highlight, leaving it plain", e);
+      return new Highlighting(code.getLinePosition(), code.getColumnPosition());
+    }
+    return highlighting;
+  }
+
+  private static String getTagBefore(Token token) {
+    TokenType type = token.getType();
+
+    if (type == GenericTokenType.COMMENT) {
+      return token.getOriginalValue().startsWith("//") ? LINE_COMMENT : BLOCK_COMMENT;
+    } else if (type instanceof CSharpKeyword) {
+      return KEYWORD;
+    } else if (type == CSharpTokenType.STRING_LITERAL || type == CSharpTokenType.CHARACTER_LITERAL) {
+      return STRING;
+    } else if (type == CSharpTokenType.PREPROCESSOR) {
+      return PREPROCESSOR;
+    } else if (type == CSharpTokenType.INTEGER_DEC_LITERAL || type == CSharpTokenType.INTEGER_HEX_LITERAL
+      || type == CSharpTokenType.REAL_LITERAL) {
+      return NUMBER;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Spans of one code, in order, and the index of the next one to emit.
+   */
+  private static class Highlighting {
+
+    private final int firstLine;
+    private final int firstColumn;
+    private final List<Span> spans = Lists.newArrayList();
+    private int next;
+
+    public Highlighting(int firstLine, int firstColumn) {
+      this.firstLine = firstLine;
+      this.firstColumn = firstColumn;
+    }
+
+    /**
+     * Adds the spans of the given token, one per line it covers. Its position is relative to the start of the lexed code.
+     */
+    public void add(Token token) {
+      String tagBefore = getTagBefore(token);
+      if (tagBefore == null) {
+        return;
+      }
+
+      String value = token.getOriginalValue();
+      int line = firstLine + token.getLine() - 1;
+      int column = token.getLine() == 1 ? firstColumn + token.getColumn() : token.getColumn();
+      int start = 0;
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '\n' || c == '\r') {
+          addSpan(line, column, i - start, tagBefore);
+          if (c == '\r' && i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+            i++;
+          }
+          line++;
+          column = 0;
+          start = i + 1;
+        }
+      }
+      addSpan(line, column, value.length() - start, tagBefore);
+    }
+
+    private void addSpan(int line, int column, int length, String tagBefore) {
+      if (length > 0) {
+        spans.add(new Span(line, column, length, tagBefore));
+      }
+    }
+
+    /**
+     * Returns the span starting at the given position, if any. The spans the reader went past are dropped.
+     */
+    public Span next(int line, int column) {
+      while (next < spans.size()) {
+        Span span = spans.get(next);
+        if (span.line > line || span.line == line && span.column > column) {
+          return null;
+        }
+        next++;
+        if (span.line == line && span.column == column) {
+          return span;
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static class Span {
+
+    private final int line;
+    private final int column;
+    private final int length;
+    private final String tagBefore;
+
+    public Span(int line, int column, int length, String tagBefore) {
+      this.line = line;
+      this.column = column;
+      this.length = length;
+      this.tagBefore = tagBefore;
+    }
+
+  }
+
+}
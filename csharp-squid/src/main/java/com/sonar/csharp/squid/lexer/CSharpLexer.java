@@ -23,6 +23,7 @@ import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.csharp.squid.api.CSharpPunctuator;
 import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.lexer.preprocessors.ConditionalCompilationPreprocessor;
 import com.sonar.csharp.squid.lexer.preprocessors.StandardPreprocessorLinePreprocessor;
 import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.impl.Lexer;
@@ -30,6 +31,7 @@ import com.sonar.sslr.impl.channel.BlackHoleChannel;
 import com.sonar.sslr.impl.channel.BomCharacterChannel;
 import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
 import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.impl.channel.RegexpChannel;
 import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
 
 import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.ANY_CHAR;
@@ -70,31 +72,39 @@ public final class CSharpLexer {
     Lexer.Builder builder = Lexer.builder()
         .withCharset(conf.getCharset())
 
-        .withFailIfNoChannelToConsumeOneCharacter(true)
-
-        // Comments
-        .withChannel(commentRegexp("//", o2n("[^\\n\\r]")))
-        .withChannel(commentRegexp("/\\*", ANY_CHAR + "*?", "\\*/"))
-        // Literals : Strings
-        .withChannel(regexp(CSharpTokenType.STRING_LITERAL, "\"", o2n(or("\\\\.", anyButNot("\"", "\\n", "\\r"))), "\""))
-        .withChannel(regexp(CSharpTokenType.STRING_LITERAL, "@\"", o2n(or("\"\"", anyButNot("\""))), "\""))
-        // Literals : Character
-        .withChannel(regexp(CSharpTokenType.CHARACTER_LITERAL, "'", one2n(or("\\\\.", anyButNot("'", "\\n", "\\r"))), "'"))
-        // Literals : Reals
-        .withChannel(regexp(CSharpTokenType.REAL_LITERAL, o2n(DIGIT), "\\.", one2n(DIGIT), opt(EXP), opt(REAL_SUFFIX)))
-        .withChannel(regexp(CSharpTokenType.REAL_LITERAL, one2n(DIGIT), EXP, opt(REAL_SUFFIX)))
-        .withChannel(regexp(CSharpTokenType.REAL_LITERAL, one2n(DIGIT), REAL_SUFFIX))
-        // Literals : Integers
-        .withChannel(regexp(CSharpTokenType.INTEGER_HEX_LITERAL, "0[xX]", one2n(HEXA_DIGIT), opt(INT_SUFFIX)))
-        .withChannel(regexp(CSharpTokenType.INTEGER_DEC_LITERAL, one2n(DIGIT), opt(INT_SUFFIX)))
-        // Identifiers, keywords, punctuators and operators
-        .withChannel(new IdentifierAndKeywordChannel(g(opt("@"), or(LETTER_CHAR, "_"),
-            o2n(or(LETTER_CHAR, DECIMAL_DIGIT_CHAR, CONNECTING_CHAR, COMBINING_CHAR, FORMATTING_CHAR))), true, CSharpKeyword.values()))
-        .withChannel(new PunctuatorChannel(CSharpPunctuator.values()))
-        // Preprocessor directives
-        .withChannel(regexp(CSharpTokenType.PREPROCESSOR, "#[^\\r\\n]*"))
+        .withFailIfNoChannelToConsumeOneCharacter(true);
+
+    if (conf.getHandWrittenLexer()) {
+      builder.withChannel(new CSharpTokenChannel(stringLiteralChannel(), verbatimStringLiteralChannel(), characterLiteralChannel()));
+    } else {
+      builder
+          // Comments
+          .withChannel(commentRegexp("//", o2n("[^\\n\\r]")))
+          .withChannel(commentRegexp("/\\*", ANY_CHAR + "*?", "\\*/"))
+          // Literals : Strings
+          .withChannel(stringLiteralChannel())
+          .withChannel(verbatimStringLiteralChannel())
+          // Literals : Character
+          .withChannel(characterLiteralChannel())
+          // Literals : Reals
+          .withChannel(regexp(CSharpTokenType.REAL_LITERAL, o2n(DIGIT), "\\.", one2n(DIGIT), opt(EXP), opt(REAL_SUFFIX)))
+          .withChannel(regexp(CSharpTokenType.REAL_LITERAL, one2n(DIGIT), EXP, opt(REAL_SUFFIX)))
+          .withChannel(regexp(CSharpTokenType.REAL_LITERAL, one2n(DIGIT), REAL_SUFFIX))
+          // Literals : Integers
+          .withChannel(regexp(CSharpTokenType.INTEGER_HEX_LITERAL, "0[xX]", one2n(HEXA_DIGIT), opt(INT_SUFFIX)))
+          .withChannel(regexp(CSharpTokenType.INTEGER_DEC_LITERAL, one2n(DIGIT), opt(INT_SUFFIX)))
+          // Identifiers, keywords, punctuators and operators
+          .withChannel(new IdentifierAndKeywordChannel(g(opt("@"), or(LETTER_CHAR, "_"),
+              o2n(or(LETTER_CHAR, DECIMAL_DIGIT_CHAR, CONNECTING_CHAR, COMBINING_CHAR, FORMATTING_CHAR))), true, CSharpKeyword.values()))
+          .withChannel(new PunctuatorChannel(CSharpPunctuator.values()))
+          // Preprocessor directives
+          .withChannel(regexp(CSharpTokenType.PREPROCESSOR, "#[^\\r\\n]*"))
+          // Whitespaces
+          .withChannel(new BlackHoleChannel("[\\s]"));
+    }
+
+    builder
         // Others
-        .withChannel(new BlackHoleChannel("[\\s]"))
         .withChannel(new BomCharacterChannel())
         .withChannel(new UnknownCharacterChannel());
 
@@ -102,6 +112,8 @@ public final class CSharpLexer {
       for (Preprocessor preprocessor : preprocessors) {
         builder.withPreprocessor(preprocessor);
       }
+    } else if (conf.getPreprocessorSymbols() != null) {
+      builder.withPreprocessor(new ConditionalCompilationPreprocessor(conf.getPreprocessorSymbols()));
     } else {
       builder.withPreprocessor(new StandardPreprocessorLinePreprocessor());
     }
@@ -109,4 +121,16 @@ public final class CSharpLexer {
     return builder.build();
   }
 
+  private static RegexpChannel stringLiteralChannel() {
+    return regexp(CSharpTokenType.STRING_LITERAL, "\"", o2n(or("\\\\.", anyButNot("\"", "\\n", "\\r"))), "\"");
+  }
+
+  private static RegexpChannel verbatimStringLiteralChannel() {
+    return regexp(CSharpTokenType.STRING_LITERAL, "@\"", o2n(or("\"\"", anyButNot("\""))), "\"");
+  }
+
+  private static RegexpChannel characterLiteralChannel() {
+    return regexp(CSharpTokenType.CHARACTER_LITERAL, "'", one2n(or("\\\\.", anyButNot("'", "\\n", "\\r"))), "'");
+  }
+
 }
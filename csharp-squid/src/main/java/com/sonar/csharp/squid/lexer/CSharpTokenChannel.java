@@ -0,0 +1,450 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.CodeReader;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written replacement of the comment, literal, identifier, punctuator, preprocessor and whitespace channels of
+ * {@link CSharpLexer}: the candidate tokens are selected on the first character and scanned without regular expressions.
+ * <p>
+ * The channels are tried in the same order and follow the same (greedy) semantics as the regular expressions, so that the
+ * produced tokens and trivia are exactly the same. The few inputs on which those regular expressions would backtrack
+ * (unterminated string and character literals) are delegated to them.
+ */
+final class CSharpTokenChannel extends Channel<Lexer> {
+
+  private static final int EOF = -1;
+
+  private final Map<String, TokenType> keywords;
+  private final TokenType[][] punctuatorsByFirstChar = new TokenType[128][];
+  private final Channel<Lexer> stringFallback;
+  private final Channel<Lexer> verbatimStringFallback;
+  private final Channel<Lexer> characterFallback;
+
+  private final StringBuilder tmpBuilder = new StringBuilder();
+  private final Token.Builder tokenBuilder = Token.builder();
+
+  CSharpTokenChannel(Channel<Lexer> stringFallback, Channel<Lexer> verbatimStringFallback, Channel<Lexer> characterFallback) {
+    this.stringFallback = stringFallback;
+    this.verbatimStringFallback = verbatimStringFallback;
+    this.characterFallback = characterFallback;
+
+    ImmutableMap.Builder<String, TokenType> keywordsBuilder = ImmutableMap.builder();
+    for (CSharpKeyword keyword : CSharpKeyword.values()) {
+      keywordsBuilder.put(keyword.getValue(), keyword);
+    }
+    this.keywords = keywordsBuilder.build();
+
+    CSharpPunctuator[] punctuators = CSharpPunctuator.values();
+    // Longest punctuators first, as PunctuatorChannel does
+    Arrays.sort(punctuators, new Comparator<CSharpPunctuator>() {
+      public int compare(CSharpPunctuator left, CSharpPunctuator right) {
+        return right.getValue().length() - left.getValue().length();
+      }
+    });
+    for (char c = 0; c < punctuatorsByFirstChar.length; c++) {
+      List<TokenType> candidates = Lists.newArrayList();
+      for (CSharpPunctuator punctuator : punctuators) {
+        if (punctuator.getValue().charAt(0) == c) {
+          candidates.add(punctuator);
+        }
+      }
+      if (!candidates.isEmpty()) {
+        punctuatorsByFirstChar[c] = candidates.toArray(new TokenType[candidates.size()]);
+      }
+    }
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    int c = code.peek();
+
+    // Fast paths: no channel preceding the identifier and whitespace ones can start with those characters
+    if (isAsciiLetter(c) || c == '_') {
+      addToken(code, lexer, identifierLength(code, 0));
+      return true;
+    }
+    if (isWhitespace(c)) {
+      code.pop();
+      return true;
+    }
+
+    return (c == '/' && consumeComment(code, lexer))
+      || (c == '"' && consumeString(code, lexer))
+      || (c == '@' && charAt(code, 1) == '"' && consumeVerbatimString(code, lexer))
+      || (c == '\'' && consumeCharacter(code, lexer))
+      || ((isDigit(c) || c == '.') && consumeNumber(code, lexer))
+      || consumeIdentifierOrKeyword(code, lexer)
+      || consumePunctuator(code, lexer)
+      || (c == '#' && consumePreprocessor(code, lexer));
+  }
+
+  private boolean consumeComment(CodeReader code, Lexer lexer) {
+    int length = 0;
+    if (charAt(code, 1) == '/') {
+      length = 2;
+      while (!isEndOfLine(charAt(code, length))) {
+        length++;
+      }
+    } else if (charAt(code, 1) == '*') {
+      length = blockCommentLength(code);
+    }
+    if (length == 0) {
+      return false;
+    }
+
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    Token token = tokenBuilder
+        .setType(GenericTokenType.COMMENT)
+        .setValueAndOriginalValue(pop(code, length))
+        .setURI(lexer.getURI())
+        .setLine(line)
+        .setColumn(column)
+        .build();
+    lexer.addTrivia(Trivia.createComment(token));
+    return true;
+  }
+
+  private static int blockCommentLength(CodeReader code) {
+    for (int i = 2;; i++) {
+      int c = charAt(code, i);
+      if (c == EOF) {
+        return 0;
+      } else if (c == '*' && charAt(code, i + 1) == '/') {
+        return i + 2;
+      }
+    }
+  }
+
+  private boolean consumeString(CodeReader code, Lexer lexer) {
+    int length = escapedLiteralLength(code, '"');
+    if (length == 0) {
+      return stringFallback.consume(code, lexer);
+    }
+    addToken(code, lexer, CSharpTokenType.STRING_LITERAL, length);
+    return true;
+  }
+
+  private boolean consumeVerbatimString(CodeReader code, Lexer lexer) {
+    int i = 2;
+    while (true) {
+      int c = charAt(code, i);
+      if (c == EOF) {
+        return verbatimStringFallback.consume(code, lexer);
+      } else if (c == '"') {
+        if (charAt(code, i + 1) != '"') {
+          break;
+        }
+        i += 2;
+      } else {
+        i++;
+      }
+    }
+    addToken(code, lexer, CSharpTokenType.STRING_LITERAL, i + 1);
+    return true;
+  }
+
+  private boolean consumeCharacter(CodeReader code, Lexer lexer) {
+    int length = escapedLiteralLength(code, '\'');
+    if (length <= 2) {
+      return characterFallback.consume(code, lexer);
+    }
+    addToken(code, lexer, CSharpTokenType.CHARACTER_LITERAL, length);
+    return true;
+  }
+
+  /**
+   * Length of the literal delimited by the given quote, in which '\' escapes any character but a line terminator,
+   * or 0 when it is not terminated on the same line.
+   */
+  private static int escapedLiteralLength(CodeReader code, char quote) {
+    int i = 1;
+    while (true) {
+      int c = charAt(code, i);
+      if (c == '\\' && !isLineTerminator(charAt(code, i + 1))) {
+        i += 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else if (c == EOF || c == '\n' || c == '\r') {
+        return 0;
+      } else {
+        i++;
+      }
+    }
+  }
+
+  private boolean consumeNumber(CodeReader code, Lexer lexer) {
+    int digits = digitsLength(code, 0);
+
+    // Reals: [0-9]*\.[0-9]+, [0-9]+ followed by an exponent, or [0-9]+ followed by a real suffix
+    if (charAt(code, digits) == '.' && isDigit(charAt(code, digits + 1))) {
+      int length = digitsLength(code, digits + 1);
+      length = realSuffixLength(code, exponentLength(code, length));
+      addToken(code, lexer, CSharpTokenType.REAL_LITERAL, length);
+      return true;
+    }
+    if (digits == 0) {
+      return false;
+    }
+    int length = exponentLength(code, digits);
+    if (length > digits || isRealSuffix(charAt(code, digits))) {
+      addToken(code, lexer, CSharpTokenType.REAL_LITERAL, realSuffixLength(code, length));
+      return true;
+    }
+
+    // Integers
+    if (charAt(code, 0) == '0' && (charAt(code, 1) == 'x' || charAt(code, 1) == 'X') && isHexaDigit(charAt(code, 2))) {
+      length = 3;
+      while (isHexaDigit(charAt(code, length))) {
+        length++;
+      }
+      addToken(code, lexer, CSharpTokenType.INTEGER_HEX_LITERAL, integerSuffixLength(code, length));
+    } else {
+      addToken(code, lexer, CSharpTokenType.INTEGER_DEC_LITERAL, integerSuffixLength(code, digits));
+    }
+    return true;
+  }
+
+  private static int digitsLength(CodeReader code, int offset) {
+    int i = offset;
+    while (isDigit(charAt(code, i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int exponentLength(CodeReader code, int offset) {
+    int c = charAt(code, offset);
+    if (c != 'e' && c != 'E') {
+      return offset;
+    }
+    int i = offset + 1;
+    if (charAt(code, i) == '+' || charAt(code, i) == '-') {
+      i++;
+    }
+    return isDigit(charAt(code, i)) ? digitsLength(code, i) : offset;
+  }
+
+  private static int realSuffixLength(CodeReader code, int offset) {
+    return isRealSuffix(charAt(code, offset)) ? offset + 1 : offset;
+  }
+
+  private static int integerSuffixLength(CodeReader code, int offset) {
+    int c = charAt(code, offset);
+    int next = charAt(code, offset + 1);
+    if (c == 'U' || c == 'u') {
+      return next == 'L' || next == 'l' ? offset + 2 : offset + 1;
+    } else if (c == 'L' || c == 'l') {
+      return next == 'U' || next == 'u' ? offset + 2 : offset + 1;
+    }
+    return offset;
+  }
+
+  private boolean consumeIdentifierOrKeyword(CodeReader code, Lexer lexer) {
+    int start = charAt(code, 0) == '@' ? 1 : 0;
+    int c = codePointAt(code, start);
+    if (c != '_' && !isLetter(c)) {
+      return false;
+    }
+    addToken(code, lexer, identifierLength(code, start));
+    return true;
+  }
+
+  private static int identifierLength(CodeReader code, int start) {
+    int i = start + Character.charCount(codePointAt(code, start));
+    while (true) {
+      int c = charAt(code, i);
+      if (isAsciiLetter(c) || isDigit(c) || c == '_') {
+        i++;
+      } else if (c > 127 && isIdentifierPart(codePointAt(code, i))) {
+        i += Character.charCount(codePointAt(code, i));
+      } else {
+        return i;
+      }
+    }
+  }
+
+  private boolean consumePunctuator(CodeReader code, Lexer lexer) {
+    int c = code.peek();
+    if (c < 0 || c >= punctuatorsByFirstChar.length || punctuatorsByFirstChar[c] == null) {
+      return false;
+    }
+    for (TokenType punctuator : punctuatorsByFirstChar[c]) {
+      if (startsWith(code, punctuator.getValue())) {
+        addToken(code, lexer, punctuator, punctuator.getValue().length());
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(CodeReader code, String value) {
+    for (int i = 1; i < value.length(); i++) {
+      if (charAt(code, i) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean consumePreprocessor(CodeReader code, Lexer lexer) {
+    int length = 1;
+    while (!isEndOfLine(charAt(code, length))) {
+      length++;
+    }
+    addToken(code, lexer, CSharpTokenType.PREPROCESSOR, length);
+    return true;
+  }
+
+  private void addToken(CodeReader code, Lexer lexer, int identifierLength) {
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    String value = pop(code, identifierLength);
+    TokenType keyword = keywords.get(value);
+    addToken(lexer, keyword == null ? GenericTokenType.IDENTIFIER : keyword, value, line, column);
+  }
+
+  private void addToken(CodeReader code, Lexer lexer, TokenType type, int length) {
+    int line = code.getLinePosition();
+    int column = code.getColumnPosition();
+    addToken(lexer, type, pop(code, length), line, column);
+  }
+
+  private void addToken(Lexer lexer, TokenType type, String value, int line, int column) {
+    Token token = tokenBuilder
+        .setType(type)
+        .setValueAndOriginalValue(value)
+        .setURI(lexer.getURI())
+        .setLine(line)
+        .setColumn(column)
+        .build();
+    lexer.addToken(token);
+  }
+
+  private String pop(CodeReader code, int length) {
+    for (int i = 0; i < length; i++) {
+      code.pop(tmpBuilder);
+    }
+    String value = tmpBuilder.toString();
+    tmpBuilder.setLength(0);
+    return value;
+  }
+
+  private static int charAt(CodeReader code, int offset) {
+    return offset < code.length() ? code.charAt(offset) : EOF;
+  }
+
+  private static int codePointAt(CodeReader code, int offset) {
+    int c = charAt(code, offset);
+    if (Character.isHighSurrogate((char) c)) {
+      int next = charAt(code, offset + 1);
+      if (next != EOF && Character.isLowSurrogate((char) next)) {
+        return Character.toCodePoint((char) c, (char) next);
+      }
+    }
+    return c;
+  }
+
+  private static boolean isAsciiLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isHexaDigit(int c) {
+    return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  private static boolean isRealSuffix(int c) {
+    return c == 'F' || c == 'f' || c == 'D' || c == 'd' || c == 'M' || c == 'm';
+  }
+
+  /**
+   * Same characters as the regular expression \s.
+   */
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isEndOfLine(int c) {
+    return c == EOF || c == '\n' || c == '\r';
+  }
+
+  /**
+   * Characters not matched by the regular expression '.'.
+   */
+  private static boolean isLineTerminator(int c) {
+    return c == EOF || c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isLetter(int codePoint) {
+    if (codePoint < 0) {
+      return false;
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.UPPERCASE_LETTER:
+      case Character.LOWERCASE_LETTER:
+      case Character.TITLECASE_LETTER:
+      case Character.MODIFIER_LETTER:
+      case Character.OTHER_LETTER:
+      case Character.LETTER_NUMBER:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isIdentifierPart(int codePoint) {
+    if (isLetter(codePoint)) {
+      return true;
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.DECIMAL_DIGIT_NUMBER:
+      case Character.CONNECTOR_PUNCTUATION:
+      case Character.NON_SPACING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+      case Character.FORMAT:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.impl.Lexer;
+
+/**
+ * Gives each thread its own C# lexer, created on its first use, as a lexer cannot lex several files at the same time.
+ * Can be shared between threads.
+ */
+public abstract class ThreadLocalLexer {
+
+  private final CSharpConfiguration conf;
+  private final ThreadLocal<Lexer> lexers = new ThreadLocal<Lexer>() {
+    @Override
+    protected Lexer initialValue() {
+      return CSharpLexer.create(conf, createPreprocessors());
+    }
+  };
+
+  protected ThreadLocalLexer(CSharpConfiguration conf) {
+    this.conf = conf;
+  }
+
+  /**
+   * Called for each new lexer, as preprocessors keep a state while lexing. No preprocessors give the default ones of the
+   * configuration.
+   */
+  protected abstract Preprocessor[] createPreprocessors();
+
+  public Lexer get() {
+    return lexers.get();
+  }
+
+}
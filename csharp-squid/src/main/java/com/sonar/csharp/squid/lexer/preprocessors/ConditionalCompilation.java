@@ -0,0 +1,208 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer.preprocessors;
+
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * State of the conditional compilation of a file, for one set of defined symbols: tells whether the code at the current position
+ * is compiled, given the #define, #undef, #if, #elif, #else and #endif directives met so far. Other directives are ignored.
+ * Invalid expressions evaluate to false and unbalanced directives are ignored, rather than failing the analysis.
+ */
+public class ConditionalCompilation {
+
+  private final Set<String> symbols;
+
+  // One entry per enclosing #if: whether its enclosing code is compiled, and whether one of its branches was taken
+  private boolean[] enclosingActive = new boolean[8];
+  private boolean[] branchTaken = new boolean[8];
+  private int depth;
+  private boolean active = true;
+
+  public ConditionalCompilation(Collection<String> symbols) {
+    this.symbols = Sets.newHashSet(symbols);
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Updates the state with the given directive, starting with '#'.
+   */
+  public void process(String directive) {
+    int start = skipWhitespaces(directive, directive.indexOf('#') + 1);
+    int end = start;
+    while (end < directive.length() && Character.isLetter(directive.charAt(end))) {
+      end++;
+    }
+    String name = directive.substring(start, end);
+    String argument = stripComment(directive.substring(end)).trim();
+
+    if ("if".equals(name)) {
+      push();
+      active = active && evaluate(argument);
+      branchTaken[depth - 1] = active;
+    } else if ("elif".equals(name)) {
+      if (depth > 0) {
+        active = enclosingActive[depth - 1] && !branchTaken[depth - 1] && evaluate(argument);
+        branchTaken[depth - 1] |= active;
+      }
+    } else if ("else".equals(name)) {
+      if (depth > 0) {
+        active = enclosingActive[depth - 1] && !branchTaken[depth - 1];
+        branchTaken[depth - 1] = true;
+      }
+    } else if ("endif".equals(name)) {
+      if (depth > 0) {
+        depth--;
+        active = enclosingActive[depth];
+      }
+    } else if (active && "define".equals(name)) {
+      symbols.add(argument);
+    } else if (active && "undef".equals(name)) {
+      symbols.remove(argument);
+    }
+  }
+
+  private void push() {
+    if (depth == enclosingActive.length) {
+      enclosingActive = Arrays.copyOf(enclosingActive, depth * 2);
+      branchTaken = Arrays.copyOf(branchTaken, depth * 2);
+    }
+    enclosingActive[depth] = active;
+    depth++;
+  }
+
+  private static String stripComment(String text) {
+    int comment = text.indexOf("//");
+    return comment == -1 ? text : text.substring(0, comment);
+  }
+
+  private static int skipWhitespaces(String text, int index) {
+    int i = index;
+    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  boolean evaluate(String expression) {
+    ExpressionEvaluator evaluator = new ExpressionEvaluator(expression);
+    boolean value = evaluator.or();
+    return evaluator.isValid() && evaluator.atEnd() && value;
+  }
+
+  /**
+   * Recursive descent evaluation of: or := and ('||' and)*, and := equality ('&amp;&amp;' equality)*,
+   * equality := unary (('==' | '!=') unary)*, unary := '!' unary | primary, primary := '(' or ')' | 'true' | 'false' | symbol.
+   */
+  private class ExpressionEvaluator {
+
+    private final String expression;
+    private int position;
+    private boolean valid = true;
+
+    ExpressionEvaluator(String expression) {
+      this.expression = expression;
+    }
+
+    boolean isValid() {
+      return valid;
+    }
+
+    boolean atEnd() {
+      position = skipWhitespaces(expression, position);
+      return position == expression.length();
+    }
+
+    boolean or() {
+      boolean value = and();
+      while (accept("||")) {
+        value = and() || value;
+      }
+      return value;
+    }
+
+    boolean and() {
+      boolean value = equality();
+      while (accept("&&")) {
+        value = equality() && value;
+      }
+      return value;
+    }
+
+    boolean equality() {
+      boolean value = unary();
+      while (true) {
+        if (accept("==")) {
+          value = value == unary();
+        } else if (accept("!=")) {
+          value = value != unary();
+        } else {
+          return value;
+        }
+      }
+    }
+
+    boolean unary() {
+      if (accept("!")) {
+        return !unary();
+      }
+      return primary();
+    }
+
+    boolean primary() {
+      if (accept("(")) {
+        boolean value = or();
+        if (!accept(")")) {
+          valid = false;
+        }
+        return value;
+      }
+      position = skipWhitespaces(expression, position);
+      int start = position;
+      while (position < expression.length() && Character.isJavaIdentifierPart(expression.charAt(position))) {
+        position++;
+      }
+      if (start == position) {
+        valid = false;
+        return false;
+      }
+      String symbol = expression.substring(start, position);
+      return "true".equals(symbol) || (!"false".equals(symbol) && symbols.contains(symbol));
+    }
+
+    private boolean accept(String operator) {
+      position = skipWhitespaces(expression, position);
+      if (expression.startsWith(operator, position) && !("!".equals(operator) && expression.startsWith("!=", position))) {
+        position += operator.length();
+        return true;
+      }
+      return false;
+    }
+
+  }
+
+}
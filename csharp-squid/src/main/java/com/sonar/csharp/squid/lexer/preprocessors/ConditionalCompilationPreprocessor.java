@@ -0,0 +1,67 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer.preprocessors;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates the conditional compilation directives with the given defined symbols: like
+ * {@link StandardPreprocessorLinePreprocessor}, turns the directives into skipped text, and does the same with the tokens of the
+ * code which is not compiled.
+ */
+public class ConditionalCompilationPreprocessor extends Preprocessor {
+
+  private final Set<String> symbols;
+  private ConditionalCompilation conditionalCompilation;
+
+  public ConditionalCompilationPreprocessor(Collection<String> symbols) {
+    this.symbols = ImmutableSet.copyOf(symbols);
+  }
+
+  @Override
+  public void init() {
+    conditionalCompilation = new ConditionalCompilation(symbols);
+  }
+
+  @Override
+  public PreprocessorAction process(List<Token> tokens) {
+    Token token = tokens.get(0);
+
+    if (token.getType() == CSharpTokenType.PREPROCESSOR) {
+      conditionalCompilation.process(token.getValue());
+    } else if (conditionalCompilation.isActive() || token.getType() == GenericTokenType.EOF) {
+      return PreprocessorAction.NO_OPERATION;
+    }
+    return new PreprocessorAction(1, Lists.newArrayList(Trivia.createSkippedText(token)), new ArrayList<Token>());
+  }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer.preprocessors;
+
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+
+import java.util.List;
+
+/**
+ * Leaves the tokens as they are. Given to {@link com.sonar.csharp.squid.lexer.CSharpLexer} instead of the default preprocessor,
+ * it keeps the preprocessor directives as tokens rather than turning them into trivia.
+ */
+public class KeepDirectivesPreprocessor extends Preprocessor {
+
+  @Override
+  public PreprocessorAction process(List<Token> tokens) {
+    return PreprocessorAction.NO_OPERATION;
+  }
+
+}
@@ -19,7 +19,6 @@
  */
 package com.sonar.csharp.squid.metric;
 
-import com.google.common.collect.Sets;
 import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
@@ -33,11 +32,13 @@ import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.resources.File;
 
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Visitor that computes the CoreMetrics.NCLOC_DATA_KEY & CoreMetrics.COMMENT_LINES_DATA_KEY metrics used by the DevCockpit.
+ * Lines are kept in bit sets reused from one file to the next, so that visiting a token allocates nothing.
+ * When several scanners run in parallel, the given factory must make the creation and the saving of the contexts thread-safe.
  */
 public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
 
@@ -45,8 +46,8 @@ public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements
   private final FileLinesContextFactory fileLinesContextFactory;
   private FileLinesContext fileLinesContext;
 
-  private final Set<Integer> linesOfCode = Sets.newHashSet();
-  private final Set<Integer> linesOfComments = Sets.newHashSet();
+  private final BitSet linesOfCode = new BitSet();
+  private final BitSet linesOfComments = new BitSet();
 
   public CSharpFileLinesVisitor(FileProvider fileProvider, FileLinesContextFactory fileLinesContextFactory) {
     this.fileProvider = fileProvider;
@@ -64,8 +65,8 @@ public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements
     int fileLength = getContext().peekSourceCode().getInt(CSharpMetric.LINES);
 
     for (int line = 1; line <= fileLength; line++) {
-      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.contains(line) ? 1 : 0);
-      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, linesOfComments.contains(line) ? 1 : 0);
+      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.get(line) ? 1 : 0);
+      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, linesOfComments.get(line) ? 1 : 0);
     }
     fileLinesContext.save();
 
@@ -79,22 +80,38 @@ public class CSharpFileLinesVisitor extends SquidAstVisitor<Grammar> implements
       return;
     }
 
-    addTokenLinesToSet(linesOfCode, token);
+    addTokenLines(linesOfCode, token);
     List<Trivia> trivias = token.getTrivia();
     for (Trivia trivia : trivias) {
       if (trivia.isComment()) {
-        addTokenLinesToSet(linesOfComments, trivia.getToken());
+        addTokenLines(linesOfComments, trivia.getToken());
       }
     }
   }
 
-  private static void addTokenLinesToSet(Set<Integer> set, Token token) {
-    int currentLine = token.getLine();
+  private static void addTokenLines(BitSet lines, Token token) {
+    int line = token.getLine();
+    lines.set(line, line + countLineTerminators(token.getOriginalValue()) + 1);
+  }
 
-    for (String line : token.getOriginalValue().split("\r\n?+|\n", -1)) {
-      set.add(currentLine);
-      currentLine++;
+  /**
+   * Counts the "\r\n", "\r" and "\n" line terminators.
+   */
+  static int countLineTerminators(String value) {
+    int count = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '\n') {
+        count++;
+      } else if (c == '\r') {
+        count++;
+        if (i + 1 < length && value.charAt(i + 1) == '\n') {
+          i++;
+        }
+      }
     }
+    return count;
   }
 
 }
@@ -0,0 +1,107 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
+import com.sonar.sslr.impl.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parser which does not parse the files going over its token limit, drops the trees of the files whose parse goes over its
+ * time limit, and returns a tree made of their tokens instead. The parse itself is never interrupted: only the token limit
+ * bounds its cost, the time limit keeps the visitors from spending more time on the files which are the slowest to parse.
+ */
+final class BudgetedParser extends Parser<Grammar> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BudgetedParser.class);
+
+  private final Lexer lexer;
+  private final long timeLimitNanos;
+  private final int tokenLimit;
+
+  BudgetedParser(Grammar grammar, Lexer lexer, CSharpConfiguration conf) {
+    super(grammar);
+    setRootRule(grammar.getRootRule());
+    this.lexer = lexer;
+    this.timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(conf.getParseTimeLimit());
+    this.tokenLimit = conf.getParseTokenLimit();
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    List<Token> tokens;
+    try {
+      tokens = lexer.lex(file);
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    }
+
+    AstNode root = parse(tokens);
+    if (root.is(ParseBudgetExceeded.TIME_LIMIT)) {
+      LOG.warn("Tree of " + file.getAbsolutePath() + " dropped, as its parse took too long");
+    } else if (root.is(ParseBudgetExceeded.TOKEN_LIMIT)) {
+      LOG.warn("Parse of " + file.getAbsolutePath() + " skipped, as it has " + tokens.size() + " tokens");
+    }
+    return root;
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    try {
+      return parse(lexer.lex(source));
+    } catch (LexerException e) {
+      throw new RecognitionException(e);
+    }
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    if (tokenLimit > 0 && tokens.size() > tokenLimit) {
+      return unparsed(ParseBudgetExceeded.TOKEN_LIMIT, tokens);
+    }
+
+    long start = System.nanoTime();
+    AstNode root = super.parse(tokens);
+    if (timeLimitNanos > 0 && System.nanoTime() - start > timeLimitNanos) {
+      return unparsed(ParseBudgetExceeded.TIME_LIMIT, tokens);
+    }
+    return root;
+  }
+
+  private static AstNode unparsed(ParseBudgetExceeded type, List<Token> tokens) {
+    AstNode root = new AstNode(type, type.name(), tokens.get(0));
+    for (Token child : tokens) {
+      root.addChild(new AstNode(child));
+    }
+    return root;
+  }
+
+}
@@ -22,8 +22,11 @@ package com.sonar.csharp.squid.parser;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.lexer.CSharpLexer;
 import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.events.ParsingEventListener;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+
 
 /**
  * Parser for the C# language.
@@ -37,11 +40,37 @@ public final class CSharpParser {
     return create(new CSharpConfiguration(), parsingEventListeners);
   }
 
+  /**
+   * When the configuration sets a parse time or token limit, the files going over it get a tree made of their tokens, whose root is of one of the {@link ParseBudgetExceeded} types.
+   *
+   * @throws IllegalArgumentException if parsing event listeners are given along with such a limit, as the budgeted parser does not support them
+   */
   public static Parser<Grammar> create(CSharpConfiguration conf, ParsingEventListener... parsingEventListeners) {
-    return Parser.builder(CSharpGrammar.create().buildWithMemoizationOfMatchesForAllRules())
-        .withLexer(CSharpLexer.create(conf))
+    Grammar grammar = createGrammar(conf);
+    Lexer lexer = CSharpLexer.create(conf);
+
+    if (conf.getParseTimeLimit() > 0 || conf.getParseTokenLimit() > 0) {
+      if (parsingEventListeners.length > 0) {
+        throw new IllegalArgumentException("Parsing event listeners cannot be used along with a parse time or token limit");
+      }
+      return new BudgetedParser(grammar, lexer, conf);
+    }
+
+    return Parser.builder(grammar)
+        .withLexer(lexer)
         .setParsingEventListeners(parsingEventListeners)
         .build();
   }
 
+  private static Grammar createGrammar(CSharpConfiguration conf) {
+    if (conf.getMemoizeAllRules()) {
+      return CSharpGrammar.create().buildWithMemoizationOfMatchesForAllRules();
+    }
+    Grammar grammar = CSharpGrammar.create().build();
+    for (CSharpGrammar ruleKey : conf.getMemoizedRules()) {
+      ((RuleDefinition) grammar.rule(ruleKey)).enableMemoization();
+    }
+    return grammar;
+  }
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.parser;
+
+import com.sonar.sslr.api.AstNodeType;
+
+/**
+ * Types of the root of the tree of a file whose parse went over budget, see
+ * {@link com.sonar.csharp.squid.CSharpConfiguration#setParseTimeLimit(long)} and
+ * {@link com.sonar.csharp.squid.CSharpConfiguration#setParseTokenLimit(int)}.
+ * The children of such a root are the tokens of the file, so only the metrics computed from tokens and comments are available.
+ */
+public enum ParseBudgetExceeded implements AstNodeType {
+
+  /**
+   * The parse took too long, so its tree was dropped.
+   */
+  TIME_LIMIT,
+
+  /**
+   * The file has too many tokens to be parsed.
+   */
+  TOKEN_LIMIT
+
+}
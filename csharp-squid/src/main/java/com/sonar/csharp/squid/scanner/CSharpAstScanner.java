@@ -20,9 +20,14 @@
 package com.sonar.csharp.squid.scanner;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.CharsetAwareVisitor;
 import com.sonar.csharp.squid.ProgressAstScanner;
+import com.sonar.csharp.squid.SourceTextAwareVisitor;
+import com.sonar.csharp.squid.SourceTextProvider;
+import com.sonar.csharp.squid.SymbolTableAwareVisitor;
+import com.sonar.csharp.squid.SymbolTableProvider;
 import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.csharp.squid.metric.CSharpComplexityVisitor;
 import com.sonar.csharp.squid.metric.CSharpPublicApiVisitor;
@@ -45,8 +50,12 @@ import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.QueryByType;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public final class CSharpAstScanner {
 
@@ -79,53 +88,141 @@ public final class CSharpAstScanner {
   }
 
   public static AstScanner<Grammar> create(CSharpConfiguration conf, SquidAstVisitor<Grammar>... visitors) {
+    return create(conf, (VisitorTimings) null, visitors);
+  }
 
+  /**
+   * Creates a scanner which records the time spent in each of its visitors, built-in ones included, into the given timings.
+   */
+  public static AstScanner<Grammar> create(CSharpConfiguration conf, @Nullable VisitorTimings visitorTimings, SquidAstVisitor<Grammar>... visitors) {
     final SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<Grammar>(new SourceProject("C# Project"));
-    final Parser<Grammar> parser = CSharpParser.create(conf);
 
-    AstScanner.Builder<Grammar> builder = new ProgressAstScanner.Builder(context).setBaseParser(parser);
+    return configure(new ProgressAstScanner.Builder(context, conf.getStallThreshold()), conf, visitorTimings, visitors).build();
+  }
+
+  /**
+   * Creates a scanner which hands each file over to the given listener as soon as it has been analyzed, instead of keeping
+   * all of them in its index until the end of the scan.
+   */
+  public static AstScanner<Grammar> createStreaming(CSharpConfiguration conf, SourceFileListener listener, SquidAstVisitor<Grammar>... visitors) {
+    return createStreaming(conf, listener, null, visitors);
+  }
+
+  /**
+   * Same as {@link #createStreaming(CSharpConfiguration, SourceFileListener, SquidAstVisitor...)}, recording the time spent in
+   * each visitor into the given timings.
+   */
+  public static AstScanner<Grammar> createStreaming(CSharpConfiguration conf, SourceFileListener listener, @Nullable VisitorTimings visitorTimings,
+    SquidAstVisitor<Grammar>... visitors) {
+    StreamingSourceProject project = new StreamingSourceProject(listener);
+    final SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<Grammar>(project);
+
+    return configure(new ProgressAstScanner.Builder(context, conf.getStallThreshold()), conf, visitorTimings, visitors)
+      .withSquidAstVisitor(project.createFlushVisitor())
+      .build();
+  }
+
+  /**
+   * Registers the C# parser, metrics and built-in visitors, followed by the given ones, on the given builder.
+   * Every call creates its own parser and visitors, so that builders configured this way can be used concurrently.
+   * When timings are given, all the registered visitors are timed. The visitors are walked by a single {@link DispatchingVisitor},
+   * so visitors registered afterwards on the builder see each file once all of these have visited it, and only get the stand-in
+   * of its tree made by the {@link DispatchingParser}: its root and its last token.
+   */
+  static AstScanner.Builder<Grammar> configure(AstScanner.Builder<Grammar> builder, CSharpConfiguration conf, @Nullable VisitorTimings visitorTimings,
+    SquidAstVisitor<Grammar>... visitors) {
+    final DispatchingParser parser = new DispatchingParser(CSharpParser.create(conf));
+
+    builder.setBaseParser(parser);
 
     /* Metrics */
     builder.withMetrics(CSharpMetric.values());
 
     /* Comments */
-    builder.setCommentAnalyser(
-      new CommentAnalyser() {
-
-        @Override
-        public boolean isBlank(String line) {
-          for (int i = 0; i < line.length(); i++) {
-            if (Character.isLetterOrDigit(line.charAt(i))) {
-              return false;
-            }
-          }
+    builder.setCommentAnalyser(createCommentAnalyser());
 
-          return true;
-        }
+    /* Files */
+    builder.setFilesMetric(CSharpMetric.FILES);
+
+    /* Tree and metrics */
+    List<SquidAstVisitor<Grammar>> scannerVisitors = createBuiltInVisitors(conf);
+
+    /* External visitors (typically Check ones) */
+    configureVisitors(conf, Arrays.asList(visitors));
+    scannerVisitors.addAll(Arrays.asList(visitors));
+
+    if (visitorTimings != null) {
+      scannerVisitors = visitorTimings.wrap(scannerVisitors);
+    }
+    builder.withSquidAstVisitor(new DispatchingVisitor(parser, scannerVisitors));
+
+    return builder;
+  }
+
+  /**
+   * Gives the charset, the file text and the symbol tables to the visitors which need them. The text and symbol table providers are
+   * shared by the given visitors only, which must therefore all be run by the same scanner.
+   */
+  public static void configureVisitors(CSharpConfiguration conf, List<SquidAstVisitor<Grammar>> visitors) {
+    SourceTextProvider sourceTextProvider = new SourceTextProvider(conf.getCharset());
+    SymbolTableProvider symbolTableProvider = new SymbolTableProvider();
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      if (visitor instanceof CharsetAwareVisitor) {
+        ((CharsetAwareVisitor) visitor).setCharset(conf.getCharset());
+      }
+      if (visitor instanceof SourceTextAwareVisitor) {
+        ((SourceTextAwareVisitor) visitor).setSourceTextProvider(sourceTextProvider);
+      }
+      if (visitor instanceof SymbolTableAwareVisitor) {
+        ((SymbolTableAwareVisitor) visitor).setSymbolTableProvider(symbolTableProvider);
+      }
+    }
+  }
 
-        @Override
-        public String getContents(String comment) {
-          return comment.startsWith("//") ? comment.substring(2) : comment.substring(2, comment.length() - 2);
+  /**
+   * Creates the analyser used by the scanners to count comment lines: comments without any letter nor digit are blank.
+   */
+  public static CommentAnalyser createCommentAnalyser() {
+    return new CommentAnalyser() {
+
+      @Override
+      public boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+          if (Character.isLetterOrDigit(line.charAt(i))) {
+            return false;
+          }
         }
 
-      });
+        return true;
+      }
+
+      @Override
+      public String getContents(String comment) {
+        return comment.startsWith("//") ? comment.substring(2) : comment.substring(2, comment.length() - 2);
+      }
 
-    /* Files */
-    builder.setFilesMetric(CSharpMetric.FILES);
+    };
+  }
+
+  /**
+   * Creates new instances of the tree and metric visitors run by every scanner, in the order they are run, before the external ones.
+   */
+  public static List<SquidAstVisitor<Grammar>> createBuiltInVisitors(CSharpConfiguration conf) {
+    List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList();
 
     /* Tree */
-    builder.withSquidAstVisitor(new CSharpTypeVisitor());
-    builder.withSquidAstVisitor(new CSharpMemberVisitor());
+    visitors.add(new CSharpTypeVisitor());
+    visitors.add(new CSharpMemberVisitor());
 
     /* Metrics */
-    builder.withSquidAstVisitor(new LinesVisitor<Grammar>(CSharpMetric.LINES));
-    builder.withSquidAstVisitor(new LinesOfCodeVisitor<Grammar>(CSharpMetric.LINES_OF_CODE));
-    builder.withSquidAstVisitor(CommentsVisitor.<Grammar>builder()
+    visitors.add(new LinesVisitor<Grammar>(CSharpMetric.LINES));
+    visitors.add(new LinesOfCodeVisitor<Grammar>(CSharpMetric.LINES_OF_CODE));
+    visitors.add(CommentsVisitor.<Grammar>builder()
       .withCommentMetric(CSharpMetric.COMMENT_LINES)
       .withNoSonar(true)
       .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
       .build());
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
+    visitors.add(CounterVisitor.<Grammar>builder()
       .setMetricDef(CSharpMetric.STATEMENTS)
       .subscribeTo(
         CSharpGrammar.LABELED_STATEMENT,
@@ -141,7 +238,7 @@ public final class CSharpAstScanner {
         CSharpGrammar.USING_STATEMENT,
         CSharpGrammar.YIELD_STATEMENT)
       .build());
-    builder.withSquidAstVisitor(CounterVisitor.<Grammar>builder()
+    visitors.add(CounterVisitor.<Grammar>builder()
       .setMetricDef(CSharpMetric.ACCESSORS)
       .subscribeTo(
         CSharpGrammar.GET_ACCESSOR_DECLARATION,
@@ -151,18 +248,10 @@ public final class CSharpAstScanner {
       .build());
 
     /* Visitors */
-    builder.withSquidAstVisitor(new CSharpComplexityVisitor());
-    builder.withSquidAstVisitor(new CSharpPublicApiVisitor());
-
-    /* External visitors (typically Check ones) */
-    for (SquidAstVisitor<Grammar> visitor : visitors) {
-      if (visitor instanceof CharsetAwareVisitor) {
-        ((CharsetAwareVisitor) visitor).setCharset(conf.getCharset());
-      }
-      builder.withSquidAstVisitor(visitor);
-    }
+    visitors.add(new CSharpComplexityVisitor());
+    visitors.add(new CSharpPublicApiVisitor());
 
-    return builder.build();
+    return visitors;
   }
 
 }
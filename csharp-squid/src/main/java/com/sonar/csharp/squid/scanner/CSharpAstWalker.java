@@ -0,0 +1,151 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.AstVisitor;
+import com.sonar.sslr.api.Token;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walks C# trees exactly as {@link com.sonar.sslr.impl.ast.AstWalker} does, but finds the visitors of each node in arrays
+ * indexed by the ordinal of its type when it is one of the C# enums, instead of looking them up in a map. Nodes whose type
+ * nobody subscribed to are not handed to any visitor.
+ */
+public final class CSharpAstWalker {
+
+  private final List<AstVisitor> visitors;
+  private final AstAndTokenVisitor[] tokenVisitors;
+  private final AstVisitor[][] grammarVisitors = new AstVisitor[CSharpGrammar.values().length][];
+  private final AstVisitor[][] keywordVisitors = new AstVisitor[CSharpKeyword.values().length][];
+  private final AstVisitor[][] punctuatorVisitors = new AstVisitor[CSharpPunctuator.values().length][];
+  private final AstVisitor[][] tokenTypeVisitors = new AstVisitor[CSharpTokenType.values().length][];
+  private final Map<AstNodeType, AstVisitor[]> otherVisitors = Maps.newHashMap();
+  private Token lastVisitedToken;
+
+  public CSharpAstWalker(List<? extends AstVisitor> visitors) {
+    this.visitors = Lists.<AstVisitor>newArrayList(visitors);
+
+    List<AstAndTokenVisitor> tokenVisitorList = Lists.newArrayList();
+    Map<AstNodeType, List<AstVisitor>> visitorsByType = Maps.newLinkedHashMap();
+    for (AstVisitor visitor : visitors) {
+      if (visitor instanceof AstAndTokenVisitor) {
+        tokenVisitorList.add((AstAndTokenVisitor) visitor);
+      }
+      if (visitor.getAstNodeTypesToVisit() != null) {
+        for (AstNodeType type : visitor.getAstNodeTypesToVisit()) {
+          List<AstVisitor> typeVisitors = visitorsByType.get(type);
+          if (typeVisitors == null) {
+            typeVisitors = Lists.newArrayList();
+            visitorsByType.put(type, typeVisitors);
+          }
+          typeVisitors.add(visitor);
+        }
+      }
+    }
+    this.tokenVisitors = tokenVisitorList.toArray(new AstAndTokenVisitor[tokenVisitorList.size()]);
+
+    for (Map.Entry<AstNodeType, List<AstVisitor>> entry : visitorsByType.entrySet()) {
+      AstNodeType type = entry.getKey();
+      AstVisitor[] typeVisitors = entry.getValue().toArray(new AstVisitor[entry.getValue().size()]);
+      if (type instanceof CSharpGrammar) {
+        grammarVisitors[((CSharpGrammar) type).ordinal()] = typeVisitors;
+      } else if (type instanceof CSharpKeyword) {
+        keywordVisitors[((CSharpKeyword) type).ordinal()] = typeVisitors;
+      } else if (type instanceof CSharpPunctuator) {
+        punctuatorVisitors[((CSharpPunctuator) type).ordinal()] = typeVisitors;
+      } else if (type instanceof CSharpTokenType) {
+        tokenTypeVisitors[((CSharpTokenType) type).ordinal()] = typeVisitors;
+      } else {
+        otherVisitors.put(type, typeVisitors);
+      }
+    }
+  }
+
+  public void walkAndVisit(AstNode ast) {
+    for (AstVisitor visitor : visitors) {
+      visitor.visitFile(ast);
+    }
+    walk(ast);
+    for (int i = visitors.size() - 1; i >= 0; i--) {
+      visitors.get(i).leaveFile(ast);
+    }
+  }
+
+  /**
+   * Visits the nodes and tokens of the given tree, without calling visitFile nor leaveFile.
+   */
+  public void walk(AstNode ast) {
+    lastVisitedToken = null;
+    visit(ast);
+  }
+
+  private void visit(AstNode node) {
+    AstVisitor[] nodeVisitors = getNodeVisitors(node.getType());
+    if (nodeVisitors != null) {
+      for (AstVisitor visitor : nodeVisitors) {
+        visitor.visitNode(node);
+      }
+    }
+
+    Token token = node.getToken();
+    if (token != null && token != lastVisitedToken) {
+      lastVisitedToken = token;
+      for (AstAndTokenVisitor visitor : tokenVisitors) {
+        visitor.visitToken(token);
+      }
+    }
+
+    List<AstNode> children = node.getChildren();
+    for (int i = 0; i < children.size(); i++) {
+      visit(children.get(i));
+    }
+
+    if (nodeVisitors != null) {
+      for (int i = nodeVisitors.length - 1; i >= 0; i--) {
+        nodeVisitors[i].leaveNode(node);
+      }
+    }
+  }
+
+  private AstVisitor[] getNodeVisitors(AstNodeType type) {
+    if (type instanceof CSharpGrammar) {
+      return grammarVisitors[((CSharpGrammar) type).ordinal()];
+    } else if (type instanceof CSharpPunctuator) {
+      return punctuatorVisitors[((CSharpPunctuator) type).ordinal()];
+    } else if (type instanceof CSharpKeyword) {
+      return keywordVisitors[((CSharpKeyword) type).ordinal()];
+    } else if (type instanceof CSharpTokenType) {
+      return tokenTypeVisitors[((CSharpTokenType) type).ordinal()];
+    }
+    return otherVisitors.get(type);
+  }
+
+}
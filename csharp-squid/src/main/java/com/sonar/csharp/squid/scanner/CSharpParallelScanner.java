@@ -0,0 +1,293 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.ProgressReport;
+import com.sonar.csharp.squid.ProgressVisitor;
+import com.sonar.sslr.api.Grammar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.Query;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeSearchEngine;
+import org.sonar.squidbridge.api.SourceProject;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans C# files using several workers, each one owning its own parser, visitors and source code tree.
+ * The trees of all workers are exposed through a single index, so that the results can be read exactly as the ones
+ * of a scanner created by {@link CSharpAstScanner#create(CSharpConfiguration, SquidAstVisitor...)}.
+ */
+public class CSharpParallelScanner {
+
+  /**
+   * Creates the visitors of a worker. Visitors are stateful, so the returned instances must not be shared between workers.
+   */
+  public interface VisitorsFactory {
+
+    List<SquidAstVisitor<Grammar>> create();
+
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpParallelScanner.class);
+
+  private final ProgressReport progressReport;
+  private final List<AstScanner<Grammar>> workers;
+  private final SourceCodeSearchEngine index;
+
+  public CSharpParallelScanner(CSharpConfiguration conf, int threads, VisitorsFactory visitorsFactory) {
+    this(conf, threads, visitorsFactory, null);
+  }
+
+  /**
+   * When a listener is given, each file is handed over to it as soon as it has been analyzed and the index remains empty.
+   */
+  public CSharpParallelScanner(CSharpConfiguration conf, int threads, VisitorsFactory visitorsFactory, @Nullable SourceFileListener listener) {
+    this(conf, threads, visitorsFactory, listener, null);
+  }
+
+  /**
+   * When timings are given, the time spent in the visitors of all the workers is recorded into them.
+   */
+  public CSharpParallelScanner(CSharpConfiguration conf, int threads, VisitorsFactory visitorsFactory, @Nullable SourceFileListener listener,
+    @Nullable VisitorTimings visitorTimings) {
+    Preconditions.checkArgument(threads > 0, "The number of threads must be greater than 0, but was: " + threads);
+    this.progressReport = new ProgressReport("Report about progress of C# analyzer", TimeUnit.SECONDS.toMillis(10), conf.getStallThreshold());
+
+    ImmutableList.Builder<AstScanner<Grammar>> builder = ImmutableList.builder();
+    for (int i = 0; i < threads; i++) {
+      builder.add(createWorker(conf, visitorsFactory.create(), listener, visitorTimings));
+    }
+    this.workers = builder.build();
+    this.index = new WorkersIndex(workers);
+  }
+
+  private AstScanner<Grammar> createWorker(CSharpConfiguration conf, List<SquidAstVisitor<Grammar>> visitors, @Nullable SourceFileListener listener,
+    @Nullable VisitorTimings visitorTimings) {
+    StreamingSourceProject streamingProject = listener == null ? null : new StreamingSourceProject(listener);
+    SourceProject project = streamingProject == null ? new SourceProject("C# Project") : streamingProject;
+    SquidAstVisitorContextImpl<Grammar> context = new SquidAstVisitorContextImpl<Grammar>(project);
+    AstScanner.Builder<Grammar> builder = CSharpAstScanner.configure(
+      new AstScanner.Builder<Grammar>(context),
+      conf,
+      visitorTimings,
+      visitors.toArray(new SquidAstVisitor[visitors.size()]));
+
+    // The start of each file is reported by the queue handing them out
+    builder.withSquidAstVisitor(new ProgressVisitor(progressReport));
+
+    if (streamingProject != null) {
+      builder.withSquidAstVisitor(streamingProject.createFlushVisitor());
+    }
+
+    return builder.build();
+  }
+
+  public void scanFiles(Collection<File> files) {
+    scanFiles(files, new FileScheduler());
+  }
+
+  /**
+   * Files are handed out one at a time to the first idle worker, in the order given by the scheduler, which records how
+   * long each one took.
+   */
+  public void scanFiles(Collection<File> files, FileScheduler scheduler) {
+    Queue<File> queue = new ConcurrentLinkedQueue<File>(scheduler.schedule(files));
+    long[] finishTimes = new long[workers.size()];
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size(), new ThreadFactoryBuilder()
+      .setNameFormat("C# analyzer worker %d")
+      .setDaemon(true)
+      .build());
+
+    long start = System.nanoTime();
+    progressReport.start(files);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < workers.size(); i++) {
+        futures.add(executor.submit(new ScanTask(workers.get(i), new QueuedFiles(queue, scheduler, finishTimes, i))));
+      }
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      executor.shutdownNow();
+      progressReport.stop();
+    }
+
+    logFinishTimes(start, finishTimes);
+  }
+
+  private static void logFinishTimes(long start, long[] finishTimes) {
+    long first = Long.MAX_VALUE;
+    long last = 0;
+    for (long finishTime : finishTimes) {
+      first = Math.min(first, finishTime - start);
+      last = Math.max(last, finishTime - start);
+    }
+    LOG.info("Last C# file analyzed after " + TimeUnit.NANOSECONDS.toMillis(last) + " ms, "
+      + TimeUnit.NANOSECONDS.toMillis(last - first) + " ms after the first worker ran out of files");
+  }
+
+  public SourceCodeSearchEngine getIndex() {
+    return index;
+  }
+
+  public int getThreads() {
+    return workers.size();
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the C# analysis to complete", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private static class ScanTask implements Runnable {
+
+    private final AstScanner<Grammar> scanner;
+    private final Collection<File> files;
+
+    public ScanTask(AstScanner<Grammar> scanner, Collection<File> files) {
+      this.scanner = scanner;
+      this.files = files;
+    }
+
+    @Override
+    public void run() {
+      scanner.scanFiles(files);
+    }
+
+  }
+
+  /**
+   * Files of a worker, taken from the queue shared by all the workers as the scanner iterates over them.
+   * The scanner asks for the next file once it is done with the previous one, which gives the time spent on it.
+   */
+  private class QueuedFiles extends AbstractCollection<File> {
+
+    private final Queue<File> queue;
+    private final FileScheduler scheduler;
+    private final long[] finishTimes;
+    private final int worker;
+
+    public QueuedFiles(Queue<File> queue, FileScheduler scheduler, long[] finishTimes, int worker) {
+      this.queue = queue;
+      this.scheduler = scheduler;
+      this.finishTimes = finishTimes;
+      this.worker = worker;
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+      return new AbstractIterator<File>() {
+        private File current;
+        private long start;
+
+        @Override
+        protected File computeNext() {
+          long now = System.nanoTime();
+          if (current != null) {
+            scheduler.record(current, TimeUnit.NANOSECONDS.toMillis(now - start));
+          }
+
+          current = queue.poll();
+          if (current == null) {
+            finishTimes[worker] = now;
+            return endOfData();
+          }
+          start = now;
+          progressReport.fileStarted(current);
+          return current;
+        }
+      };
+    }
+
+    /**
+     * The files left in the shared queue, any of which may be taken by this worker.
+     */
+    @Override
+    public int size() {
+      return queue.size();
+    }
+
+  }
+
+  private static class WorkersIndex implements SourceCodeSearchEngine {
+
+    private final List<AstScanner<Grammar>> workers;
+
+    public WorkersIndex(List<AstScanner<Grammar>> workers) {
+      this.workers = workers;
+    }
+
+    @Override
+    public SourceCode search(String key) {
+      for (AstScanner<Grammar> worker : workers) {
+        SourceCode sourceCode = worker.getIndex().search(key);
+        if (sourceCode != null) {
+          return sourceCode;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Collection<SourceCode> search(Query... query) {
+      Set<SourceCode> result = Sets.newHashSet();
+      for (AstScanner<Grammar> worker : workers) {
+        result.addAll(worker.getIndex().search(query));
+      }
+      return result;
+    }
+
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Hands the trees of its delegate over to a {@link DispatchingVisitor}, and gives the scanner a stand-in made of the root of each
+ * tree and of its last token only, so that the walker of the scanner does not go through the whole tree a second time.
+ * Must be used by a single scanner, as it keeps the tree of the last parsed file.
+ */
+class DispatchingParser extends Parser<Grammar> {
+
+  private final Parser<Grammar> delegate;
+  private AstNode lastStandIn;
+  private AstNode lastTree;
+
+  DispatchingParser(Parser<Grammar> delegate) {
+    super(delegate.getGrammar());
+    setRootRule(delegate.getRootRule());
+    this.delegate = delegate;
+  }
+
+  @Override
+  public AstNode parse(File file) {
+    return handOver(delegate.parse(file));
+  }
+
+  @Override
+  public AstNode parse(String source) {
+    return handOver(delegate.parse(source));
+  }
+
+  @Override
+  public AstNode parse(List<Token> tokens) {
+    return handOver(delegate.parse(tokens));
+  }
+
+  private AstNode handOver(AstNode tree) {
+    AstNode standIn = new AstNode(tree.getType(), tree.getName(), tree.getToken());
+    Token lastToken = tree.getLastToken();
+    if (lastToken != null && lastToken != tree.getToken()) {
+      standIn.addChild(new AstNode(lastToken));
+    }
+    lastStandIn = standIn;
+    lastTree = tree;
+    return standIn;
+  }
+
+  /**
+   * Returns the tree the given node stands in for, or the node itself if it was not returned by this parser.
+   */
+  @Nullable
+  AstNode getTree(@Nullable AstNode standIn) {
+    return standIn != null && standIn == lastStandIn ? lastTree : standIn;
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import org.sonar.squidbridge.AstScannerExceptionHandler;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Single visitor registered on a squid-bridge scanner in place of the given ones, which it walks through each file with a
+ * {@link CSharpAstWalker}. The scanner keeps running its own loop over the files, parse error handling included, but its parser
+ * is a {@link DispatchingParser}: the walker of the scanner only goes through the stand-in of each tree, and this visitor gets the
+ * tree itself from the parser.
+ */
+class DispatchingVisitor extends SquidAstVisitor<Grammar> implements AstScannerExceptionHandler {
+
+  private final DispatchingParser parser;
+  private final List<SquidAstVisitor<Grammar>> visitors;
+  private CSharpAstWalker walker;
+  private AstNode tree;
+
+  DispatchingVisitor(DispatchingParser parser, List<SquidAstVisitor<Grammar>> visitors) {
+    this.parser = parser;
+    this.visitors = ImmutableList.copyOf(visitors);
+  }
+
+  @Override
+  public void setContext(SquidAstVisitorContext<Grammar> context) {
+    super.setContext(context);
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      visitor.setContext(context);
+    }
+  }
+
+  @Override
+  public void init() {
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      visitor.init();
+    }
+    // Most visitors subscribe to their node types in init()
+    walker = new CSharpAstWalker(visitors);
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    tree = parser.getTree(astNode);
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      visitor.visitFile(tree);
+    }
+    if (tree != null) {
+      walker.walk(tree);
+    }
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    for (int i = visitors.size() - 1; i >= 0; i--) {
+      visitors.get(i).leaveFile(tree);
+    }
+    tree = null;
+  }
+
+  @Override
+  public void destroy() {
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      visitor.destroy();
+    }
+  }
+
+  @Override
+  public void processRecognitionException(RecognitionException e) {
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      if (visitor instanceof AstScannerExceptionHandler) {
+        ((AstScannerExceptionHandler) visitor).processRecognitionException(e);
+      }
+    }
+  }
+
+  @Override
+  public void processException(Exception e) {
+    for (SquidAstVisitor<Grammar> visitor : visitors) {
+      if (visitor instanceof AstScannerExceptionHandler) {
+        ((AstScannerExceptionHandler) visitor).processException(e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orders files by decreasing estimated analysis time, so that when they are handed out to several workers, the last ones
+ * are short and all the workers finish at about the same time. The time of a file is the one its analysis took the last
+ * time it was recorded, or is estimated from its size otherwise.
+ */
+public class FileScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileScheduler.class);
+
+  private final Map<String, Long> analysisTimes = new ConcurrentHashMap<String, Long>();
+  private final Set<String> recordedFiles = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * Loads the analysis times saved by {@link #save(File)}. Missing files give an empty history, and malformed lines are ignored.
+   */
+  public static FileScheduler load(File file) {
+    FileScheduler scheduler = new FileScheduler();
+    if (file.isFile()) {
+      try {
+        for (String line : Files.readLines(file, Charsets.UTF_8)) {
+          int separator = line.indexOf(' ');
+          if (separator > 0 && CharMatcher.DIGIT.matchesAllOf(line.substring(0, separator))) {
+            scheduler.analysisTimes.put(line.substring(separator + 1), Long.parseLong(line.substring(0, separator)));
+          }
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to read the C# analysis times: " + file, e);
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Saves the times of the files recorded since this scheduler was created: the ones of files which were not analyzed, which
+   * may well have been deleted, are dropped.
+   */
+  public void save(File file) {
+    StringBuilder content = new StringBuilder();
+    for (Map.Entry<String, Long> entry : analysisTimes.entrySet()) {
+      if (recordedFiles.contains(entry.getKey())) {
+        content.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+      }
+    }
+    try {
+      Files.createParentDirs(file);
+      Files.write(content, file, Charsets.UTF_8);
+    } catch (IOException e) {
+      LOG.warn("Unable to write the C# analysis times: " + file, e);
+    }
+  }
+
+  /**
+   * Called concurrently by the workers once each file has been analyzed.
+   */
+  public void record(File file, long millis) {
+    analysisTimes.put(file.getAbsolutePath(), millis);
+    recordedFiles.add(file.getAbsolutePath());
+  }
+
+  /**
+   * Returns the time recorded for the given file since this scheduler was created, or null if it has not been analyzed.
+   */
+  @Nullable
+  public Long getRecordedTime(File file) {
+    String path = file.getAbsolutePath();
+    return recordedFiles.contains(path) ? analysisTimes.get(path) : null;
+  }
+
+  /**
+   * Returns the given files, the longest to analyze first. Sizes are converted to times using the ratio between the
+   * recorded times and the sizes of the files which have one.
+   */
+  public List<File> schedule(Collection<File> files) {
+    long recordedMillis = 0;
+    long recordedBytes = 0;
+    final Map<File, Double> costs = Maps.newHashMap();
+    for (File file : files) {
+      Long millis = analysisTimes.get(file.getAbsolutePath());
+      if (millis != null) {
+        recordedMillis += millis;
+        recordedBytes += file.length();
+        costs.put(file, millis.doubleValue());
+      }
+    }
+
+    double millisPerByte = recordedBytes == 0 ? 1 : (double) recordedMillis / recordedBytes;
+    for (File file : files) {
+      if (!costs.containsKey(file)) {
+        costs.put(file, file.length() * millisPerByte);
+      }
+    }
+
+    List<File> result = Lists.newArrayList(files);
+    Collections.sort(result, new Comparator<File>() {
+      @Override
+      public int compare(File left, File right) {
+        return Double.compare(costs.get(right), costs.get(left));
+      }
+    });
+    return result;
+  }
+
+}
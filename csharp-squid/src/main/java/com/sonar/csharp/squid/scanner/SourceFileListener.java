@@ -0,0 +1,36 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import org.sonar.squidbridge.api.SourceFile;
+
+/**
+ * Receives each {@link SourceFile} as soon as its analysis is complete, when scanning in streaming mode.
+ */
+public interface SourceFileListener {
+
+  /**
+   * Called once the given file has been fully visited and its measures aggregated from the ones of its classes and members.
+   * The file is not referenced anymore by the scanner afterwards.
+   * When scanning with several threads, this method is called concurrently from all of them.
+   */
+  void onSourceFile(SourceFile sourceFile);
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeTreeDecorator;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
+
+/**
+ * Project which does not keep its files: each file is handed over to a {@link SourceFileListener} once the next one is started,
+ * or once the scan is over, so that only the source code tree of the file being analyzed stays in memory.
+ * As files are not attached to the project, neither them nor their classes and members are added to the index of the scanner.
+ */
+class StreamingSourceProject extends SourceProject {
+
+  private final SourceFileListener listener;
+  private SourceFile currentFile;
+
+  public StreamingSourceProject(SourceFileListener listener) {
+    super("C# Project");
+    this.listener = listener;
+  }
+
+  @Override
+  public SourceCode addChild(SourceCode child) {
+    flush();
+    currentFile = (SourceFile) child;
+    return this;
+  }
+
+  public void flush() {
+    if (currentFile == null) {
+      return;
+    }
+
+    SourceFile file = currentFile;
+    currentFile = null;
+
+    SourceProject tree = new SourceProject(getKey());
+    tree.addChild(file);
+    new SourceCodeTreeDecorator(tree).decorateWith(CSharpMetric.values());
+
+    listener.onSourceFile(file);
+  }
+
+  /**
+   * Visitor to register last on the scanner, which flushes the last file at the end of the scan.
+   */
+  public SquidAstVisitor<Grammar> createFlushVisitor() {
+    return new SquidAstVisitor<Grammar>() {
+
+      @Override
+      public void destroy() {
+        flush();
+      }
+
+    };
+  }
+
+}
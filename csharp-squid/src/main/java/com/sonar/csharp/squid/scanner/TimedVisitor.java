@@ -0,0 +1,187 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.sonar.csharp.squid.scanner.VisitorTimings.Phase;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import org.sonar.squidbridge.AstScannerExceptionHandler;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContext;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Forwards every call to its delegate, and records how long it took. Each instance is used by a single scanner thread,
+ * so the counters are plain fields.
+ * Calls for nodes and tokens are far too frequent and short to read the clock twice for each of them: only one out of
+ * {@link #SAMPLING_PERIOD} is timed, and the time of the others is estimated from it.
+ */
+class TimedVisitor extends SquidAstVisitor<Grammar> implements AstScannerExceptionHandler {
+
+  static final int SAMPLING_PERIOD = 16;
+
+  private static final int INIT = Phase.INIT.ordinal();
+  private static final int VISIT_FILE = Phase.VISIT_FILE.ordinal();
+  private static final int VISIT_NODE = Phase.VISIT_NODE.ordinal();
+  private static final int VISIT_TOKEN = Phase.VISIT_TOKEN.ordinal();
+  private static final int LEAVE_NODE = Phase.LEAVE_NODE.ordinal();
+  private static final int LEAVE_FILE = Phase.LEAVE_FILE.ordinal();
+
+  private final SquidAstVisitor<Grammar> delegate;
+  private final String name;
+  private final long[] nanos = new long[Phase.values().length];
+  private final long[] timedCalls = new long[Phase.values().length];
+  final long[] calls = new long[Phase.values().length];
+
+  TimedVisitor(SquidAstVisitor<Grammar> delegate, String name) {
+    this.delegate = delegate;
+    this.name = name;
+  }
+
+  SquidAstVisitor<Grammar> getDelegate() {
+    return delegate;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  @Override
+  public void setContext(SquidAstVisitorContext<Grammar> context) {
+    super.setContext(context);
+    delegate.setContext(context);
+  }
+
+  @Override
+  public List<AstNodeType> getAstNodeTypesToVisit() {
+    return delegate.getAstNodeTypesToVisit();
+  }
+
+  @Override
+  public void init() {
+    long start = System.nanoTime();
+    delegate.init();
+    calls[INIT]++;
+    record(INIT, start);
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.visitFile(astNode);
+    calls[VISIT_FILE]++;
+    record(VISIT_FILE, start);
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    if (isSampled(VISIT_NODE)) {
+      long start = System.nanoTime();
+      delegate.visitNode(astNode);
+      record(VISIT_NODE, start);
+    } else {
+      delegate.visitNode(astNode);
+    }
+  }
+
+  @Override
+  public void leaveNode(AstNode astNode) {
+    if (isSampled(LEAVE_NODE)) {
+      long start = System.nanoTime();
+      delegate.leaveNode(astNode);
+      record(LEAVE_NODE, start);
+    } else {
+      delegate.leaveNode(astNode);
+    }
+  }
+
+  @Override
+  public void leaveFile(@Nullable AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.leaveFile(astNode);
+    calls[LEAVE_FILE]++;
+    record(LEAVE_FILE, start);
+  }
+
+  @Override
+  public void destroy() {
+    delegate.destroy();
+  }
+
+  @Override
+  public void processRecognitionException(RecognitionException e) {
+    if (delegate instanceof AstScannerExceptionHandler) {
+      ((AstScannerExceptionHandler) delegate).processRecognitionException(e);
+    }
+  }
+
+  @Override
+  public void processException(Exception e) {
+    if (delegate instanceof AstScannerExceptionHandler) {
+      ((AstScannerExceptionHandler) delegate).processException(e);
+    }
+  }
+
+  boolean isSampled(int phase) {
+    return calls[phase]++ % SAMPLING_PERIOD == 0;
+  }
+
+  void record(int phase, long start) {
+    nanos[phase] += System.nanoTime() - start;
+    timedCalls[phase]++;
+  }
+
+  /**
+   * Time spent in the given phase, extrapolated to all calls when only some of them were timed.
+   */
+  long estimateNanos(int phase) {
+    return timedCalls[phase] == 0 ? 0 : (long) ((double) nanos[phase] * calls[phase] / timedCalls[phase]);
+  }
+
+  /**
+   * Only visitors of tokens are given one, as the walker calls each of them on every token.
+   */
+  static class WithTokens extends TimedVisitor implements AstAndTokenVisitor {
+
+    WithTokens(SquidAstVisitor<Grammar> delegate, String name) {
+      super(delegate, name);
+    }
+
+    @Override
+    public void visitToken(Token token) {
+      if (isSampled(VISIT_TOKEN)) {
+        long start = System.nanoTime();
+        ((AstAndTokenVisitor) getDelegate()).visitToken(token);
+        record(VISIT_TOKEN, start);
+      } else {
+        ((AstAndTokenVisitor) getDelegate()).visitToken(token);
+      }
+    }
+
+  }
+
+}
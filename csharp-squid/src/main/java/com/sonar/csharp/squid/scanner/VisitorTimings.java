@@ -0,0 +1,144 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates the time spent in each visitor of the scanners created with it, see
+ * {@link CSharpAstScanner#create(com.sonar.csharp.squid.CSharpConfiguration, VisitorTimings, SquidAstVisitor...)}.
+ * Visitors are timed by wrapping them, so scanners created without it do not pay anything.
+ */
+public class VisitorTimings {
+
+  public enum Phase {
+    INIT,
+    VISIT_FILE,
+    VISIT_NODE,
+    VISIT_TOKEN,
+    LEAVE_NODE,
+    LEAVE_FILE
+  }
+
+  /**
+   * Time spent in, and number of calls to, each phase of a visitor, summed over its instances in all the scanners.
+   * The time spent visiting nodes and tokens is estimated from a sample of the calls.
+   */
+  public static class Timing {
+
+    private final String visitor;
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] calls = new long[Phase.values().length];
+
+    public Timing(String visitor) {
+      this.visitor = visitor;
+    }
+
+    public String getVisitor() {
+      return visitor;
+    }
+
+    public long getNanos(Phase phase) {
+      return nanos[phase.ordinal()];
+    }
+
+    public long getCalls(Phase phase) {
+      return calls[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+      long total = 0;
+      for (long phaseNanos : nanos) {
+        total += phaseNanos;
+      }
+      return total;
+    }
+
+    void add(TimedVisitor visitor) {
+      for (int i = 0; i < nanos.length; i++) {
+        nanos[i] += visitor.estimateNanos(i);
+        calls[i] += visitor.calls[i];
+      }
+    }
+
+  }
+
+  private final List<TimedVisitor> visitors = Lists.newArrayList();
+
+  /**
+   * Returns visitors behaving as the given ones, which record the time spent in them.
+   * The given visitors must be those of a single scanner: a visitor is named after its class, followed by its rank among the
+   * visitors of that class when there are several of them, e.g. "CounterVisitor#2", so that each one gets its own timing.
+   * The returned visitors visit tokens only if the given ones do.
+   */
+  public synchronized List<SquidAstVisitor<Grammar>> wrap(List<SquidAstVisitor<Grammar>> scannerVisitors) {
+    List<SquidAstVisitor<Grammar>> result = Lists.newArrayList();
+    Map<Class<?>, Integer> ranks = Maps.newHashMap();
+    for (SquidAstVisitor<Grammar> visitor : scannerVisitors) {
+      Integer previousRank = ranks.get(visitor.getClass());
+      int rank = previousRank == null ? 1 : (previousRank + 1);
+      ranks.put(visitor.getClass(), rank);
+      String name = rank == 1 ? visitor.getClass().getName() : (visitor.getClass().getName() + "#" + rank);
+
+      TimedVisitor timedVisitor = visitor instanceof AstAndTokenVisitor ? new TimedVisitor.WithTokens(visitor, name) : new TimedVisitor(visitor, name);
+      visitors.add(timedVisitor);
+      result.add(timedVisitor);
+    }
+    return result;
+  }
+
+  /**
+   * Timings of the visitors wrapped so far, grouped by name and sorted by decreasing total time.
+   * Must not be called while the scanners are running.
+   */
+  public synchronized List<Timing> getTimings() {
+    Map<String, Timing> timings = Maps.newHashMap();
+    for (TimedVisitor visitor : visitors) {
+      String name = visitor.getName();
+      Timing timing = timings.get(name);
+      if (timing == null) {
+        timing = new Timing(name);
+        timings.put(name, timing);
+      }
+      timing.add(visitor);
+    }
+
+    List<Timing> result = Lists.newArrayList(timings.values());
+    Collections.sort(result, new Comparator<Timing>() {
+      @Override
+      public int compare(Timing left, Timing right) {
+        long leftNanos = left.getTotalNanos();
+        long rightNanos = right.getTotalNanos();
+        return leftNanos < rightNanos ? 1 : (leftNanos == rightNanos ? left.getVisitor().compareTo(right.getVisitor()) : -1);
+      }
+    });
+    return result;
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.tree;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Visitor that adds the declared types, and the names of the types they refer to, to a {@link TypeDependencyGraph}.
+ * It relies on the type resources created by {@link CSharpTypeVisitor}, so it must be run after it.
+ * The using directives of a file are considered to apply to all the types of the file, whatever namespace they are in.
+ */
+public class CSharpTypeDependencyVisitor extends SquidAstVisitor<Grammar> {
+
+  private final TypeDependencyGraph graph;
+
+  private final List<String> usings = Lists.newArrayList();
+  private final List<String> namespaces = Lists.newArrayList();
+  private final List<Set<String>> referencedNames = Lists.newArrayList();
+
+  public CSharpTypeDependencyVisitor(TypeDependencyGraph graph) {
+    this.graph = graph;
+  }
+
+  @Override
+  public void init() {
+    subscribeTo(
+      CSharpGrammar.USING_NAMESPACE_DIRECTIVE,
+      CSharpGrammar.NAMESPACE_DECLARATION,
+      CSharpGrammar.CLASS_DECLARATION,
+      CSharpGrammar.INTERFACE_DECLARATION,
+      CSharpGrammar.DELEGATE_DECLARATION,
+      CSharpGrammar.STRUCT_DECLARATION,
+      CSharpGrammar.ENUM_DECLARATION,
+      CSharpGrammar.TYPE_NAME);
+  }
+
+  @Override
+  public void visitFile(AstNode astNode) {
+    usings.clear();
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    if (astNode.is(CSharpGrammar.USING_NAMESPACE_DIRECTIVE)) {
+      usings.add(name(astNode.getFirstChild(CSharpGrammar.NAMESPACE_NAME).getFirstChild()));
+    } else if (astNode.is(CSharpGrammar.NAMESPACE_DECLARATION)) {
+      namespaces.add(name(astNode.getFirstChild(CSharpGrammar.QUALIFIED_IDENTIFIER)));
+    } else if (astNode.is(CSharpGrammar.TYPE_NAME)) {
+      if (!referencedNames.isEmpty()) {
+        referencedNames.get(referencedNames.size() - 1).add(name(astNode.getFirstChild()));
+      }
+    } else {
+      referencedNames.add(Sets.<String>newHashSet());
+    }
+  }
+
+  @Override
+  public void leaveNode(AstNode astNode) {
+    if (astNode.is(CSharpGrammar.NAMESPACE_DECLARATION)) {
+      namespaces.remove(namespaces.size() - 1);
+    } else if (!astNode.is(CSharpGrammar.USING_NAMESPACE_DIRECTIVE, CSharpGrammar.TYPE_NAME)) {
+      Set<String> names = referencedNames.remove(referencedNames.size() - 1);
+      graph.addType(getContext().peekSourceCode().getKey(), Joiner.on('.').join(namespaces), usings, names);
+    }
+  }
+
+  @Override
+  public void leaveFile(AstNode astNode) {
+    namespaces.clear();
+    referencedNames.clear();
+  }
+
+  /**
+   * Name of a namespace or type, or of a qualified identifier, in the same format as the type keys of {@link CSharpTypeVisitor}:
+   * type arguments are replaced by their number between angle brackets, and aliases such as "global::" are left out.
+   */
+  static String name(AstNode namespaceOrTypeName) {
+    if (namespaceOrTypeName.getNumberOfChildren() == 1 && namespaceOrTypeName.getFirstChild().is(GenericTokenType.IDENTIFIER)) {
+      return namespaceOrTypeName.getTokenValue();
+    }
+    StringBuilder sb = new StringBuilder();
+    appendName(sb, namespaceOrTypeName);
+    return sb.toString();
+  }
+
+  private static void appendName(StringBuilder sb, AstNode node) {
+    for (AstNode child : node.getChildren()) {
+      if (child.is(GenericTokenType.IDENTIFIER)) {
+        if (sb.length() > 0) {
+          sb.append('.');
+        }
+        sb.append(child.getTokenValue());
+      } else if (child.is(CSharpGrammar.TYPE_ARGUMENT_LIST)) {
+        sb.append('<').append(child.getChildren(CSharpGrammar.TYPE_ARGUMENT).size()).append('>');
+      } else if (child.is(CSharpGrammar.QUALIFIED_ALIAS_MEMBER)) {
+        sb.append(child.getChildren(GenericTokenType.IDENTIFIER).get(1).getTokenValue());
+        AstNode typeArguments = child.getFirstChild(CSharpGrammar.TYPE_ARGUMENT_LIST);
+        if (typeArguments != null) {
+          sb.append('<').append(typeArguments.getChildren(CSharpGrammar.TYPE_ARGUMENT).size()).append('>');
+        }
+      }
+    }
+  }
+
+}
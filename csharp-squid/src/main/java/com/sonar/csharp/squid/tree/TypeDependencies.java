@@ -0,0 +1,292 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.tree;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Dependency graph between the types declared in the analyzed files, as computed by {@link TypeDependencyGraph#compute()},
+ * with the coupling and the cycles of the types and of their namespaces.
+ * <ul>
+ * <li>Afferent coupling (Ca): number of types which depend on the type, or on a type of the namespace from another namespace</li>
+ * <li>Efferent coupling (Ce): number of types the type depends on, or types of other namespaces a type of the namespace depends on</li>
+ * <li>Instability: Ce / (Ca + Ce), or 0 when both are 0</li>
+ * <li>Cycle size: number of types, or namespaces, of the strongly connected component of the type, or namespace, which is 1
+ * when it is not part of a cycle</li>
+ * </ul>
+ */
+public class TypeDependencies {
+
+  private final String[] typeKeys;
+  private final int[] edgeStarts;
+  private final int[] edges;
+  private final int[] typeAfferent;
+  private final int[] typeCycleSizes;
+
+  private final String[] namespaces;
+  private final int[] typeNamespaces;
+  private final int[] namespaceAfferent;
+  private final int[] namespaceEfferent;
+  private final int[] namespaceCycleSizes;
+
+  TypeDependencies(String[] typeKeys, String[] typeNamespaceNames, int[] edgeStarts, int[] edges) {
+    this.typeKeys = typeKeys;
+    this.edgeStarts = edgeStarts;
+    this.edges = edges;
+    int typeCount = typeKeys.length;
+
+    typeAfferent = new int[typeCount];
+    for (int target : edges) {
+      typeAfferent[target]++;
+    }
+    typeCycleSizes = cycleSizes(typeCount, edgeStarts, edges);
+
+    Map<String, Integer> namespaceIds = Maps.newLinkedHashMap();
+    typeNamespaces = new int[typeCount];
+    for (int t = 0; t < typeCount; t++) {
+      Integer id = namespaceIds.get(typeNamespaceNames[t]);
+      if (id == null) {
+        id = namespaceIds.size();
+        namespaceIds.put(typeNamespaceNames[t], id);
+      }
+      typeNamespaces[t] = id;
+    }
+    namespaces = namespaceIds.keySet().toArray(new String[namespaceIds.size()]);
+    int namespaceCount = namespaces.length;
+
+    // Types grouped by namespace: the types of namespace n are membersByNamespace[memberStarts[n]] to [memberStarts[n + 1] - 1]
+    int[] memberStarts = new int[namespaceCount + 1];
+    for (int t = 0; t < typeCount; t++) {
+      memberStarts[typeNamespaces[t] + 1]++;
+    }
+    for (int n = 0; n < namespaceCount; n++) {
+      memberStarts[n + 1] += memberStarts[n];
+    }
+    int[] members = new int[typeCount];
+    int[] next = Arrays.copyOf(memberStarts, namespaceCount);
+    for (int t = 0; t < typeCount; t++) {
+      members[next[typeNamespaces[t]]++] = t;
+    }
+
+    int[] reverseStarts = new int[typeCount + 1];
+    int[] reverseEdges = reverse(typeCount, edgeStarts, edges, reverseStarts);
+
+    namespaceEfferent = new int[namespaceCount];
+    namespaceAfferent = new int[namespaceCount];
+    int[] namespaceEdgeStarts = new int[namespaceCount + 1];
+    int[] namespaceEdges = new int[edges.length];
+    int namespaceEdgeCount = 0;
+    // Markers of the last namespace for which a type, or a namespace, was counted, so that each is counted once per namespace
+    int[] countedTypes = new int[typeCount];
+    int[] countedNamespaces = new int[namespaceCount];
+    int[] countedReverseTypes = new int[typeCount];
+    Arrays.fill(countedTypes, -1);
+    Arrays.fill(countedNamespaces, -1);
+    Arrays.fill(countedReverseTypes, -1);
+    for (int n = 0; n < namespaceCount; n++) {
+      for (int m = memberStarts[n]; m < memberStarts[n + 1]; m++) {
+        int type = members[m];
+        for (int e = edgeStarts[type]; e < edgeStarts[type + 1]; e++) {
+          int target = edges[e];
+          int targetNamespace = typeNamespaces[target];
+          if (targetNamespace != n) {
+            if (countedTypes[target] != n) {
+              countedTypes[target] = n;
+              namespaceEfferent[n]++;
+            }
+            if (countedNamespaces[targetNamespace] != n) {
+              countedNamespaces[targetNamespace] = n;
+              namespaceEdges[namespaceEdgeCount] = targetNamespace;
+              namespaceEdgeCount++;
+            }
+          }
+        }
+        for (int e = reverseStarts[type]; e < reverseStarts[type + 1]; e++) {
+          int source = reverseEdges[e];
+          if (typeNamespaces[source] != n && countedReverseTypes[source] != n) {
+            countedReverseTypes[source] = n;
+            namespaceAfferent[n]++;
+          }
+        }
+      }
+      namespaceEdgeStarts[n + 1] = namespaceEdgeCount;
+    }
+    namespaceCycleSizes = cycleSizes(namespaceCount, namespaceEdgeStarts, namespaceEdges);
+  }
+
+  private static int[] reverse(int nodeCount, int[] edgeStarts, int[] edges, int[] reverseStarts) {
+    for (int target : edges) {
+      reverseStarts[target + 1]++;
+    }
+    for (int t = 0; t < nodeCount; t++) {
+      reverseStarts[t + 1] += reverseStarts[t];
+    }
+    int[] next = Arrays.copyOf(reverseStarts, nodeCount);
+    int[] reverseEdges = new int[edges.length];
+    for (int source = 0; source < nodeCount; source++) {
+      for (int e = edgeStarts[source]; e < edgeStarts[source + 1]; e++) {
+        reverseEdges[next[edges[e]]++] = source;
+      }
+    }
+    return reverseEdges;
+  }
+
+  /**
+   * Size of the strongly connected component of each node, computed with the algorithm of Tarjan. The depth-first search uses its
+   * own stack rather than recursion, so that long chains of dependencies do not overflow the stack of the thread.
+   */
+  static int[] cycleSizes(int nodeCount, int[] edgeStarts, int[] edges) {
+    int[] index = new int[nodeCount];
+    int[] lowLink = new int[nodeCount];
+    boolean[] onStack = new boolean[nodeCount];
+    int[] componentStack = new int[nodeCount];
+    int componentStackSize = 0;
+    int[] callStack = new int[nodeCount];
+    int[] nextEdge = new int[nodeCount];
+    int[] sizes = new int[nodeCount];
+    Arrays.fill(index, -1);
+    int nextIndex = 0;
+
+    for (int root = 0; root < nodeCount; root++) {
+      if (index[root] != -1) {
+        continue;
+      }
+      int depth = 0;
+      callStack[0] = root;
+      index[root] = nextIndex;
+      lowLink[root] = nextIndex;
+      nextIndex++;
+      nextEdge[root] = edgeStarts[root];
+      componentStack[componentStackSize++] = root;
+      onStack[root] = true;
+
+      while (depth >= 0) {
+        int node = callStack[depth];
+        if (nextEdge[node] < edgeStarts[node + 1]) {
+          int target = edges[nextEdge[node]];
+          nextEdge[node]++;
+          if (index[target] == -1) {
+            index[target] = nextIndex;
+            lowLink[target] = nextIndex;
+            nextIndex++;
+            nextEdge[target] = edgeStarts[target];
+            componentStack[componentStackSize++] = target;
+            onStack[target] = true;
+            depth++;
+            callStack[depth] = target;
+          } else if (onStack[target]) {
+            lowLink[node] = Math.min(lowLink[node], index[target]);
+          }
+        } else {
+          if (lowLink[node] == index[node]) {
+            int start = componentStackSize;
+            do {
+              start--;
+            } while (componentStack[start] != node);
+            int size = componentStackSize - start;
+            for (int i = start; i < componentStackSize; i++) {
+              onStack[componentStack[i]] = false;
+              sizes[componentStack[i]] = size;
+            }
+            componentStackSize = start;
+          }
+          depth--;
+          if (depth >= 0) {
+            int parent = callStack[depth];
+            lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+          }
+        }
+      }
+    }
+    return sizes;
+  }
+
+  public int getTypeCount() {
+    return typeKeys.length;
+  }
+
+  public int getDependencyCount() {
+    return edges.length;
+  }
+
+  public String getTypeKey(int type) {
+    return typeKeys[type];
+  }
+
+  public String getTypeNamespace(int type) {
+    return namespaces[typeNamespaces[type]];
+  }
+
+  /**
+   * Types the given one depends on.
+   */
+  public int[] getDependencies(int type) {
+    return Arrays.copyOfRange(edges, edgeStarts[type], edgeStarts[type + 1]);
+  }
+
+  public int getTypeAfferentCoupling(int type) {
+    return typeAfferent[type];
+  }
+
+  public int getTypeEfferentCoupling(int type) {
+    return edgeStarts[type + 1] - edgeStarts[type];
+  }
+
+  public double getTypeInstability(int type) {
+    return instability(getTypeAfferentCoupling(type), getTypeEfferentCoupling(type));
+  }
+
+  public int getTypeCycleSize(int type) {
+    return typeCycleSizes[type];
+  }
+
+  public int getNamespaceCount() {
+    return namespaces.length;
+  }
+
+  public String getNamespace(int namespace) {
+    return namespaces[namespace];
+  }
+
+  public int getNamespaceAfferentCoupling(int namespace) {
+    return namespaceAfferent[namespace];
+  }
+
+  public int getNamespaceEfferentCoupling(int namespace) {
+    return namespaceEfferent[namespace];
+  }
+
+  public double getNamespaceInstability(int namespace) {
+    return instability(namespaceAfferent[namespace], namespaceEfferent[namespace]);
+  }
+
+  public int getNamespaceCycleSize(int namespace) {
+    return namespaceCycleSizes[namespace];
+  }
+
+  private static double instability(int afferent, int efferent) {
+    int total = afferent + efferent;
+    return total == 0 ? 0 : ((double) efferent / total);
+  }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.tree;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the types declared in the analyzed files and the names of the types they refer to, and then resolves those names into
+ * a dependency graph between the declared types. Types and names are identified by ints and references are kept in int arrays,
+ * so that the memory used is linear in the number of references.
+ * Types can be added by the scanners running in parallel.
+ */
+public class TypeDependencyGraph {
+
+  private final Map<String, Integer> typeIds = Maps.newHashMap();
+  private final List<String> typeKeys = Lists.newArrayList();
+  private final List<String> typeNamespaces = Lists.newArrayList();
+
+  private final Map<String, Integer> nameIds = Maps.newHashMap();
+  private final List<String> names = Lists.newArrayList();
+
+  private final Map<String, Integer> usingsIds = Maps.newHashMap();
+  private final List<String[]> usings = Lists.newArrayList();
+
+  // One entry per reference: the referring type, the referred name, and the using directives of the file it was found in
+  private int[] referenceSources = new int[64];
+  private int[] referenceNames = new int[64];
+  private int[] referenceUsings = new int[64];
+  private int referenceCount;
+
+  /**
+   * Adds a declared type, or more references to it when it was already added, for instance when it is a partial class.
+   *
+   * @param key qualified name of the type, as computed by {@link CSharpTypeVisitor}
+   * @param namespace namespace in which the type is declared, empty for the global namespace
+   * @param fileUsings namespaces imported by using directives in the file the type is declared in
+   * @param referencedNames names of the types referred to by this declaration, which can be qualified, and with the number of
+   * their type arguments between angle brackets as in type keys, such as "System.Collections.Generic.List&lt;1&gt;"
+   */
+  public synchronized void addType(String key, String namespace, Collection<String> fileUsings, Collection<String> referencedNames) {
+    int type = typeId(key, namespace);
+    int usingsId = usingsId(fileUsings);
+    for (String name : referencedNames) {
+      if (referenceCount == referenceSources.length) {
+        int capacity = referenceCount * 2;
+        referenceSources = Arrays.copyOf(referenceSources, capacity);
+        referenceNames = Arrays.copyOf(referenceNames, capacity);
+        referenceUsings = Arrays.copyOf(referenceUsings, capacity);
+      }
+      referenceSources[referenceCount] = type;
+      referenceNames[referenceCount] = nameId(name);
+      referenceUsings[referenceCount] = usingsId;
+      referenceCount++;
+    }
+  }
+
+  public synchronized int getTypeCount() {
+    return typeKeys.size();
+  }
+
+  private int typeId(String key, String namespace) {
+    Integer id = typeIds.get(key);
+    if (id == null) {
+      id = typeKeys.size();
+      typeIds.put(key, id);
+      typeKeys.add(key);
+      typeNamespaces.add(namespace);
+    }
+    return id;
+  }
+
+  private int nameId(String name) {
+    Integer id = nameIds.get(name);
+    if (id == null) {
+      id = names.size();
+      nameIds.put(name, id);
+      names.add(name);
+    }
+    return id;
+  }
+
+  private int usingsId(Collection<String> fileUsings) {
+    String joined = Joiner.on(';').join(fileUsings);
+    Integer id = usingsIds.get(joined);
+    if (id == null) {
+      id = usings.size();
+      usingsIds.put(joined, id);
+      usings.add(fileUsings.toArray(new String[fileUsings.size()]));
+    }
+    return id;
+  }
+
+  /**
+   * Resolves the referenced names and computes the coupling and cycles of the types and namespaces. Names which are not the ones of
+   * declared types, such as the ones of library types, are left out, as well as the references of types to themselves.
+   */
+  public synchronized TypeDependencies compute() {
+    int typeCount = typeKeys.size();
+    int[] targets = new int[referenceCount];
+    for (int i = 0; i < referenceCount; i++) {
+      targets[i] = resolve(typeKeys.get(referenceSources[i]), names.get(referenceNames[i]), usings.get(referenceUsings[i]));
+    }
+
+    // Compressed adjacency lists: the dependencies of type t are edges[edgeStarts[t]] to edges[edgeStarts[t + 1] - 1]
+    int[] edgeStarts = new int[typeCount + 1];
+    int[] lastSource = new int[typeCount];
+    Arrays.fill(lastSource, -1);
+    int[] order = sortBySource(typeCount);
+    int edgeCount = 0;
+    int[] edges = new int[referenceCount];
+    for (int i = 0; i < referenceCount; i++) {
+      int reference = order[i];
+      int source = referenceSources[reference];
+      int target = targets[reference];
+      // References are sorted by source, so a target already seen for the current source is a duplicate
+      if (target != -1 && target != source && lastSource[target] != source) {
+        lastSource[target] = source;
+        edges[edgeCount] = target;
+        edgeCount++;
+        edgeStarts[source + 1]++;
+      }
+    }
+    for (int t = 0; t < typeCount; t++) {
+      edgeStarts[t + 1] += edgeStarts[t];
+    }
+
+    return new TypeDependencies(
+      typeKeys.toArray(new String[typeCount]),
+      typeNamespaces.toArray(new String[typeCount]),
+      edgeStarts,
+      Arrays.copyOf(edges, edgeCount));
+  }
+
+  private int[] sortBySource(int typeCount) {
+    int[] starts = new int[typeCount + 1];
+    for (int i = 0; i < referenceCount; i++) {
+      starts[referenceSources[i] + 1]++;
+    }
+    for (int t = 0; t < typeCount; t++) {
+      starts[t + 1] += starts[t];
+    }
+    int[] order = new int[referenceCount];
+    for (int i = 0; i < referenceCount; i++) {
+      order[starts[referenceSources[i]]++] = i;
+    }
+    return order;
+  }
+
+  /**
+   * Looks the name up as C# does, but without checking that it is a type rather than a namespace: first in the type and in its
+   * enclosing types and namespaces, from the innermost to the global namespace, then in the namespaces imported by the file.
+   *
+   * @return the id of the referenced type, or -1 if it is not a declared type
+   */
+  private int resolve(String sourceKey, String name, String[] fileUsings) {
+    String scope = sourceKey;
+    while (true) {
+      Integer id = typeIds.get(scope.isEmpty() ? name : (scope + "." + name));
+      if (id != null) {
+        return id;
+      }
+      if (scope.isEmpty()) {
+        break;
+      }
+      int dot = scope.lastIndexOf('.');
+      scope = dot == -1 ? "" : scope.substring(0, dot);
+    }
+    for (String namespace : fileUsings) {
+      Integer id = typeIds.get(namespace + "." + name);
+      if (id != null) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+}
@@ -26,11 +26,15 @@ import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -46,22 +50,63 @@ public class ProgressReportTest {
     ProgressReport report = new ProgressReport(ProgressReport.class.getName(), 500, logger);
     File file = mock(File.class);
     when(file.getAbsolutePath()).thenReturn("foo");
-    report.nextFile(file);
-    report.start(42);
+    when(file.length()).thenReturn(2048L);
+    report.start(Collections.nCopies(42, file));
+    report.fileStarted(file);
+    report.fileFinished(file, 100);
     Thread.sleep(800);
     report.stop();
     Thread.sleep(300);
 
     ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
     verify(logger, atLeast(3)).info(captor.capture());
+    verify(logger, never()).warn(anyString());
 
     List<String> messages = captor.getAllValues();
     assertThat(messages.size()).isGreaterThanOrEqualTo(3);
     assertThat(messages.get(0)).isEqualTo("42 source files to be analyzed");
     for (int i = 1; i < messages.size() - 1; i++) {
-      assertThat(messages.get(i)).isEqualTo("1/42" + " files analyzed, last was foo");
+      assertThat(messages.get(i)).matches("1/42 files analyzed, last was foo \\([0-9.]+ files/s, [0-9.]+ KB/s, [0-9]+ lines/s, about [0-9]+ s remaining\\)");
     }
-    assertThat(messages.get(messages.size() - 1)).isEqualTo("42/42" + " source files analyzed");
+    assertThat(messages.get(messages.size() - 1)).matches("42/42 source files analyzed \\(.* files/s, .* KB/s, .* lines/s\\)");
+  }
+
+  @Test
+  public void should_warn_about_stalled_files() throws Exception {
+    Logger logger = mock(Logger.class);
+
+    ProgressReport report = new ProgressReport(ProgressReport.class.getName(), 100, 200, logger);
+    File file = mock(File.class);
+    when(file.getAbsolutePath()).thenReturn("foo");
+    File stalledFile = mock(File.class);
+    when(stalledFile.getAbsolutePath()).thenReturn("bar");
+    report.start(Arrays.asList(file, stalledFile));
+    report.fileStarted(file);
+    report.fileFinished(file, 10);
+    report.fileStarted(stalledFile);
+    Thread.sleep(500);
+    report.stop();
+
+    ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+    verify(logger, atLeast(1)).warn(captor.capture());
+    for (String message : captor.getAllValues()) {
+      assertThat(message).matches("Analysis of bar has been running for [0-9]+ s");
+    }
+  }
+
+  @Test
+  public void should_not_warn_about_stalled_files_without_threshold() throws Exception {
+    Logger logger = mock(Logger.class);
+
+    ProgressReport report = new ProgressReport(ProgressReport.class.getName(), 100, 0, logger);
+    File stalledFile = mock(File.class);
+    when(stalledFile.getAbsolutePath()).thenReturn("bar");
+    report.start(Arrays.asList(stalledFile));
+    report.fileStarted(stalledFile);
+    Thread.sleep(300);
+    report.stop();
+
+    verify(logger, never()).warn(anyString());
   }
 
 }
@@ -0,0 +1,126 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SourceTextTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void should_split_lines_as_files_read_lines() throws Exception {
+    String[] contents = {"", "a", "a\n", "a\nbc", "a\r\nbc\rdef\n\n", "\n\r\n\r", "a\n\nb\r\n"};
+    for (int i = 0; i < contents.length; i++) {
+      String content = contents[i];
+      File file = temporaryFolder.newFile("file" + i + ".cs");
+      Files.write(content, file, Charsets.UTF_8);
+      List<String> expected = Files.readLines(file, Charsets.UTF_8);
+
+      SourceText text = SourceText.read(file, Charsets.UTF_8);
+      assertThat(text.getLineCount()).as(content).isEqualTo(expected.size());
+      for (int line = 1; line <= expected.size(); line++) {
+        String actual = content.substring(text.getLineStart(line), text.getLineEnd(line));
+        assertThat(actual).isEqualTo(expected.get(line - 1));
+        assertThat(text.getLineLength(line)).isEqualTo(expected.get(line - 1).length());
+      }
+    }
+  }
+
+  @Test
+  public void should_find_line_of_offset() {
+    SourceText text = SourceText.of("ab\r\nc\n\nd");
+    assertThat(text.getLineOf(0)).isEqualTo(1);
+    assertThat(text.getLineOf(3)).isEqualTo(1);
+    assertThat(text.getLineOf(4)).isEqualTo(2);
+    assertThat(text.getLineOf(6)).isEqualTo(3);
+    assertThat(text.getLineOf(7)).isEqualTo(4);
+    assertThat(text.indexOf('d', 0)).isEqualTo(7);
+    assertThat(text.indexOf('a', 1)).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_decode_with_charset() throws Exception {
+    File file = temporaryFolder.newFile("latin1.cs");
+    Files.write("\u00e9t\u00e9", file, Charsets.ISO_8859_1);
+
+    assertThat(SourceText.read(file, Charsets.ISO_8859_1).getLineLength(1)).isEqualTo(3);
+    assertThat(SourceText.read(file, Charsets.ISO_8859_1).charAt(0)).isEqualTo('\u00e9');
+  }
+
+  @Test
+  public void provider_should_read_each_file_once() throws Exception {
+    File first = temporaryFolder.newFile("first.cs");
+    File second = temporaryFolder.newFile("second.cs");
+    SourceTextProvider provider = new SourceTextProvider(Charsets.UTF_8);
+
+    SourceText text = provider.get(first);
+    assertThat(provider.get(first)).isSameAs(text);
+    assertThat(provider.get(second)).isNotSameAs(text);
+    assertThat(provider.get(second).getFile()).isEqualTo(second);
+  }
+
+  @Test
+  public void should_locate_tokens_and_nodes() {
+    String content = "class A {\r\n\tList< int > f; /* c */\n}";
+    SourceText text = SourceText.of(content);
+    AstNode tree = CSharpParser.create().parse(content);
+
+    for (Token token : tree.getTokens()) {
+      if (!"EOF".equals(token.getValue())) {
+        assertThat(text.getText(token).toString()).isEqualTo(token.getOriginalValue());
+      }
+    }
+    assertThat(text.getText(tree.getFirstDescendant(CSharpGrammar.TYPE)).toString()).isEqualTo("List< int >");
+    assertThat(text.getText(tree.getFirstDescendant(CSharpGrammar.CLASS_BODY)).toString()).isEqualTo(content.substring(8));
+  }
+
+  @Test
+  public void views_should_compare_and_hash_as_strings() {
+    SourceText text = SourceText.of("abcab");
+    CharSequence ab = text.subSequence(0, 2);
+
+    assertThat(ab.toString()).isEqualTo("ab");
+    assertThat(ab.subSequence(1, 2).toString()).isEqualTo("b");
+    assertThat(ab).isEqualTo(text.subSequence(3, 5));
+    assertThat(ab).isNotEqualTo(text.subSequence(1, 3));
+    assertThat(ab.hashCode()).isEqualTo("ab".hashCode());
+    assertThat(SourceText.hash(text, 1, 4)).isEqualTo("bca".hashCode());
+    assertThat(SourceText.contentEquals(ab, "ab")).isTrue();
+    assertThat(SourceText.contentEquals(ab, "abc")).isFalse();
+    assertThat(SourceText.regionEquals(text, 2, 4, "ca")).isTrue();
+    assertThat(SourceText.regionEquals(text, 2, 4, "cb")).isFalse();
+  }
+
+}
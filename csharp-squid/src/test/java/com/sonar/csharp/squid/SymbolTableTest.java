@@ -0,0 +1,97 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid;
+
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Token;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SymbolTableTest {
+
+  private static final String CODE = "class A {"
+    + "  int f;"
+    + "  void m(int p, ref int r, params int[] rest) {"
+    + "    int a = p, b;"
+    + "    for (int i = 0; i < f; i++) { }"
+    + "    Func<int, int> l = x => x + a;"
+    + "    { int c = 0; } { int c = 1; c++; }"
+    + "  }"
+    + "  int this[int index] { set { f = value + index; } }"
+    + "}";
+
+  private final AstNode tree = CSharpParser.create().parse(CODE);
+  private final SymbolTable symbolTable = SymbolTable.build(tree);
+
+  @Test
+  public void should_declare_symbols_in_order() {
+    assertThat(symbolTable.size()).isEqualTo(12);
+    assertSymbol(0, "p", SymbolTable.Kind.PARAMETER, 1);
+    assertSymbol(1, "r", SymbolTable.Kind.PARAMETER, 0);
+    assertSymbol(2, "rest", SymbolTable.Kind.PARAMETER, 0);
+    assertSymbol(3, "a", SymbolTable.Kind.LOCAL_VARIABLE, 1);
+    assertSymbol(4, "b", SymbolTable.Kind.LOCAL_VARIABLE, 0);
+    assertSymbol(5, "i", SymbolTable.Kind.FOR_LOOP_COUNTER, 2);
+    assertSymbol(6, "l", SymbolTable.Kind.LOCAL_VARIABLE, 0);
+    assertSymbol(7, "x", SymbolTable.Kind.LAMBDA_PARAMETER, 1);
+    assertSymbol(8, "c", SymbolTable.Kind.LOCAL_VARIABLE, 0);
+    assertSymbol(9, "c", SymbolTable.Kind.LOCAL_VARIABLE, 1);
+    assertSymbol(10, "index", SymbolTable.Kind.PARAMETER, 1);
+    assertSymbol(11, "value", SymbolTable.Kind.PARAMETER, 1);
+
+    assertThat(symbolTable.isOutOrRef(0)).isFalse();
+    assertThat(symbolTable.isOutOrRef(1)).isTrue();
+    assertThat(symbolTable.getScope(0).is(CSharpGrammar.METHOD_DECLARATION)).isTrue();
+    assertThat(symbolTable.getScope(7).is(CSharpGrammar.LAMBDA_EXPRESSION)).isTrue();
+    assertThat(symbolTable.getScope(11).is(CSharpGrammar.SET_ACCESSOR_DECLARATION)).isTrue();
+    assertThat(symbolTable.getDeclaration(11)).isSameAs(symbolTable.getScope(11));
+  }
+
+  @Test
+  public void should_resolve_references() {
+    for (Token token : tree.getTokens()) {
+      if ("a".equals(token.getValue())) {
+        assertThat(symbolTable.getSymbol(token)).isEqualTo(3);
+      } else if ("f".equals(token.getValue())) {
+        assertThat(symbolTable.getSymbol(token)).isEqualTo(SymbolTable.NO_SYMBOL);
+      }
+    }
+  }
+
+  @Test
+  public void provider_should_build_each_table_once() {
+    SymbolTableProvider provider = new SymbolTableProvider();
+
+    SymbolTable first = provider.get(tree);
+    assertThat(provider.get(tree)).isSameAs(first);
+    assertThat(provider.get(CSharpParser.create().parse(CODE))).isNotSameAs(first);
+    assertThat(provider.get(null).size()).isEqualTo(0);
+  }
+
+  private void assertSymbol(int symbol, String name, SymbolTable.Kind kind, int referenceCount) {
+    assertThat(symbolTable.getName(symbol)).isEqualTo(name);
+    assertThat(symbolTable.getKind(symbol)).isEqualTo(kind);
+    assertThat(symbolTable.getReferenceCount(symbol)).as(name).isEqualTo(referenceCount);
+  }
+
+}
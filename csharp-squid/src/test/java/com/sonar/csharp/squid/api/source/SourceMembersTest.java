@@ -0,0 +1,56 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.api.source;
+
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.api.SourceFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SourceMembersTest {
+
+  @Test
+  public void should_return_members_of_nested_types() {
+    SourceFile file = new SourceFile("Foo.cs");
+    SourceClass foo = new SourceClass("Foo");
+    SourceMember bar = new SourceMember(foo, "Bar()", 2);
+    SourceClass nested = new SourceClass("Foo.Nested");
+    SourceMember baz = new SourceMember(nested, "Baz()", 5);
+
+    file.addChild(foo);
+    foo.addChild(bar);
+    foo.addChild(nested);
+    nested.addChild(baz);
+
+    assertThat(SourceMembers.of(file)).containsOnly(bar, baz);
+    assertThat(SourceMembers.of(nested)).containsOnly(baz);
+    assertThat(SourceMembers.of(bar)).isEmpty();
+  }
+
+  @Test
+  public void should_return_members_of_scanned_file() {
+    SourceFile file = CSharpAstScanner.scanSingleFile(FileUtils.toFile(getClass().getResource("/metric/Money.cs")));
+
+    assertThat(SourceMembers.of(file)).hasSize(31);
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.colorizer;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.colorizer.CodeColorizer;
+import org.sonar.colorizer.HtmlOptions;
+import org.sonar.colorizer.Tokenizer;
+
+import java.io.StringReader;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpLexerTokenizerTest {
+
+  private final CodeColorizer colorizer = new CodeColorizer(ImmutableList.<Tokenizer>of(new CSharpLexerTokenizer()));
+
+  @Test
+  public void keywords_literals_and_comments() {
+    String html = toHtml("/* a < b */ public int i = 0x1F; // end\nchar c = 'a'; double d = 1.5;");
+
+    assertThat(html).isEqualTo(
+        "<span class=\"cppd\">/* a &lt; b */</span> <span class=\"k\">public</span> <span class=\"k\">int</span> i = "
+          + "<span class=\"c\">0x1F</span>; <span class=\"cd\">// end</span>\n"
+          + "<span class=\"k\">char</span> c = <span class=\"s\">'a'</span>; <span class=\"k\">double</span> d = "
+          + "<span class=\"c\">1.5</span>;");
+  }
+
+  @Test
+  public void verbatim_strings() {
+    String html = toHtml("string s = @\"a \"\" // b\r\n#c\";");
+
+    assertThat(html).isEqualTo(
+        "<span class=\"k\">string</span> s = <span class=\"s\">@\"a \"\" // b</span>\r\n<span class=\"s\">#c\"</span>;");
+  }
+
+  @Test
+  public void preprocessor_lines() {
+    String html = toHtml("\n#region \"x\" /* y */\nclass A {}\n#endregion");
+
+    assertThat(html).isEqualTo(
+        "\n<span class=\"j\">#region \"x\" /* y */</span>\n<span class=\"k\">class</span> A {}\n<span class=\"j\">#endregion</span>");
+  }
+
+  private String toHtml(String code) {
+    return colorizer.toHtml(new StringReader(code), HtmlOptions.ONLY_SYNTAX);
+  }
+
+}
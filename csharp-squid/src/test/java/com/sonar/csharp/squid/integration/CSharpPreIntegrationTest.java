@@ -19,6 +19,8 @@
  */
 package com.sonar.csharp.squid.integration;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.parser.CSharpParser;
 import com.sonar.sslr.api.Grammar;
@@ -34,6 +36,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -42,26 +45,32 @@ import java.util.Set;
 @RunWith(value = Parameterized.class)
 public class CSharpPreIntegrationTest {
 
+  // Parsers of the build configurations of the preprocessing files
+  private static final List<Parser<Grammar>> CONFIGURATION_PARSERS = ImmutableList.of(
+      createParser(ImmutableSet.<String> of()),
+      createParser(ImmutableSet.of("NET_2_0", "NUNIT_2_5", "ORIGINAL", "DEBUG")),
+      createParser(ImmutableSet.of("NETCF", "NET_4_0")));
+
   private File cSharpFile = null;
   private final Parser<Grammar> parser = CSharpParser.create(new CSharpConfiguration(Charset.forName("UTF-8")));
-  private final Set<String> filesToIgnore = new HashSet<String>();
+  private final Set<String> filesWithConditionalCompilation = new HashSet<String>();
 
   public CSharpPreIntegrationTest(File f) {
     this.cSharpFile = f;
-    populateFilesToIgnoreSet();
+    populateFilesWithConditionalCompilationSet();
   }
 
-  private void populateFilesToIgnoreSet() {
-    // XXX Files ignored because they have preprocessing instructions that we do not handle yet
-    filesToIgnore.add("PropertiesDictionary.cs");
-    filesToIgnore.add("ReadOnlyPropertiesDictionary.cs");
-    filesToIgnore.add("TestLoaderWatcherTests.cs");
-    filesToIgnore.add("AssemblyWatcher.cs");
-    filesToIgnore.add("DomainAgent.cs");
-    filesToIgnore.add("RemoteTestRunner.cs");
-    filesToIgnore.add("TestThread.cs");
-    filesToIgnore.add("PNUnitTestRunner.cs");
-    filesToIgnore.add("PairwiseTests.cs");
+  private void populateFilesWithConditionalCompilationSet() {
+    // Files which only parse once their preprocessing instructions are evaluated, as their branches cannot be parsed together
+    filesWithConditionalCompilation.add("PropertiesDictionary.cs");
+    filesWithConditionalCompilation.add("ReadOnlyPropertiesDictionary.cs");
+    filesWithConditionalCompilation.add("TestLoaderWatcherTests.cs");
+    filesWithConditionalCompilation.add("AssemblyWatcher.cs");
+    filesWithConditionalCompilation.add("DomainAgent.cs");
+    filesWithConditionalCompilation.add("RemoteTestRunner.cs");
+    filesWithConditionalCompilation.add("TestThread.cs");
+    filesWithConditionalCompilation.add("PNUnitTestRunner.cs");
+    filesWithConditionalCompilation.add("PairwiseTests.cs");
   }
 
   @Parameterized.Parameters
@@ -73,17 +82,26 @@ public class CSharpPreIntegrationTest {
 
   @Test
   public void parseCSharpSource() throws Exception {
-    if (filesToIgnore.contains(cSharpFile.getName())) {
-      System.out.println("... Ignoring \"" + cSharpFile.getName() + "\" for the moment...");
-      return;
-    }
-    try {
+    if (!filesWithConditionalCompilation.contains(cSharpFile.getName())) {
       parser.parse(cSharpFile);
-    } catch (Exception e) {
-      throw e;
     }
   }
 
+  @Test
+  public void parseCSharpSourceForEachConfiguration() throws Exception {
+    if (filesWithConditionalCompilation.contains(cSharpFile.getName())) {
+      for (Parser<Grammar> configurationParser : CONFIGURATION_PARSERS) {
+        configurationParser.parse(cSharpFile);
+      }
+    }
+  }
+
+  private static Parser<Grammar> createParser(Set<String> preprocessorSymbols) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setPreprocessorSymbols(preprocessorSymbols);
+    return CSharpParser.create(conf);
+  }
+
   protected static void addParametersForPath(Collection<Object[]> parameters, String path) throws URISyntaxException {
     Collection<File> files;
     files = listFiles(path, true);
@@ -19,6 +19,7 @@
  */
 package com.sonar.csharp.squid.lexer;
 
+import com.google.common.collect.ImmutableSet;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpKeyword;
 import com.sonar.csharp.squid.api.CSharpPunctuator;
@@ -186,6 +187,18 @@ public class CSharpLexerTest {
     assertThat(lexer.lex(" #  region Constants\nint a = '1';").get(0).getTrivia().get(0).getToken().getValue(), is("#  region Constants"));
   }
 
+  @Test
+  public void lexConditionalCompilation() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setPreprocessorSymbols(ImmutableSet.of("DEBUG"));
+    lexer = CSharpLexer.create(conf);
+
+    List<Token> tokens = lexer.lex("#if DEBUG\nint a;\n#else\nint b;\n#endif");
+    assertThat(tokens, hasToken("a", GenericTokenType.IDENTIFIER));
+    assertThat(tokens, not(hasToken("b", GenericTokenType.IDENTIFIER)));
+    assertThat(tokens.get(3).getTrivia().get(0).getToken().getValue(), is("#else"));
+  }
+
   @Test
   public void testLexCSharpSourceCode() throws FileNotFoundException {
     List<Token> tokens = lexer.lex(FileUtils.toFile(getClass().getResource("/lexer/NUnitFramework.cs")));
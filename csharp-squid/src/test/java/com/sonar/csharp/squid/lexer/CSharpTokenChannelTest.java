@@ -0,0 +1,102 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpTokenChannelTest {
+
+  private final Lexer handWrittenLexer = createLexer(true);
+  private final Lexer regexpLexer = createLexer(false);
+
+  @Test
+  public void should_produce_the_same_tokens_as_the_regexp_channels_on_all_test_files() {
+    File resources = FileUtils.toFile(getClass().getResource("/parser")).getParentFile();
+    Collection<File> files = FileUtils.listFiles(resources, new String[] {"cs"}, true);
+    assertThat(files).isNotEmpty();
+    for (File file : files) {
+      assertThat(dump(handWrittenLexer.lex(file))).as(file.getPath()).isEqualTo(dump(regexpLexer.lex(file)));
+    }
+  }
+
+  @Test
+  public void should_produce_the_same_tokens_as_the_regexp_channels_on_corner_cases() {
+    String[] sources = {
+      "",
+      "a/b /* c */ d // e\r\nf /*/ g */ /* h",
+      "/",
+      "/*",
+      "\"a\\\"b\" \"c\\\\\" \"d\\",
+      "\"unterminated \\\"\nx",
+      "\"escaped end \\\"",
+      "\"\\\\\\\"\\\\\"\\\"",
+      "\"\\ \" \"\\",
+      "@\"a\"\"b\" @\"c\r\nd\"",
+      "@\"unterminated \"\" with quotes \"\"",
+      "@a @ @@b @",
+      "'a' '' '\\'' '\\\\' '\\' 'ab\n' '",
+      "1 12 1.5 .5 1. 1.e5 1e5 1e+5 1e- 1E5f 1f 1m 1d 1u 1UL 1lu 1Lx 0x 0x1F 0XffUL 0x1.5 1.5e+2M",
+      "a.b a..b 1..2 ...",
+      "<<= << <= < >>= >> => == != ?? :: -> ++ -- && ||",
+      "éléphant _x x_1 A‿ A؂ 𝐀b x𝐀 \uD800 a\uDC00",
+      "#region x\n  # endregion\r\n#",
+      "\uFEFFclass A { }   $ ` \\",
+      "\t\u000B\f x"
+    };
+    for (String source : sources) {
+      assertThat(dump(handWrittenLexer.lex(source))).as(source).isEqualTo(dump(regexpLexer.lex(source)));
+    }
+  }
+
+  private static Lexer createLexer(boolean handWritten) {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setHandWrittenLexer(handWritten);
+    return CSharpLexer.create(conf);
+  }
+
+  private static List<String> dump(List<Token> tokens) {
+    List<String> result = Lists.newArrayList();
+    for (Token token : tokens) {
+      for (Trivia trivia : token.getTrivia()) {
+        result.add((trivia.isComment() ? "comment " : "trivia ") + dump(trivia.getToken()));
+      }
+      result.add(dump(token));
+    }
+    return result;
+  }
+
+  private static String dump(Token token) {
+    return token.getType() + " " + token.getLine() + ":" + token.getColumn() + " [" + token.getValue() + "] [" + token.getOriginalValue() + "]";
+  }
+
+}
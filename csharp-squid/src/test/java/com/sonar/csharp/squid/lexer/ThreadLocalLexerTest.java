@@ -0,0 +1,65 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.lexer.preprocessors.KeepDirectivesPreprocessor;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.impl.Lexer;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ThreadLocalLexerTest {
+
+  private final ThreadLocalLexer lexer = new ThreadLocalLexer(new CSharpConfiguration(Charsets.UTF_8)) {
+    @Override
+    protected Preprocessor[] createPreprocessors() {
+      return new Preprocessor[] {new KeepDirectivesPreprocessor()};
+    }
+  };
+
+  @Test
+  public void should_create_one_lexer_per_thread() throws Exception {
+    final AtomicReference<Lexer> otherThreadLexer = new AtomicReference<Lexer>();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        otherThreadLexer.set(lexer.get());
+      }
+    };
+    thread.start();
+    thread.join();
+
+    assertThat(lexer.get()).isSameAs(lexer.get());
+    assertThat(otherThreadLexer.get()).isNotNull();
+    assertThat(otherThreadLexer.get()).isNotSameAs(lexer.get());
+  }
+
+  @Test
+  public void should_use_the_given_preprocessors() {
+    assertThat(lexer.get().lex("#region a\nclass A {}").get(0).getType()).isSameAs(CSharpTokenType.PREPROCESSOR);
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.lexer.preprocessors;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ConditionalCompilationTest {
+
+  private final ConditionalCompilation conditionalCompilation = new ConditionalCompilation(ImmutableSet.of("DEBUG", "NET_2_0"));
+
+  @Test
+  public void should_evaluate_expressions() {
+    assertThat(conditionalCompilation.evaluate("DEBUG")).isTrue();
+    assertThat(conditionalCompilation.evaluate("TRACE")).isFalse();
+    assertThat(conditionalCompilation.evaluate("true")).isTrue();
+    assertThat(conditionalCompilation.evaluate("false")).isFalse();
+    assertThat(conditionalCompilation.evaluate("!TRACE")).isTrue();
+    assertThat(conditionalCompilation.evaluate("DEBUG && !NET_2_0")).isFalse();
+    assertThat(conditionalCompilation.evaluate("TRACE || NET_2_0")).isTrue();
+    assertThat(conditionalCompilation.evaluate("TRACE || DEBUG && NET_2_0")).isTrue();
+    assertThat(conditionalCompilation.evaluate("(TRACE || DEBUG) && !(NET_2_0)")).isFalse();
+    assertThat(conditionalCompilation.evaluate("DEBUG == true")).isTrue();
+    assertThat(conditionalCompilation.evaluate("TRACE != false")).isFalse();
+    assertThat(conditionalCompilation.evaluate("!!DEBUG")).isTrue();
+  }
+
+  @Test
+  public void invalid_expressions_should_be_false() {
+    assertThat(conditionalCompilation.evaluate("")).isFalse();
+    assertThat(conditionalCompilation.evaluate("(DEBUG")).isFalse();
+    assertThat(conditionalCompilation.evaluate("DEBUG)")).isFalse();
+    assertThat(conditionalCompilation.evaluate("DEBUG &&")).isFalse();
+    assertThat(conditionalCompilation.evaluate("DEBUG NET_2_0")).isFalse();
+  }
+
+  @Test
+  public void should_select_branches() {
+    assertThat(conditionalCompilation.isActive()).isTrue();
+
+    conditionalCompilation.process("#if TRACE");
+    assertThat(conditionalCompilation.isActive()).isFalse();
+    conditionalCompilation.process("#elif NET_2_0 // comment");
+    assertThat(conditionalCompilation.isActive()).isTrue();
+    conditionalCompilation.process("#  elif DEBUG");
+    assertThat(conditionalCompilation.isActive()).isFalse();
+    conditionalCompilation.process("#else");
+    assertThat(conditionalCompilation.isActive()).isFalse();
+    conditionalCompilation.process("#endif");
+    assertThat(conditionalCompilation.isActive()).isTrue();
+
+    conditionalCompilation.process("#if TRACE");
+    conditionalCompilation.process("#else");
+    assertThat(conditionalCompilation.isActive()).isTrue();
+    conditionalCompilation.process("#endif");
+  }
+
+  @Test
+  public void nested_branches_should_not_be_active_in_inactive_code() {
+    conditionalCompilation.process("#if TRACE");
+    conditionalCompilation.process("#if DEBUG");
+    assertThat(conditionalCompilation.isActive()).isFalse();
+    conditionalCompilation.process("#else");
+    assertThat(conditionalCompilation.isActive()).isFalse();
+    conditionalCompilation.process("#endif");
+    assertThat(conditionalCompilation.isActive()).isFalse();
+    conditionalCompilation.process("#endif");
+    assertThat(conditionalCompilation.isActive()).isTrue();
+
+    for (int i = 0; i < 20; i++) {
+      conditionalCompilation.process("#if DEBUG");
+    }
+    assertThat(conditionalCompilation.isActive()).isTrue();
+  }
+
+  @Test
+  public void should_define_and_undefine_symbols_in_active_code() {
+    conditionalCompilation.process("#define TRACE");
+    conditionalCompilation.process("#undef DEBUG");
+    assertThat(conditionalCompilation.evaluate("TRACE && !DEBUG")).isTrue();
+
+    conditionalCompilation.process("#if false");
+    conditionalCompilation.process("#define OTHER");
+    conditionalCompilation.process("#endif");
+    assertThat(conditionalCompilation.evaluate("OTHER")).isFalse();
+  }
+
+  @Test
+  public void should_ignore_other_and_unbalanced_directives() {
+    conditionalCompilation.process("#region if");
+    conditionalCompilation.process("#endif");
+    conditionalCompilation.process("#else");
+    conditionalCompilation.process("#elif false");
+    conditionalCompilation.process("#pragma warning disable 414");
+    assertThat(conditionalCompilation.isActive()).isTrue();
+  }
+
+}
@@ -35,6 +35,7 @@ import org.sonar.squidbridge.indexer.QueryByType;
 import java.io.File;
 import java.nio.charset.Charset;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -103,4 +104,12 @@ public class CSharpFileLinesVisitorTest {
     verify(fileLinesContext, times(22)).setIntValue(Mockito.eq(CoreMetrics.COMMENT_LINES_DATA_KEY), Mockito.anyInt(), Mockito.anyInt());
   }
 
+  @Test
+  public void should_count_line_terminators() {
+    assertThat(CSharpFileLinesVisitor.countLineTerminators("")).isEqualTo(0);
+    assertThat(CSharpFileLinesVisitor.countLineTerminators("a")).isEqualTo(0);
+    assertThat(CSharpFileLinesVisitor.countLineTerminators("a\nb\rc\r\nd")).isEqualTo(3);
+    assertThat(CSharpFileLinesVisitor.countLineTerminators("\n\r\r\n\n\r")).isEqualTo(5);
+  }
+
 }
@@ -19,13 +19,23 @@
  */
 package com.sonar.csharp.squid.parser;
 
+import com.google.common.collect.ImmutableSet;
 import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ast.AstXmlPrinter;
+import com.sonar.sslr.impl.events.ParsingEventListener;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
+import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
 
 /**
  * Test class for the C# parser
@@ -54,4 +64,76 @@ public class CSharpParserTest {
     parser.parse(FileUtils.toFile(getClass().getResource("/parser/cSharpSyntaxAllInOneFile.cs")));
   }
 
+  @Test
+  public void selective_memoization_should_build_the_same_trees_as_full_memoization() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setMemoizeAllRules(true);
+    Parser<Grammar> allRulesParser = CSharpParser.create(conf);
+
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/parser")), new String[] {"cs"}, true);
+    files.addAll(FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/integration")), new String[] {"cs"}, false));
+    for (File file : files) {
+      String expected = AstXmlPrinter.print(allRulesParser.parse(file));
+      assertThat(AstXmlPrinter.print(parser.parse(file))).as(file.getName()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void should_parse_without_memoization() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setMemoizedRules(ImmutableSet.<CSharpGrammar>of());
+    CSharpParser.create(conf).parse(FileUtils.toFile(getClass().getResource("/parser/simpleFile.cs")));
+  }
+
+  @Test
+  public void budget_should_not_change_the_trees_of_files_within_it() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTimeLimit(TimeUnit.MINUTES.toMillis(10));
+    conf.setParseTokenLimit(Integer.MAX_VALUE);
+    Parser<Grammar> budgetedParser = CSharpParser.create(conf);
+
+    File file = FileUtils.toFile(getClass().getResource("/parser/cSharpSyntaxAllInOneFile.cs"));
+    assertThat(AstXmlPrinter.print(budgetedParser.parse(file))).isEqualTo(AstXmlPrinter.print(parser.parse(file)));
+  }
+
+  @Test
+  public void should_keep_only_tokens_when_parse_takes_too_long() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTimeLimit(1);
+    Parser<Grammar> budgetedParser = CSharpParser.create(conf);
+
+    File file = FileUtils.toFile(getClass().getResource("/parser/LinqBridge-1.2.cs"));
+    AstNode root = budgetedParser.parse(file);
+    assertThat(root.is(ParseBudgetExceeded.TIME_LIMIT)).isTrue();
+    assertThat(root.getNumberOfChildren()).isEqualTo(parser.parse(file).getTokens().size());
+    assertThat(root.getLastChild().getToken().getType()).isSameAs(GenericTokenType.EOF);
+
+    // The time limit applies to each file on its own
+    conf.setParseTimeLimit(TimeUnit.MINUTES.toMillis(10));
+    budgetedParser = CSharpParser.create(conf);
+    assertThat(budgetedParser.parse(file).is(CSharpGrammar.COMPILATION_UNIT)).isTrue();
+    assertThat(budgetedParser.parse(file).is(CSharpGrammar.COMPILATION_UNIT)).isTrue();
+  }
+
+  @Test
+  public void should_keep_only_tokens_of_files_with_too_many_tokens() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTokenLimit(10);
+    Parser<Grammar> budgetedParser = CSharpParser.create(conf);
+
+    AstNode root = budgetedParser.parse("class A { int a = 1; int b = 2; }");
+    assertThat(root.is(ParseBudgetExceeded.TOKEN_LIMIT)).isTrue();
+    assertThat(root.getNumberOfChildren()).isEqualTo(15);
+
+    assertThat(budgetedParser.parse("class A { }").is(CSharpGrammar.COMPILATION_UNIT)).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_not_accept_listeners_along_with_a_budget() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTokenLimit(10);
+    CSharpParser.create(conf, new ParsingEventListener() {
+    });
+  }
+
 }
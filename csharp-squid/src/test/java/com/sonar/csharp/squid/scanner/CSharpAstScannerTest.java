@@ -0,0 +1,89 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.api.source.SourceMember;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpAstScannerTest {
+
+  private final CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+
+  @Test
+  public void streaming_should_compute_same_measures() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(conf);
+    scanner.scanFiles(files);
+
+    final List<SourceFile> streamedFiles = Lists.newArrayList();
+    AstScanner<Grammar> streamingScanner = CSharpAstScanner.createStreaming(conf, new SourceFileListener() {
+      @Override
+      public void onSourceFile(SourceFile sourceFile) {
+        streamedFiles.add(sourceFile);
+      }
+    });
+    streamingScanner.scanFiles(files);
+
+    assertThat(streamedFiles).hasSize(files.size());
+    assertThat(streamingScanner.getIndex().search(new QueryByType(SourceFile.class))).isEmpty();
+    assertThat(streamingScanner.getIndex().search(new QueryByType(SourceMember.class))).isEmpty();
+
+    for (SourceFile streamedFile : streamedFiles) {
+      SourceCode file = scanner.getIndex().search(streamedFile.getKey());
+      for (CSharpMetric metric : CSharpMetric.values()) {
+        assertThat(streamedFile.getDouble(metric)).as(file.getKey() + " " + metric).isEqualTo(file.getDouble(metric));
+      }
+      assertThat(streamedFile.getNoSonarTagLines()).isEqualTo(((SourceFile) file).getNoSonarTagLines());
+
+      // Types from different files may share the same key, so members are counted on each file scanned alone
+      AstScanner<Grammar> singleFileScanner = CSharpAstScanner.create(conf);
+      singleFileScanner.scanFile(new File(file.getKey()));
+      assertThat(countMembers(streamedFile)).isEqualTo(singleFileScanner.getIndex().search(new QueryByType(SourceMember.class)).size());
+    }
+  }
+
+  private static int countMembers(SourceCode parent) {
+    int members = 0;
+    if (parent.hasChildren()) {
+      for (SourceCode child : parent.getChildren()) {
+        members += (child.isType(SourceMember.class) ? 1 : 0) + countMembers(child);
+      }
+    }
+    return members;
+  }
+
+}
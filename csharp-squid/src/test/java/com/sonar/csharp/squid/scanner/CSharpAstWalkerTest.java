@@ -0,0 +1,192 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ast.AstWalker;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.SquidAstVisitorContextImpl;
+import org.sonar.squidbridge.api.SourceProject;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpAstWalkerTest {
+
+  @Test
+  public void should_visit_in_the_same_order_as_the_generic_walker() {
+    AstNode tree = CSharpParser.create(new CSharpConfiguration(Charset.forName("UTF-8")))
+      .parse(FileUtils.toFile(getClass().getResource("/parser/cSharpSyntaxAllInOneFile.cs")));
+
+    List<String> expected = Lists.newArrayList();
+    new AstWalker(createVisitors(expected)).walkAndVisit(tree);
+
+    List<String> actual = Lists.newArrayList();
+    new CSharpAstWalker(createVisitors(actual)).walkAndVisit(tree);
+
+    assertThat(actual.size()).isGreaterThan(1000);
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  @Test
+  public void should_be_walked_by_the_scanner_as_if_registered_one_by_one() {
+    File file = FileUtils.toFile(getClass().getResource("/parser/cSharpSyntaxAllInOneFile.cs"));
+
+    List<String> expected = Lists.newArrayList();
+    AstScanner.Builder<Grammar> builder = createScannerBuilder(createParser());
+    for (SquidAstVisitor<Grammar> visitor : createVisitors(expected)) {
+      builder.withSquidAstVisitor(visitor);
+    }
+    builder.build().scanFile(file);
+
+    List<String> actual = Lists.newArrayList();
+    DispatchingParser parser = new DispatchingParser(createParser());
+    createScannerBuilder(parser).withSquidAstVisitor(new DispatchingVisitor(parser, createVisitors(actual))).build().scanFile(file);
+
+    assertThat(actual.size()).isGreaterThan(1000);
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  @Test
+  public void should_give_the_whole_tree_to_visitors_subscribing_in_init() {
+    File file = FileUtils.toFile(getClass().getResource("/parser/cSharpSyntaxAllInOneFile.cs"));
+    List<String> events = Lists.newArrayList();
+    List<SquidAstVisitor<Grammar>> visitors = ImmutableList.<SquidAstVisitor<Grammar>>of(
+      new RecordingInitVisitor("init", events, CSharpGrammar.CLASS_DECLARATION));
+
+    DispatchingParser parser = new DispatchingParser(createParser());
+    createScannerBuilder(parser).withSquidAstVisitor(new DispatchingVisitor(parser, visitors)).build().scanFiles(ImmutableList.of(file, file));
+
+    List<String> expected = Lists.newArrayList();
+    new AstWalker(new RecordingVisitor("init", expected, CSharpGrammar.CLASS_DECLARATION)).walkAndVisit(createParser().parse(file));
+
+    assertThat(expected.size()).isGreaterThan(2);
+    assertThat(events).isEqualTo(ImmutableList.<String>builder().addAll(expected).addAll(expected).build());
+  }
+
+  private static Parser<Grammar> createParser() {
+    return CSharpParser.create(new CSharpConfiguration(Charset.forName("UTF-8")));
+  }
+
+  private static AstScanner.Builder<Grammar> createScannerBuilder(Parser<Grammar> parser) {
+    AstScanner.Builder<Grammar> builder = new AstScanner.Builder<Grammar>(new SquidAstVisitorContextImpl<Grammar>(new SourceProject("C# Project")));
+    builder.setBaseParser(parser);
+    builder.setFilesMetric(CSharpMetric.FILES);
+    return builder;
+  }
+
+  private static List<SquidAstVisitor<Grammar>> createVisitors(List<String> events) {
+    return ImmutableList.<SquidAstVisitor<Grammar>>of(
+      new RecordingVisitor("grammar", events, CSharpGrammar.CLASS_DECLARATION, CSharpGrammar.STATEMENT, CSharpGrammar.EXPRESSION),
+      new RecordingVisitor("tokens", events, CSharpKeyword.CLASS, CSharpPunctuator.LCURLYBRACE, CSharpTokenType.STRING_LITERAL,
+        GenericTokenType.IDENTIFIER, CSharpGrammar.STATEMENT),
+      new RecordingTokenVisitor("all", events, CSharpGrammar.values()),
+      new RecordingVisitor("none", events));
+  }
+
+  private static class RecordingVisitor extends SquidAstVisitor<Grammar> {
+
+    private final String name;
+    final List<String> events;
+
+    public RecordingVisitor(String name, List<String> events, AstNodeType... types) {
+      this.name = name;
+      this.events = events;
+      subscribeTo(types);
+    }
+
+    @Override
+    public void visitFile(AstNode astNode) {
+      events.add(name + " visitFile");
+    }
+
+    @Override
+    public void visitNode(AstNode astNode) {
+      events.add(name + " visitNode " + astNode.getType() + " " + astNode.getTokenLine());
+    }
+
+    @Override
+    public void leaveNode(AstNode astNode) {
+      events.add(name + " leaveNode " + astNode.getType() + " " + astNode.getTokenLine());
+    }
+
+    @Override
+    public void leaveFile(AstNode astNode) {
+      events.add(name + " leaveFile");
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+
+  }
+
+  private static class RecordingInitVisitor extends RecordingVisitor {
+
+    private final AstNodeType[] types;
+
+    public RecordingInitVisitor(String name, List<String> events, AstNodeType... types) {
+      super(name, events);
+      this.types = types;
+    }
+
+    @Override
+    public void init() {
+      subscribeTo(types);
+    }
+
+  }
+
+  private static class RecordingTokenVisitor extends RecordingVisitor implements AstAndTokenVisitor {
+
+    public RecordingTokenVisitor(String name, List<String> events, AstNodeType... types) {
+      super(name, events, types);
+    }
+
+    @Override
+    public void visitToken(Token token) {
+      events.add(this + " visitToken " + token.getValue() + " " + token.getLine() + ":" + token.getColumn());
+    }
+
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.sslr.api.Grammar;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceCodeSearchEngine;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
+import org.sonar.squidbridge.indexer.QueryByType;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpParallelScannerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+
+  @Test
+  public void should_compute_same_measures_as_serial_scanner() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+
+    AstScanner<Grammar> serialScanner = CSharpAstScanner.create(conf);
+    serialScanner.scanFiles(files);
+
+    CSharpParallelScanner parallelScanner = new CSharpParallelScanner(conf, 3, new CSharpParallelScanner.VisitorsFactory() {
+      @Override
+      public List<SquidAstVisitor<Grammar>> create() {
+        return Lists.newArrayList();
+      }
+    });
+    parallelScanner.scanFiles(files);
+
+    assertThat(parallelScanner.getThreads()).isEqualTo(3);
+
+    Collection<SourceCode> serialFiles = serialScanner.getIndex().search(new QueryByType(SourceFile.class));
+    SourceCodeSearchEngine parallelIndex = parallelScanner.getIndex();
+    assertThat(parallelIndex.search(new QueryByType(SourceFile.class))).hasSize(files.size());
+
+    for (SourceCode serialFile : serialFiles) {
+      SourceCode parallelFile = parallelIndex.search(serialFile.getKey());
+      assertThat(parallelFile).isNotNull();
+      for (CSharpMetric metric : CSharpMetric.values()) {
+        assertThat(parallelFile.getDouble(metric)).as(serialFile.getKey() + " " + metric).isEqualTo(serialFile.getDouble(metric));
+      }
+    }
+  }
+
+  @Test
+  public void should_leave_files_once_analyzed() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+    final List<SourceCode> currentSourceCodes = Collections.synchronizedList(Lists.<SourceCode>newArrayList());
+
+    new CSharpParallelScanner(conf, 2, new CSharpParallelScanner.VisitorsFactory() {
+      @Override
+      public List<SquidAstVisitor<Grammar>> create() {
+        return Lists.<SquidAstVisitor<Grammar>>newArrayList(new SquidAstVisitor<Grammar>() {
+          @Override
+          public void destroy() {
+            currentSourceCodes.add(getContext().peekSourceCode());
+          }
+        });
+      }
+    }).scanFiles(files);
+
+    assertThat(currentSourceCodes).hasSize(2);
+    for (SourceCode sourceCode : currentSourceCodes) {
+      assertThat(sourceCode).isInstanceOf(SourceProject.class);
+    }
+  }
+
+  @Test
+  public void should_stream_files() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+
+    final List<SourceFile> streamedFiles = Collections.synchronizedList(Lists.<SourceFile>newArrayList());
+    CSharpParallelScanner scanner = new CSharpParallelScanner(conf, 2, new CSharpParallelScanner.VisitorsFactory() {
+      @Override
+      public List<SquidAstVisitor<Grammar>> create() {
+        return Lists.newArrayList();
+      }
+    }, new SourceFileListener() {
+      @Override
+      public void onSourceFile(SourceFile sourceFile) {
+        streamedFiles.add(sourceFile);
+      }
+    });
+    scanner.scanFiles(files);
+
+    assertThat(streamedFiles).hasSize(files.size());
+    assertThat(scanner.getIndex().search(new QueryByType(SourceFile.class))).isEmpty();
+  }
+
+  @Test
+  public void should_fail_with_no_thread() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("The number of threads must be greater than 0, but was: 0");
+
+    new CSharpParallelScanner(conf, 0, null);
+  }
+
+}
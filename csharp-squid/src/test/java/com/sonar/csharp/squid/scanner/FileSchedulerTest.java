@@ -0,0 +1,118 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileSchedulerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void should_schedule_largest_files_first() throws Exception {
+    File small = newFile("small.cs", 10);
+    File large = newFile("large.cs", 1000);
+    File medium = newFile("medium.cs", 100);
+
+    assertThat(new FileScheduler().schedule(Arrays.asList(small, large, medium))).containsExactly(large, medium, small);
+  }
+
+  @Test
+  public void should_schedule_using_recorded_times() throws Exception {
+    File small = newFile("small.cs", 10);
+    File large = newFile("large.cs", 1000);
+    File medium = newFile("medium.cs", 100);
+    File unknown = newFile("unknown.cs", 500);
+
+    FileScheduler scheduler = new FileScheduler();
+    // 4100 ms for 1110 bytes, so the unknown file is estimated to take about 1850 ms
+    scheduler.record(small, 3000);
+    scheduler.record(large, 1000);
+    scheduler.record(medium, 100);
+
+    File timesFile = new File(tmp.getRoot(), "times/analysis-times.txt");
+    scheduler.save(timesFile);
+    Files.append("corrupted line\n", timesFile, Charsets.UTF_8);
+
+    assertThat(FileScheduler.load(timesFile).schedule(Arrays.asList(small, large, medium, unknown)))
+      .containsExactly(small, unknown, large, medium);
+  }
+
+  @Test
+  public void should_only_save_times_recorded_since_loaded() throws Exception {
+    File analyzed = newFile("analyzed.cs", 10);
+    File removed = newFile("removed.cs", 10);
+
+    FileScheduler scheduler = new FileScheduler();
+    scheduler.record(analyzed, 10);
+    scheduler.record(removed, 20);
+    File timesFile = new File(tmp.getRoot(), "analysis-times.txt");
+    scheduler.save(timesFile);
+
+    scheduler = FileScheduler.load(timesFile);
+    scheduler.record(analyzed, 30);
+    scheduler.save(timesFile);
+
+    assertThat(Files.readLines(timesFile, Charsets.UTF_8)).containsExactly("30 " + analyzed.getAbsolutePath());
+  }
+
+  @Test
+  public void should_only_return_times_recorded_since_loaded() throws Exception {
+    File analyzed = newFile("analyzed.cs", 10);
+    File skipped = newFile("skipped.cs", 10);
+
+    FileScheduler scheduler = new FileScheduler();
+    scheduler.record(analyzed, 10);
+    scheduler.record(skipped, 20);
+    File timesFile = new File(tmp.getRoot(), "analysis-times.txt");
+    scheduler.save(timesFile);
+
+    scheduler = FileScheduler.load(timesFile);
+    scheduler.record(analyzed, 30);
+
+    assertThat(scheduler.getRecordedTime(analyzed)).isEqualTo(30L);
+    assertThat(scheduler.getRecordedTime(skipped)).isNull();
+  }
+
+  @Test
+  public void should_ignore_missing_times_file() {
+    File file = new File(tmp.getRoot(), "missing.txt");
+    assertThat(FileScheduler.load(file).schedule(Arrays.<File>asList())).isEmpty();
+  }
+
+  private File newFile(String name, int size) throws IOException {
+    File file = tmp.newFile(name);
+    Files.write(Strings.repeat("a", size), file, Charsets.UTF_8);
+    return file;
+  }
+
+}
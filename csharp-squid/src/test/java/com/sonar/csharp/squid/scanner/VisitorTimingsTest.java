@@ -0,0 +1,186 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.scanner;
+
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import com.sonar.csharp.squid.scanner.VisitorTimings.Phase;
+import com.sonar.csharp.squid.scanner.VisitorTimings.Timing;
+import com.sonar.csharp.squid.tree.CSharpTypeVisitor;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.AstScannerExceptionHandler;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceCode;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.indexer.QueryByType;
+import org.sonar.squidbridge.metrics.CounterVisitor;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class VisitorTimingsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void should_time_visitors_without_changing_results() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(conf);
+    scanner.scanFiles(files);
+
+    VisitorTimings visitorTimings = new VisitorTimings();
+    TokenCounter tokenCounter = new TokenCounter();
+    AstScanner<Grammar> timedScanner = CSharpAstScanner.create(conf, visitorTimings, tokenCounter);
+    timedScanner.scanFiles(files);
+
+    for (SourceCode file : timedScanner.getIndex().search(new QueryByType(SourceFile.class))) {
+      for (CSharpMetric metric : CSharpMetric.values()) {
+        assertThat(file.getDouble(metric)).as(file.getKey() + " " + metric).isEqualTo(scanner.getIndex().search(file.getKey()).getDouble(metric));
+      }
+    }
+
+    List<Timing> timings = visitorTimings.getTimings();
+    for (int i = 1; i < timings.size(); i++) {
+      assertThat(timings.get(i - 1).getTotalNanos()).isGreaterThanOrEqualTo(timings.get(i).getTotalNanos());
+    }
+
+    Timing typeVisitor = find(timings, CSharpTypeVisitor.class);
+    assertThat(typeVisitor.getCalls(Phase.INIT)).isEqualTo(1);
+    assertThat(typeVisitor.getCalls(Phase.VISIT_FILE)).isEqualTo(files.size());
+    assertThat(typeVisitor.getCalls(Phase.LEAVE_FILE)).isEqualTo(files.size());
+    assertThat(typeVisitor.getCalls(Phase.VISIT_NODE)).isEqualTo(typeVisitor.getCalls(Phase.LEAVE_NODE)).isGreaterThan(0);
+    assertThat(typeVisitor.getCalls(Phase.VISIT_TOKEN)).isEqualTo(0);
+
+    Timing tokenCounterTiming = find(timings, TokenCounter.class);
+    assertThat(tokenCounterTiming.getCalls(Phase.VISIT_TOKEN)).isEqualTo(tokenCounter.tokens).isGreaterThan(0);
+    assertThat(tokenCounterTiming.getCalls(Phase.VISIT_NODE)).isEqualTo(0);
+  }
+
+  @Test
+  public void should_time_each_instance_of_a_visitor_class_separately() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+
+    VisitorTimings visitorTimings = new VisitorTimings();
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    CSharpAstScanner.create(conf, visitorTimings, new TokenCounter(), new TokenCounter()).scanFiles(files);
+    CSharpAstScanner.create(conf, visitorTimings, new TokenCounter()).scanFiles(files);
+
+    List<Timing> timings = visitorTimings.getTimings();
+    assertThat(find(timings, TokenCounter.class.getName()).getCalls(Phase.INIT)).isEqualTo(2);
+    assertThat(find(timings, TokenCounter.class.getName() + "#2").getCalls(Phase.INIT)).isEqualTo(1);
+    assertThat(find(timings, CounterVisitor.class.getName()).getCalls(Phase.INIT)).isEqualTo(2);
+    assertThat(find(timings, CounterVisitor.class.getName() + "#2").getCalls(Phase.INIT)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_time_the_visitors_of_all_the_workers() {
+    Collection<File> files = FileUtils.listFiles(FileUtils.toFile(getClass().getResource("/metric/")), new String[] {"cs"}, false);
+
+    VisitorTimings visitorTimings = new VisitorTimings();
+    CSharpParallelScanner scanner = new CSharpParallelScanner(new CSharpConfiguration(Charset.forName("UTF-8")), 2,
+      new CSharpParallelScanner.VisitorsFactory() {
+        @Override
+        public List<SquidAstVisitor<Grammar>> create() {
+          return Collections.<SquidAstVisitor<Grammar>> singletonList(new TokenCounter());
+        }
+      }, null, visitorTimings);
+    scanner.scanFiles(files);
+
+    Timing typeVisitor = find(visitorTimings.getTimings(), CSharpTypeVisitor.class);
+    assertThat(typeVisitor.getCalls(Phase.INIT)).isEqualTo(2);
+    assertThat(typeVisitor.getCalls(Phase.VISIT_FILE)).isEqualTo(files.size());
+    assertThat(find(visitorTimings.getTimings(), TokenCounter.class).getCalls(Phase.INIT)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_forward_parse_errors() throws Exception {
+    File file = tmp.newFile("parsingError.cs");
+    Files.write("class A {", file, Charsets.UTF_8);
+
+    ParseErrorCounter parseErrorCounter = new ParseErrorCounter();
+    VisitorTimings visitorTimings = new VisitorTimings();
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+
+    AstScanner<Grammar> scanner = CSharpAstScanner.create(conf, visitorTimings, parseErrorCounter);
+    scanner.scanFile(file);
+
+    assertThat(parseErrorCounter.errors).isEqualTo(1);
+    assertThat(find(visitorTimings.getTimings(), ParseErrorCounter.class).getCalls(Phase.VISIT_FILE)).isEqualTo(1);
+  }
+
+  private static Timing find(List<Timing> timings, Class<?> visitorClass) {
+    return find(timings, visitorClass.getName());
+  }
+
+  private static Timing find(List<Timing> timings, String visitor) {
+    for (Timing timing : timings) {
+      if (timing.getVisitor().equals(visitor)) {
+        return timing;
+      }
+    }
+    throw new AssertionError("No timing for " + visitor);
+  }
+
+  private static class TokenCounter extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+    private int tokens;
+
+    @Override
+    public void visitToken(Token token) {
+      tokens++;
+    }
+
+  }
+
+  private static class ParseErrorCounter extends SquidAstVisitor<Grammar> implements AstScannerExceptionHandler {
+
+    private int errors;
+
+    @Override
+    public void processRecognitionException(RecognitionException e) {
+      errors++;
+    }
+
+    @Override
+    public void processException(Exception e) {
+      errors++;
+    }
+
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Sonar C# Plugin :: C# Squid :: Squid
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.csharp.squid.tree;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TypeDependencyGraphTest {
+
+  @Test
+  public void should_resolve_references_to_declared_types() {
+    TypeDependencies dependencies = scan("Core.cs", "Web.cs");
+    Map<String, Integer> types = typeIds(dependencies);
+
+    assertThat(types.keySet()).containsOnly(
+      "App.Core.Repository<1>",
+      "App.Core.Cache",
+      "App.Core.Order",
+      "App.Core.Order.Line",
+      "App.Core.Customer",
+      "App.Web.Controller",
+      "App.Web.Base");
+
+    assertThat(dependencies(dependencies, "App.Core.Repository<1>")).containsOnly("App.Core.Cache");
+    assertThat(dependencies(dependencies, "App.Core.Cache")).containsOnly("App.Core.Repository<1>", "App.Core.Order");
+    assertThat(dependencies(dependencies, "App.Core.Order")).containsOnly("App.Core.Customer", "App.Core.Order.Line");
+    assertThat(dependencies(dependencies, "App.Core.Order.Line")).containsOnly("App.Core.Order");
+    // Partial class declared in both files
+    assertThat(dependencies(dependencies, "App.Core.Customer")).containsOnly("App.Web.Controller");
+    // Through the using directive, counted once, and without the library types
+    assertThat(dependencies(dependencies, "App.Web.Controller")).containsOnly("App.Web.Base", "App.Core.Repository<1>", "App.Core.Order");
+    assertThat(dependencies.getDependencyCount()).isEqualTo(10);
+  }
+
+  @Test
+  public void should_compute_coupling_of_types() {
+    TypeDependencies dependencies = scan("Core.cs", "Web.cs");
+    Map<String, Integer> types = typeIds(dependencies);
+
+    int order = types.get("App.Core.Order");
+    assertThat(dependencies.getTypeAfferentCoupling(order)).isEqualTo(3);
+    assertThat(dependencies.getTypeEfferentCoupling(order)).isEqualTo(2);
+    assertThat(dependencies.getTypeInstability(order)).isEqualTo(0.4);
+
+    int base = types.get("App.Web.Base");
+    assertThat(dependencies.getTypeAfferentCoupling(base)).isEqualTo(1);
+    assertThat(dependencies.getTypeEfferentCoupling(base)).isEqualTo(0);
+    assertThat(dependencies.getTypeInstability(base)).isEqualTo(0.0);
+  }
+
+  @Test
+  public void should_find_cycles_of_types() {
+    TypeDependencies dependencies = scan("Core.cs", "Web.cs");
+    Map<String, Integer> types = typeIds(dependencies);
+
+    // Order -> Customer -> Controller -> Repository -> Cache -> Order, and Order <-> Order.Line
+    for (String key : types.keySet()) {
+      if (!"App.Web.Base".equals(key)) {
+        assertThat(dependencies.getTypeCycleSize(types.get(key))).as(key).isEqualTo(6);
+      }
+    }
+    assertThat(dependencies.getTypeCycleSize(types.get("App.Web.Base"))).isEqualTo(1);
+  }
+
+  @Test
+  public void should_compute_coupling_and_cycles_of_namespaces() {
+    TypeDependencies dependencies = scan("Core.cs", "Web.cs");
+    assertThat(dependencies.getNamespaceCount()).isEqualTo(2);
+    int core = dependencies.getNamespace(0).equals("App.Core") ? 0 : 1;
+    int web = 1 - core;
+    assertThat(dependencies.getNamespace(web)).isEqualTo("App.Web");
+
+    // Controller depends on Repository and Order, Customer depends on Controller
+    assertThat(dependencies.getNamespaceAfferentCoupling(core)).isEqualTo(1);
+    assertThat(dependencies.getNamespaceEfferentCoupling(core)).isEqualTo(1);
+    assertThat(dependencies.getNamespaceAfferentCoupling(web)).isEqualTo(1);
+    assertThat(dependencies.getNamespaceEfferentCoupling(web)).isEqualTo(2);
+    assertThat(dependencies.getNamespaceInstability(web)).isEqualTo(2.0 / 3);
+    assertThat(dependencies.getNamespaceCycleSize(core)).isEqualTo(2);
+    assertThat(dependencies.getNamespaceCycleSize(web)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_find_cycles_in_long_chains() {
+    int length = 100000;
+    TypeDependencyGraph graph = new TypeDependencyGraph();
+    List<String> none = ImmutableList.of();
+    for (int i = 0; i < length; i++) {
+      graph.addType("T" + i, "", none, ImmutableList.of("T" + ((i + 1) % length)));
+    }
+    graph.addType("Other", "", none, ImmutableList.of("T0"));
+
+    TypeDependencies dependencies = graph.compute();
+    assertThat(dependencies.getTypeCycleSize(0)).isEqualTo(length);
+    assertThat(dependencies.getTypeCycleSize(length - 1)).isEqualTo(length);
+    assertThat(dependencies.getTypeCycleSize(length)).isEqualTo(1);
+    assertThat(dependencies.getTypeAfferentCoupling(0)).isEqualTo(2);
+  }
+
+  private static TypeDependencies scan(String... fileNames) {
+    TypeDependencyGraph graph = new TypeDependencyGraph();
+    List<File> files = Lists.newArrayList();
+    for (String fileName : fileNames) {
+      files.add(new File("src/test/resources/tree/dependencies/" + fileName));
+    }
+    CSharpAstScanner.create(new CSharpConfiguration(Charsets.UTF_8), new CSharpTypeDependencyVisitor(graph)).scanFiles(files);
+    return graph.compute();
+  }
+
+  private static Map<String, Integer> typeIds(TypeDependencies dependencies) {
+    Map<String, Integer> ids = Maps.newHashMap();
+    for (int type = 0; type < dependencies.getTypeCount(); type++) {
+      ids.put(dependencies.getTypeKey(type), type);
+    }
+    return ids;
+  }
+
+  private static List<String> dependencies(TypeDependencies dependencies, String key) {
+    List<String> keys = Lists.newArrayList();
+    for (int target : dependencies.getDependencies(typeIds(dependencies).get(key))) {
+      keys.add(dependencies.getTypeKey(target));
+    }
+    return keys;
+  }
+
+}
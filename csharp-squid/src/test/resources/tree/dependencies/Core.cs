@@ -0,0 +1,32 @@
+using System;
+using System.Collections.Generic;
+
+namespace App.Core
+{
+  public class Repository<T>
+  {
+    private List<T> items;
+    private Cache cache;
+  }
+
+  public class Cache
+  {
+    private App.Core.Repository<Order> orders;
+  }
+
+  public class Order
+  {
+    private Customer customer;
+    private Line line;
+
+    public class Line
+    {
+      private Order order;
+    }
+  }
+
+  public partial class Customer
+  {
+    private string name;
+  }
+}
@@ -0,0 +1,23 @@
+using App.Core;
+
+namespace App.Core
+{
+  public partial class Customer
+  {
+    private global::App.Web.Controller controller;
+  }
+}
+
+namespace App.Web
+{
+  public class Controller : Base, IDisposable
+  {
+    private Repository<Order> repository;
+    private Order first, second;
+    private Unknown unknown;
+  }
+
+  public class Base
+  {
+  }
+}
@@ -32,6 +32,7 @@ import org.sonar.plugins.csharp.squid.CSharpSquidConstants;
 import org.sonar.plugins.csharp.squid.CSharpSquidSensor;
 import org.sonar.plugins.csharp.squid.colorizer.CSharpSourceCodeColorizer;
 import org.sonar.plugins.csharp.squid.cpd.CSharpCPDMapping;
+import org.sonar.plugins.csharp.squid.cpd.CSharpTokenCache;
 
 import java.util.List;
 
@@ -52,6 +53,82 @@ import java.util.List;
       "do not get incremented. If set to \"false\", those file headers are considered as comments and metrics such as " +
       "\"Comment lines\" get incremented.",
     project = true, global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = CSharpSquidConstants.ANALYSIS_THREADS,
+    defaultValue = "1",
+    name = "Number of analysis threads",
+    description = "Number of threads used to parse and analyze the C# files. Each thread gets its own parser and checks, " +
+      "so memory consumption grows with the number of threads.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.ANALYSIS_CACHE_DIRECTORY,
+    name = "Analysis cache directory",
+    description = "Directory, absolute or relative to the project base directory, where the results of the analysis of each file are kept " +
+      "between runs. Files whose content did not change are then not analyzed again, unless the quality profile, the plugin version or " +
+      "the settings changed. Leave empty to disable the cache.",
+    project = true, global = true),
+  @Property(
+    key = CSharpSquidConstants.PARSE_TIME_LIMIT,
+    defaultValue = "0",
+    name = "Parse time limit",
+    description = "Time in milliseconds above which the tree of a file is dropped once parsed, as the parse is not interrupted. " +
+      "Only the metrics computed from the tokens of such a file (lines, lines of code, comments) are then saved, and the \"ParsingError\" rule raises an issue on it. " +
+      "0 means no limit.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.PARSE_TOKEN_LIMIT,
+    defaultValue = "0",
+    name = "Parse token limit",
+    description = "Number of tokens above which a file is not parsed, as the memory used by the parser grows with it. Only the " +
+      "metrics computed from the tokens of such a file are then saved, and the \"ParsingError\" rule raises an issue on it. " +
+      "0 means no limit.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.STALL_THRESHOLD,
+    defaultValue = "30",
+    name = "Slow file warning threshold",
+    description = "Time in seconds after which the progress report warns about each C# file still being analyzed, naming it along " +
+      "with how long it has taken so far. 0 means no warning.",
+    project = true, global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CSharpSquidConstants.ANALYSIS_VISITOR_TIMINGS,
+    defaultValue = "false",
+    name = "Report the time spent in each check",
+    description = "If set to \"true\", the time spent in each check and metric visitor is measured. The slowest ones are logged " +
+      "at the end of the analysis, and all of them are written to the \"" + CSharpSquidConstants.VISITOR_TIMINGS_REPORT + "\" file " +
+      "of the working directory.",
+    project = true, global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = CSharpSquidConstants.TYPE_DEPENDENCIES,
+    defaultValue = "false",
+    name = "Report the dependencies between types",
+    description = "If set to \"true\", the dependencies between the types declared in the project are computed. The afferent and " +
+      "efferent coupling, the instability and the size of the dependency cycle of each type and namespace are written to the \"" +
+      CSharpSquidConstants.TYPE_DEPENDENCIES_REPORT + "\" file of the working directory. The analysis cache is then not used, " +
+      "as all the files need to be analyzed.",
+    project = true, global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = CSharpSquidConstants.PREPROCESSOR_SYMBOLS,
+    name = "Preprocessor symbols",
+    description = "Comma-separated list of the conditional compilation symbols defined by the build, e.g. \"DEBUG,TRACE\". When set, " +
+      "the #if, #elif, #else and #endif directives are evaluated and only the code compiled with these symbols is analyzed. " +
+      "Leave empty to analyze all the code, whatever the directives.",
+    project = true, global = true),
+  @Property(
+    key = CSharpSquidConstants.DETECT_DUPLICATIONS,
+    defaultValue = "false",
+    name = "Detect duplications during the C# analysis",
+    description = "If set to \"true\", the duplications between C# files are detected at the end of the C# analysis, using " +
+      "several threads as set by \"" + CSharpSquidConstants.ANALYSIS_THREADS + "\", instead of by the copy-paste detection of the " +
+      "platform. The results are the same, and the \"sonar.cpd.cs.minimumTokens\" and \"sonar.cpd.cs.minimumLines\" properties still apply.",
+    project = true, global = true,
     type = PropertyType.BOOLEAN)
 })
 public class CSharpCorePlugin extends SonarPlugin {
@@ -75,6 +152,7 @@ public class CSharpCorePlugin extends SonarPlugin {
 
       // C# Squid
       CSharpCPDMapping.class,
+      CSharpTokenCache.class,
       CSharpSourceCodeColorizer.class,
       CSharpSquidSensor.class,
 
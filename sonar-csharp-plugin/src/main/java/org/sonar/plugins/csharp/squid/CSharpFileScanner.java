@@ -0,0 +1,135 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid;
+
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.csharp.squid.scanner.CSharpParallelScanner;
+import com.sonar.csharp.squid.scanner.FileScheduler;
+import com.sonar.csharp.squid.scanner.SourceFileListener;
+import com.sonar.csharp.squid.scanner.VisitorTimings;
+import com.sonar.sslr.api.Grammar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.squidbridge.AstScanner;
+import org.sonar.squidbridge.SquidAstVisitor;
+import org.sonar.squidbridge.api.SourceFile;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans files with one or several threads, and records the time each of them took in the analysis times file of the working
+ * directory, whatever the number of threads: a serial analysis gives the times the next parallel one schedules files with.
+ */
+class CSharpFileScanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpFileScanner.class);
+  static final String ANALYSIS_TIMES_FILE = "csharp-analysis-times.txt";
+
+  /**
+   * Creates the visitors of each worker, which must write the lines of the files to the given factory.
+   */
+  interface VisitorsFactory {
+
+    List<SquidAstVisitor<Grammar>> create(FileLinesContextFactory fileLinesContextFactory);
+
+  }
+
+  private final int threads;
+  private final File analysisTimesFile;
+  private final VisitorTimings visitorTimings;
+  private final Object lock;
+
+  /**
+   * @param lock held while the listener runs and while the file lines contexts are created or saved, when several threads
+   * scan files, as they write to the index, which is not thread-safe
+   */
+  CSharpFileScanner(int threads, File workingDir, @Nullable VisitorTimings visitorTimings, Object lock) {
+    this.threads = threads;
+    this.analysisTimesFile = new File(workingDir, ANALYSIS_TIMES_FILE);
+    this.visitorTimings = visitorTimings;
+    this.lock = lock;
+  }
+
+  /**
+   * Files are handed over to the given listener as soon as they are analyzed, so that their source code trees can be
+   * garbage collected right away rather than at the end of the scan.
+   *
+   * @return the time spent on each of the files, including the one spent in the listener
+   */
+  FileScheduler scan(CSharpConfiguration conf, List<File> files, FileLinesContextFactory fileLinesContextFactory,
+    final VisitorsFactory visitorsFactory, final SourceFileListener listener) {
+    FileScheduler scheduler = FileScheduler.load(analysisTimesFile);
+    if (threads > 1) {
+      scanInParallel(conf, files, new SynchronizedFileLinesContextFactory(fileLinesContextFactory, lock), visitorsFactory, listener,
+        scheduler);
+    } else {
+      scanOneByOne(conf, files, fileLinesContextFactory, visitorsFactory, listener, scheduler);
+    }
+    scheduler.save(analysisTimesFile);
+    return scheduler;
+  }
+
+  private void scanInParallel(CSharpConfiguration conf, List<File> files, final FileLinesContextFactory fileLinesContextFactory,
+    final VisitorsFactory visitorsFactory, final SourceFileListener listener, FileScheduler scheduler) {
+    LOG.info("Analyzing C# files using " + threads + " threads");
+    CSharpParallelScanner scanner = new CSharpParallelScanner(conf, threads, new CSharpParallelScanner.VisitorsFactory() {
+      @Override
+      public List<SquidAstVisitor<Grammar>> create() {
+        return visitorsFactory.create(fileLinesContextFactory);
+      }
+    }, new SourceFileListener() {
+      @Override
+      public void onSourceFile(SourceFile sourceFile) {
+        synchronized (lock) {
+          listener.onSourceFile(sourceFile);
+        }
+      }
+    }, visitorTimings);
+    // Files are scheduled longest first, based on how long they took during the previous analysis
+    scanner.scanFiles(files, scheduler);
+  }
+
+  private void scanOneByOne(CSharpConfiguration conf, List<File> files, FileLinesContextFactory fileLinesContextFactory,
+    VisitorsFactory visitorsFactory, final SourceFileListener listener, final FileScheduler scheduler) {
+    // Files are analyzed one after the other, each one from the moment the previous one was handed over to the listener
+    SourceFileListener timedListener = new SourceFileListener() {
+      private long start = System.nanoTime();
+
+      @Override
+      public void onSourceFile(SourceFile sourceFile) {
+        listener.onSourceFile(sourceFile);
+        long now = System.nanoTime();
+        scheduler.record(new File(sourceFile.getKey()), TimeUnit.NANOSECONDS.toMillis(now - start));
+        start = now;
+      }
+    };
+    List<SquidAstVisitor<Grammar>> visitors = visitorsFactory.create(fileLinesContextFactory);
+    AstScanner<Grammar> scanner = CSharpAstScanner.createStreaming(conf, timedListener, visitorTimings,
+      visitors.toArray(new SquidAstVisitor[visitors.size()]));
+    scanner.scanFiles(files);
+  }
+
+}
@@ -25,6 +25,17 @@ public final class CSharpSquidConstants {
   public static final String REPOSITORY_NAME = "SonarQube";
 
   public static final String IGNORE_HEADER_COMMENTS = "sonar.cs.ignoreHeaderComments";
+  public static final String ANALYSIS_THREADS = "sonar.cs.analysis.threads";
+  public static final String ANALYSIS_CACHE_DIRECTORY = "sonar.cs.analysis.cacheDirectory";
+  public static final String PARSE_TIME_LIMIT = "sonar.cs.analysis.parseTimeLimit";
+  public static final String PARSE_TOKEN_LIMIT = "sonar.cs.analysis.parseTokenLimit";
+  public static final String STALL_THRESHOLD = "sonar.cs.analysis.stallThreshold";
+  public static final String ANALYSIS_VISITOR_TIMINGS = "sonar.cs.analysis.visitorTimings";
+  public static final String VISITOR_TIMINGS_REPORT = "csharp-visitor-timings.csv";
+  public static final String TYPE_DEPENDENCIES = "sonar.cs.analysis.typeDependencies";
+  public static final String TYPE_DEPENDENCIES_REPORT = "csharp-type-dependencies.csv";
+  public static final String PREPROCESSOR_SYMBOLS = "sonar.cs.analysis.preprocessorSymbols";
+  public static final String DETECT_DUPLICATIONS = "sonar.cs.analysis.detectDuplications";
 
   private CSharpSquidConstants() {
   }
@@ -19,25 +19,35 @@
  */
 package org.sonar.plugins.csharp.squid;
 
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.sonar.csharp.checks.CheckList;
 import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpMetric;
 import com.sonar.csharp.squid.api.source.SourceMember;
+import com.sonar.csharp.squid.api.source.SourceMembers;
 import com.sonar.csharp.squid.metric.CSharpFileLinesVisitor;
 import com.sonar.csharp.squid.metric.FileProvider;
-import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import com.sonar.csharp.squid.scanner.FileScheduler;
+import com.sonar.csharp.squid.scanner.SourceFileListener;
+import com.sonar.csharp.squid.scanner.VisitorTimings;
+import com.sonar.csharp.squid.tree.CSharpTypeDependencyVisitor;
+import com.sonar.csharp.squid.tree.TypeDependencyGraph;
 import com.sonar.sslr.api.Grammar;
-import org.sonar.squidbridge.AstScanner;
+import org.apache.commons.lang.StringUtils;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.checks.AnnotationCheckFactory;
 import org.sonar.api.checks.NoSonarFilter;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.measures.RangeDistributionBuilder;
@@ -45,22 +55,35 @@ import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.scan.filesystem.FileQuery;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.plugins.csharp.api.CSharp;
 import org.sonar.plugins.csharp.api.CSharpConstants;
+import org.sonar.plugins.csharp.squid.cache.AbandonedParseVisitor;
+import org.sonar.plugins.csharp.squid.cache.AnalysisCache;
+import org.sonar.plugins.csharp.squid.cache.CacheFingerprint;
+import org.sonar.plugins.csharp.squid.cache.FileAnalysis;
+import org.sonar.plugins.csharp.squid.cache.RecordingFileLinesContextFactory;
 import org.sonar.plugins.csharp.squid.check.CSharpCheck;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCpdLexer;
+import org.sonar.plugins.csharp.squid.cpd.CSharpCpdTokensVisitor;
+import org.sonar.plugins.csharp.squid.cpd.CSharpDuplicationDetector;
+import org.sonar.plugins.csharp.squid.cpd.CSharpTokenCache;
 import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceFile;
-import org.sonar.squidbridge.indexer.QueryByParent;
-import org.sonar.squidbridge.indexer.QueryByType;
+
+import javax.annotation.Nullable;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public final class CSharpSquidSensor implements Sensor {
 
@@ -71,29 +94,39 @@ public final class CSharpSquidSensor implements Sensor {
   private final Settings settings;
   private final CSharp cSharp;
   private final ModuleFileSystem fileSystem;
+  private final RulesProfile profile;
   private final NoSonarFilter noSonarFilter;
+  private final Collection<Class> allChecks;
   private final AnnotationCheckFactory annotationCheckFactory;
+  private final List<AnnotationCheckFactory> checkFactories = Lists.newArrayList();
   private final FileLinesContextFactory fileLinesContextFactory;
+  private final CSharpTokenCache tokenCache;
+  // Absolute paths of the files whose tree was dropped as their parse took too long
+  private final Set<String> abandonedParses = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   private Project project;
   private SensorContext context;
-  private AstScanner<Grammar> scanner;
+  private VisitorTimings visitorTimings;
+  private TypeDependencyGraph typeDependencyGraph;
 
   public CSharpSquidSensor(Settings settings, CSharp cSharp,
-    ModuleFileSystem fileSystem, RulesProfile profile, NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory) {
-    this(settings, cSharp, fileSystem, profile, noSonarFilter, fileLinesContextFactory, new CSharpCheck[0]);
+    ModuleFileSystem fileSystem, RulesProfile profile, NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory,
+    CSharpTokenCache tokenCache) {
+    this(settings, cSharp, fileSystem, profile, noSonarFilter, fileLinesContextFactory, tokenCache, new CSharpCheck[0]);
   }
 
   public CSharpSquidSensor(Settings settings, CSharp cSharp,
     ModuleFileSystem fileSystem, RulesProfile profile, NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory,
-    CSharpCheck[] cSharpChecks) {
+    CSharpTokenCache tokenCache, CSharpCheck[] cSharpChecks) {
     this.settings = settings;
     this.cSharp = cSharp;
     this.fileSystem = fileSystem;
+    this.profile = profile;
     this.noSonarFilter = noSonarFilter;
     this.fileLinesContextFactory = fileLinesContextFactory;
+    this.tokenCache = tokenCache;
 
-    Collection<Class> allChecks = CSharpCheck.toCollection(cSharpChecks);
+    this.allChecks = CSharpCheck.toCollection(cSharpChecks);
     allChecks.addAll(CheckList.getChecks());
     this.annotationCheckFactory = AnnotationCheckFactory.create(profile, CSharpSquidConstants.REPOSITORY_KEY, allChecks);
   }
@@ -108,15 +141,139 @@ public final class CSharpSquidSensor implements Sensor {
     this.project = project;
     this.context = context;
 
-    Collection<SquidAstVisitor<Grammar>> squidChecks = annotationCheckFactory.getChecks();
+    checkFactories.clear();
+    checkFactories.add(annotationCheckFactory);
+    abandonedParses.clear();
+    visitorTimings = settings.getBoolean(CSharpSquidConstants.ANALYSIS_VISITOR_TIMINGS) ? new VisitorTimings() : null;
+    typeDependencyGraph = settings.getBoolean(CSharpSquidConstants.TYPE_DEPENDENCIES) ? new TypeDependencyGraph() : null;
+
+    CSharpConfiguration conf = createParserConfiguration(project);
+    AnalysisCache cache = createCache(conf);
+    if (cache == null) {
+      scanFiles(conf, filesToAnalyze(), fileLinesContextFactory, new SourceFileListener() {
+        @Override
+        public void onSourceFile(SourceFile squidFile) {
+          saveMeasures(toSonarFile(squidFile), toFileAnalysis(squidFile, null));
+        }
+      });
+    } else {
+      analyseWithCache(conf, cache);
+    }
+
+    if (visitorTimings != null) {
+      new VisitorTimingsReport(fileSystem.workingDir()).save(visitorTimings.getTimings());
+    }
+    if (typeDependencyGraph != null) {
+      new TypeDependenciesReport(fileSystem.workingDir()).save(typeDependencyGraph.compute());
+    }
+    if (settings.getBoolean(CSharpSquidConstants.DETECT_DUPLICATIONS) && !isCpdSkipped()) {
+      new CSharpDuplicationDetector(settings, fileSystem, tokenCache).detect(conf, project, context);
+    }
+  }
+
+  private void analyseWithCache(CSharpConfiguration conf, final AnalysisCache cache) {
+    List<java.io.File> filesToScan = Lists.newArrayList();
+    List<java.io.File> cachedFiles = Lists.newArrayList();
+    final Map<String, String> hashes = Maps.newHashMap();
+    for (java.io.File file : filesToAnalyze()) {
+      String hash = AnalysisCache.hash(file);
+      FileAnalysis analysis = cache.get(cacheKey(file), hash);
+      if (analysis == null) {
+        filesToScan.add(file);
+        hashes.put(file.getAbsolutePath(), hash);
+      } else {
+        cachedFiles.add(file);
+        File sonarFile = File.fromIOFile(file, project);
+        sonarFile.setLanguage(cSharp);
+        saveLineValues(sonarFile, analysis.getLineValues());
+        saveMeasures(sonarFile, analysis);
+      }
+    }
+
+    if (!filesToScan.isEmpty()) {
+      final RecordingFileLinesContextFactory recordingFileLinesContextFactory = new RecordingFileLinesContextFactory(fileLinesContextFactory);
+      final Map<java.io.File, FileAnalysis> analyses = Maps.newHashMap();
+      FileScheduler analysisTimes = scanFiles(conf, filesToScan, recordingFileLinesContextFactory, new SourceFileListener() {
+        @Override
+        public void onSourceFile(SourceFile squidFile) {
+          File sonarFile = toSonarFile(squidFile);
+          java.io.File file = new java.io.File(squidFile.getKey());
+
+          FileAnalysis analysis = toFileAnalysis(squidFile, hashes.get(file.getAbsolutePath()));
+          analysis.setLineValues(recordingFileLinesContextFactory.remove(sonarFile));
+          saveMeasures(sonarFile, analysis);
+          // Another run may well parse the file within the time limit
+          if (!abandonedParses.contains(file.getAbsolutePath())) {
+            analyses.put(file, analysis);
+          }
+        }
+      });
+
+      for (Map.Entry<java.io.File, FileAnalysis> entry : analyses.entrySet()) {
+        Long analysisTime = analysisTimes.getRecordedTime(entry.getKey());
+        entry.getValue().setAnalysisTime(analysisTime == null ? 0 : analysisTime);
+        cache.put(cacheKey(entry.getKey()), entry.getValue());
+      }
+    }
+
+    cache.save();
+    cache.logStatistics();
+    tokenizeForCpd(conf, cachedFiles);
+  }
+
+  /**
+   * The files whose analysis comes from the cache are not scanned, so their CPD tokens are not collected: they are lexed
+   * here, with as many threads as the scan, so that the token cache holds all the files whatever the number of threads.
+   */
+  private void tokenizeForCpd(CSharpConfiguration conf, List<java.io.File> files) {
+    int threads = Math.max(1, settings.getInt(CSharpSquidConstants.ANALYSIS_THREADS));
+    if (!files.isEmpty() && !isCpdSkipped()) {
+      LOG.info("Tokenizing " + files.size() + " unchanged C# files for CPD using " + threads + " thread(s)");
+      new CSharpCpdLexer(conf).tokenize(files, threads, tokenCache);
+    }
+  }
+
+  private FileScheduler scanFiles(CSharpConfiguration conf, List<java.io.File> files, FileLinesContextFactory fileLinesContextFactory,
+    SourceFileListener listener) {
+    CSharpFileScanner scanner = new CSharpFileScanner(settings.getInt(CSharpSquidConstants.ANALYSIS_THREADS), fileSystem.workingDir(),
+      visitorTimings, this);
+    return scanner.scan(conf, files, fileLinesContextFactory, new CSharpFileScanner.VisitorsFactory() {
+      private boolean first = true;
+
+      @Override
+      public List<SquidAstVisitor<Grammar>> create(FileLinesContextFactory fileLinesContextFactory) {
+        AnnotationCheckFactory checkFactory = first ? annotationCheckFactory : nextCheckFactory();
+        first = false;
+        return createVisitors(checkFactory, fileLinesContextFactory);
+      }
+    }, listener);
+  }
+
+  private List<SquidAstVisitor<Grammar>> createVisitors(AnnotationCheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory) {
+    Collection<SquidAstVisitor<Grammar>> squidChecks = checkFactory.getChecks();
     List<SquidAstVisitor<Grammar>> visitors = Lists.newArrayList(squidChecks);
     // TODO: remove the following line & class once SSLR Squid bridge computes NCLOC_DATA_KEY & COMMENT_LINES_DATA_KEY
     visitors.add(new CSharpFileLinesVisitor(new FileProvider(project), fileLinesContextFactory));
-    scanner = CSharpAstScanner.create(createParserConfiguration(project), visitors.toArray(new SquidAstVisitor[visitors.size()]));
-    scanner.scanFiles(filesToAnalyze());
+    visitors.add(new AbandonedParseVisitor(abandonedParses));
+    if (typeDependencyGraph != null) {
+      visitors.add(new CSharpTypeDependencyVisitor(typeDependencyGraph));
+    }
+    if (!isCpdSkipped()) {
+      // Saves the CPD tokenizer from lexing the files again
+      visitors.add(new CSharpCpdTokensVisitor(tokenCache));
+    }
+    return visitors;
+  }
+
+  private boolean isCpdSkipped() {
+    return settings.getBoolean(CoreProperties.CPD_SKIP_PROPERTY) || settings.getBoolean("sonar.cpd." + CSharpConstants.LANGUAGE_KEY + ".skip");
+  }
 
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    saveMeasures(squidSourceFiles);
+  private AnnotationCheckFactory nextCheckFactory() {
+    // Checks are stateful, so each worker needs its own instances
+    AnnotationCheckFactory checkFactory = AnnotationCheckFactory.create(profile, CSharpSquidConstants.REPOSITORY_KEY, allChecks);
+    checkFactories.add(checkFactory);
+    return checkFactory;
   }
 
   private List<java.io.File> filesToAnalyze() {
@@ -126,75 +283,145 @@ public final class CSharpSquidSensor implements Sensor {
   private CSharpConfiguration createParserConfiguration(Project project) {
     CSharpConfiguration conf = new CSharpConfiguration(fileSystem.sourceCharset());
     conf.setIgnoreHeaderComments(settings.getBoolean(CSharpSquidConstants.IGNORE_HEADER_COMMENTS));
+    conf.setParseTimeLimit(settings.getLong(CSharpSquidConstants.PARSE_TIME_LIMIT));
+    conf.setParseTokenLimit(settings.getInt(CSharpSquidConstants.PARSE_TOKEN_LIMIT));
+    conf.setStallThreshold(TimeUnit.SECONDS.toMillis(settings.getLong(CSharpSquidConstants.STALL_THRESHOLD)));
+    String[] symbols = settings.getStringArray(CSharpSquidConstants.PREPROCESSOR_SYMBOLS);
+    if (symbols.length > 0) {
+      conf.setPreprocessorSymbols(ImmutableSortedSet.copyOf(symbols));
+    }
     return conf;
   }
 
-  private void saveMeasures(Collection<SourceCode> sourceFiles) {
-    for (SourceCode squidFileCode : sourceFiles) {
-      SourceFile squidFile = (SourceFile) squidFileCode;
+  @Nullable
+  private AnalysisCache createCache(CSharpConfiguration conf) {
+    String directory = settings.getString(CSharpSquidConstants.ANALYSIS_CACHE_DIRECTORY);
+    if (StringUtils.isBlank(directory)) {
+      return null;
+    }
+    if (typeDependencyGraph != null) {
+      // Only the results saved by the sensor are cached, not the types each file depends on
+      LOG.warn("The C# analysis cache set by \"" + CSharpSquidConstants.ANALYSIS_CACHE_DIRECTORY + "\" is not used, as \""
+        + CSharpSquidConstants.TYPE_DEPENDENCIES + "\" needs all the files to be analyzed");
+      return null;
+    }
 
-      /* Create the sonar file */
-      File sonarFile = File.fromIOFile(new java.io.File(squidFile.getKey()), project);
-      sonarFile.setLanguage(cSharp);
+    java.io.File cacheDirectory = new java.io.File(directory);
+    if (!cacheDirectory.isAbsolute()) {
+      cacheDirectory = new java.io.File(fileSystem.baseDir(), directory);
+    }
+    return AnalysisCache.load(cacheDirectory, CacheFingerprint.of(conf, allChecks, profile, CSharpSquidConstants.REPOSITORY_KEY));
+  }
 
-      /* No Sonar */
-      noSonarFilter.addResource(sonarFile, squidFile.getNoSonarTagLines());
+  private String cacheKey(java.io.File file) {
+    return fileSystem.baseDir().toURI().relativize(file.toURI()).getPath();
+  }
 
-      /* Files complexity distribution */
-      saveFilesComplexityDistribution(sonarFile, squidFile);
+  private File toSonarFile(SourceCode squidFile) {
+    File sonarFile = File.fromIOFile(new java.io.File(squidFile.getKey()), project);
+    sonarFile.setLanguage(cSharp);
+    return sonarFile;
+  }
 
-      /* Methods complexity distribution */
-      saveMethodsComplexityDistribution(sonarFile, squidFile);
+  private FileAnalysis toFileAnalysis(SourceFile squidFile, @Nullable String hash) {
+    FileAnalysis analysis = new FileAnalysis(hash);
 
-      /* Check messages */
-      saveViolations(squidFile, sonarFile);
+    for (CSharpMetric metric : CSharpMetric.values()) {
+      analysis.setMeasure(metric, squidFile.getDouble(metric));
+    }
 
-      /* Metrics at the file level */
-      saveMeasures(sonarFile, squidFile);
+    for (SourceMember squidMethod : SourceMembers.of(squidFile)) {
+      analysis.addMemberComplexity(squidMethod.getDouble(CSharpMetric.COMPLEXITY));
     }
-  }
 
-  private void saveMeasures(Resource sonarFile, SourceCode squidFile) {
-    context.saveMeasure(sonarFile, CoreMetrics.CLASSES, squidFile.getDouble(CSharpMetric.CLASSES));
-    context.saveMeasure(sonarFile, CoreMetrics.FUNCTIONS, squidFile.getDouble(CSharpMetric.METHODS));
-    context.saveMeasure(sonarFile, CoreMetrics.FILES, squidFile.getDouble(CSharpMetric.FILES));
-    context.saveMeasure(sonarFile, CoreMetrics.LINES, squidFile.getDouble(CSharpMetric.LINES));
-    context.saveMeasure(sonarFile, CoreMetrics.NCLOC, squidFile.getDouble(CSharpMetric.LINES_OF_CODE));
-    context.saveMeasure(sonarFile, CoreMetrics.STATEMENTS, squidFile.getDouble(CSharpMetric.STATEMENTS));
-    context.saveMeasure(sonarFile, CoreMetrics.ACCESSORS, squidFile.getDouble(CSharpMetric.ACCESSORS));
-    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, squidFile.getDouble(CSharpMetric.COMPLEXITY));
-    context.saveMeasure(sonarFile, CoreMetrics.COMMENT_LINES, squidFile.getDouble(CSharpMetric.COMMENT_LINES));
-    context.saveMeasure(sonarFile, CoreMetrics.PUBLIC_API, squidFile.getDouble(CSharpMetric.PUBLIC_API));
-    context.saveMeasure(sonarFile, CoreMetrics.PUBLIC_UNDOCUMENTED_API,
-      squidFile.getDouble(CSharpMetric.PUBLIC_API) - squidFile.getDouble(CSharpMetric.PUBLIC_DOC_API));
-  }
+    analysis.addNoSonarLines(squidFile.getNoSonarTagLines());
 
-  private void saveViolations(SourceCode squidFile, File sonarFile) {
     Set<CheckMessage> messages = squidFile.getCheckMessages();
     if (messages != null) {
       for (CheckMessage message : messages) {
-        @SuppressWarnings("unchecked")
-        Violation violation = Violation.create(annotationCheckFactory.getActiveRule(message.getCheck()), sonarFile);
-        violation.setLineId(message.getLine());
-        violation.setMessage(message.getText(Locale.ENGLISH));
-        context.saveViolation(violation);
+        ActiveRule activeRule = getActiveRule(message.getCheck());
+        if (activeRule != null) {
+          analysis.addIssue(activeRule.getRuleKey(), message.getLine(), message.getText(Locale.ENGLISH));
+        }
+      }
+    }
+
+    return analysis;
+  }
+
+  private ActiveRule getActiveRule(Object check) {
+    for (AnnotationCheckFactory checkFactory : checkFactories) {
+      ActiveRule activeRule = checkFactory.getActiveRule(check);
+      if (activeRule != null) {
+        return activeRule;
       }
     }
+    return null;
+  }
+
+  private void saveLineValues(File sonarFile, Map<String, Map<Integer, Integer>> lineValues) {
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(sonarFile);
+    for (Map.Entry<String, Map<Integer, Integer>> metricValues : lineValues.entrySet()) {
+      for (Map.Entry<Integer, Integer> lineValue : metricValues.getValue().entrySet()) {
+        fileLinesContext.setIntValue(metricValues.getKey(), lineValue.getKey(), lineValue.getValue());
+      }
+    }
+    fileLinesContext.save();
+  }
+
+  private void saveMeasures(File sonarFile, FileAnalysis analysis) {
+    /* No Sonar */
+    noSonarFilter.addResource(sonarFile, analysis.getNoSonarLines());
+
+    /* Files complexity distribution */
+    saveFilesComplexityDistribution(sonarFile, analysis);
+
+    /* Methods complexity distribution */
+    saveMethodsComplexityDistribution(sonarFile, analysis);
+
+    /* Check messages */
+    saveViolations(sonarFile, analysis);
+
+    /* Metrics at the file level */
+    saveFileMeasures(sonarFile, analysis);
+  }
+
+  private void saveFileMeasures(Resource sonarFile, FileAnalysis analysis) {
+    context.saveMeasure(sonarFile, CoreMetrics.CLASSES, analysis.getMeasure(CSharpMetric.CLASSES));
+    context.saveMeasure(sonarFile, CoreMetrics.FUNCTIONS, analysis.getMeasure(CSharpMetric.METHODS));
+    context.saveMeasure(sonarFile, CoreMetrics.FILES, analysis.getMeasure(CSharpMetric.FILES));
+    context.saveMeasure(sonarFile, CoreMetrics.LINES, analysis.getMeasure(CSharpMetric.LINES));
+    context.saveMeasure(sonarFile, CoreMetrics.NCLOC, analysis.getMeasure(CSharpMetric.LINES_OF_CODE));
+    context.saveMeasure(sonarFile, CoreMetrics.STATEMENTS, analysis.getMeasure(CSharpMetric.STATEMENTS));
+    context.saveMeasure(sonarFile, CoreMetrics.ACCESSORS, analysis.getMeasure(CSharpMetric.ACCESSORS));
+    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, analysis.getMeasure(CSharpMetric.COMPLEXITY));
+    context.saveMeasure(sonarFile, CoreMetrics.COMMENT_LINES, analysis.getMeasure(CSharpMetric.COMMENT_LINES));
+    context.saveMeasure(sonarFile, CoreMetrics.PUBLIC_API, analysis.getMeasure(CSharpMetric.PUBLIC_API));
+    context.saveMeasure(sonarFile, CoreMetrics.PUBLIC_UNDOCUMENTED_API,
+      analysis.getMeasure(CSharpMetric.PUBLIC_API) - analysis.getMeasure(CSharpMetric.PUBLIC_DOC_API));
+  }
+
+  private void saveViolations(File sonarFile, FileAnalysis analysis) {
+    for (FileAnalysis.Issue issue : analysis.getIssues()) {
+      Violation violation = Violation.create(profile.getActiveRule(CSharpSquidConstants.REPOSITORY_KEY, issue.getRuleKey()), sonarFile);
+      violation.setLineId(issue.getLine());
+      violation.setMessage(issue.getMessage());
+      context.saveViolation(violation);
+    }
   }
 
-  private void saveFilesComplexityDistribution(File sonarFile, SourceFile squidFile) {
+  private void saveFilesComplexityDistribution(File sonarFile, FileAnalysis analysis) {
     RangeDistributionBuilder complexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, FILES_DISTRIB_BOTTOM_LIMITS);
-    complexityDistribution.add(squidFile.getDouble(CSharpMetric.COMPLEXITY));
+    complexityDistribution.add(analysis.getMeasure(CSharpMetric.COMPLEXITY));
     context.saveMeasure(sonarFile, complexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
   }
 
-  private void saveMethodsComplexityDistribution(File sonarFile, SourceFile squidFile) {
-    Collection<SourceCode> squidMethods = scanner.getIndex().search(new QueryByParent(squidFile), new QueryByType(SourceMember.class));
+  private void saveMethodsComplexityDistribution(File sonarFile, FileAnalysis analysis) {
     RangeDistributionBuilder complexityMethodDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION,
       METHOD_DISTRIB_BOTTOM_LIMITS);
 
-    for (SourceCode squidMethod : squidMethods) {
-      complexityMethodDistribution.add(squidMethod.getDouble(CSharpMetric.COMPLEXITY));
+    for (Double complexity : analysis.getMemberComplexities()) {
+      complexityMethodDistribution.add(complexity);
     }
 
     context.saveMeasure(sonarFile, complexityMethodDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
@@ -0,0 +1,80 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.tree.TypeDependencies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Logs a summary of the dependencies between types, and writes the coupling of each namespace and type to a CSV file of the
+ * working directory.
+ */
+class TypeDependenciesReport {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TypeDependenciesReport.class);
+
+  private final File reportFile;
+
+  TypeDependenciesReport(File workingDir) {
+    this.reportFile = new File(workingDir, CSharpSquidConstants.TYPE_DEPENDENCIES_REPORT);
+  }
+
+  void save(TypeDependencies dependencies) {
+    int typesInCycles = 0;
+    StringBuilder report = new StringBuilder("kind,name,afferent_coupling,efferent_coupling,instability,cycle_size\n");
+    for (int namespace = 0; namespace < dependencies.getNamespaceCount(); namespace++) {
+      report.append(String.format(Locale.ENGLISH, "namespace,%s,%d,%d,%.3f,%d\n",
+        dependencies.getNamespace(namespace),
+        dependencies.getNamespaceAfferentCoupling(namespace),
+        dependencies.getNamespaceEfferentCoupling(namespace),
+        dependencies.getNamespaceInstability(namespace),
+        dependencies.getNamespaceCycleSize(namespace)));
+    }
+    for (int type = 0; type < dependencies.getTypeCount(); type++) {
+      if (dependencies.getTypeCycleSize(type) > 1) {
+        typesInCycles++;
+      }
+      report.append(String.format(Locale.ENGLISH, "type,%s,%d,%d,%.3f,%d\n",
+        dependencies.getTypeKey(type),
+        dependencies.getTypeAfferentCoupling(type),
+        dependencies.getTypeEfferentCoupling(type),
+        dependencies.getTypeInstability(type),
+        dependencies.getTypeCycleSize(type)));
+    }
+    LOG.info("C# type dependencies: " + dependencies.getTypeCount() + " types in " + dependencies.getNamespaceCount() + " namespaces, "
+      + dependencies.getDependencyCount() + " dependencies, " + typesInCycles + " types in dependency cycles");
+
+    try {
+      Files.createParentDirs(reportFile);
+      Files.write(report, reportFile, Charsets.UTF_8);
+      LOG.info("Dependencies between C# types written to " + reportFile);
+    } catch (IOException e) {
+      LOG.warn("Unable to write the dependencies between C# types to " + reportFile, e);
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.sonar.csharp.squid.scanner.VisitorTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the slowest visitors, and writes the time spent in each phase of each visitor to a CSV file of the working directory.
+ */
+class VisitorTimingsReport {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VisitorTimingsReport.class);
+  private static final int SLOWEST_VISITORS = 10;
+
+  private final File reportFile;
+
+  VisitorTimingsReport(File workingDir) {
+    this.reportFile = new File(workingDir, CSharpSquidConstants.VISITOR_TIMINGS_REPORT);
+  }
+
+  void save(List<VisitorTimings.Timing> timings) {
+    long totalNanos = 0;
+    for (VisitorTimings.Timing timing : timings) {
+      totalNanos += timing.getTotalNanos();
+    }
+
+    LOG.info("Time spent in C# visitors: " + TimeUnit.NANOSECONDS.toMillis(totalNanos) + " ms, the slowest ones being:");
+    for (VisitorTimings.Timing timing : timings.subList(0, Math.min(SLOWEST_VISITORS, timings.size()))) {
+      LOG.info(String.format(Locale.ENGLISH, "%8d ms %5.1f%%  %s",
+        TimeUnit.NANOSECONDS.toMillis(timing.getTotalNanos()),
+        totalNanos == 0 ? 0 : 100.0 * timing.getTotalNanos() / totalNanos,
+        timing.getVisitor()));
+    }
+
+    StringBuilder report = new StringBuilder("visitor,total_ns");
+    for (VisitorTimings.Phase phase : VisitorTimings.Phase.values()) {
+      String column = phase.name().toLowerCase(Locale.ENGLISH);
+      report.append(',').append(column).append("_ns,").append(column).append("_calls");
+    }
+    report.append('\n');
+    for (VisitorTimings.Timing timing : timings) {
+      report.append(timing.getVisitor()).append(',').append(timing.getTotalNanos());
+      for (VisitorTimings.Phase phase : VisitorTimings.Phase.values()) {
+        report.append(',').append(timing.getNanos(phase)).append(',').append(timing.getCalls(phase));
+      }
+      report.append('\n');
+    }
+
+    try {
+      Files.createParentDirs(reportFile);
+      Files.write(report, reportFile, Charsets.UTF_8);
+      LOG.info("Time spent in each C# visitor written to " + reportFile);
+    } catch (IOException e) {
+      LOG.warn("Unable to write the time spent in each C# visitor to " + reportFile, e);
+    }
+  }
+
+}
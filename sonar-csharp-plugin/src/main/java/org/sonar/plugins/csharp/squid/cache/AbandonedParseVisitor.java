@@ -0,0 +1,53 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.sonar.csharp.squid.parser.ParseBudgetExceeded;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import javax.annotation.Nullable;
+
+import java.util.Set;
+
+/**
+ * Collects the absolute paths of the files whose tree was dropped as their parse took too long. Whether a file goes over the
+ * parse time limit depends on the load of the machine, so their results must not be put in the {@link AnalysisCache}.
+ */
+public class AbandonedParseVisitor extends SquidAstVisitor<Grammar> {
+
+  private final Set<String> paths;
+
+  /**
+   * @param paths where the paths are added, which must be thread-safe when it is shared by the visitors of parallel workers
+   */
+  public AbandonedParseVisitor(Set<String> paths) {
+    this.paths = paths;
+  }
+
+  @Override
+  public void visitFile(@Nullable AstNode astNode) {
+    if (astNode != null && astNode.is(ParseBudgetExceeded.TIME_LIMIT)) {
+      paths.add(getContext().getFile().getAbsolutePath());
+    }
+  }
+
+}
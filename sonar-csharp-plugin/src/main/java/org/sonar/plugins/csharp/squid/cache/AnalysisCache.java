@@ -0,0 +1,251 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.SonarException;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of the {@link FileAnalysis} of each file, keyed by file path and content hash.
+ * The whole cache is discarded as soon as its fingerprint, which identifies everything else the results depend on
+ * (active rules, plugin version, parser configuration...), changes.
+ * Only the entries of files analyzed during the current run are written back, so that removed files do not stay forever.
+ */
+public class AnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisCache.class);
+  private static final String FILE_NAME = "csharp-analysis.cache";
+  // To be increased whenever the format written by FileAnalysis changes
+  private static final int FORMAT_VERSION = 1;
+
+  private final File file;
+  private final String fingerprint;
+  private final Map<String, FileAnalysis> previousEntries;
+  private final Map<String, FileAnalysis> entries = Maps.newHashMap();
+
+  private int hits;
+  private int misses;
+  private long timeSaved;
+
+  AnalysisCache(File file, String fingerprint, Map<String, FileAnalysis> previousEntries) {
+    this.file = file;
+    this.fingerprint = fingerprint;
+    this.previousEntries = previousEntries;
+  }
+
+  public static AnalysisCache load(File directory, String fingerprint) {
+    File file = new File(directory, FILE_NAME);
+    Map<String, FileAnalysis> previousEntries = Maps.newHashMap();
+
+    if (file.isFile()) {
+      Content content = read(file);
+      if (content == null) {
+        LOG.warn("Unable to read the C# analysis cache, it will be rebuilt: " + file);
+      } else if (!fingerprint.equals(content.fingerprint)) {
+        LOG.info("The rules, the plugin version or the settings changed since the C# analysis cache was written, it will be rebuilt");
+      } else {
+        previousEntries.putAll(content.entries);
+      }
+    }
+
+    return new AnalysisCache(file, fingerprint, previousEntries);
+  }
+
+  public static String hash(File file) {
+    MessageDigest digest = newSha1Digest();
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new SonarException("Unable to read " + file, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    return toHex(digest.digest());
+  }
+
+  public static String hash(String text) {
+    return toHex(newSha1Digest().digest(text.getBytes(Charsets.UTF_8)));
+  }
+
+  /**
+   * SHA-1 is always available in the JRE, which saves the plugin from relying on whatever digest library the platform ships.
+   */
+  private static MessageDigest newSha1Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Returns the cached analysis of the given file, or null if the file was not analyzed yet or if its content changed.
+   * A returned analysis is kept in the cache for the next run.
+   */
+  @Nullable
+  public FileAnalysis get(String path, String hash) {
+    FileAnalysis analysis = previousEntries.get(path);
+    if (analysis == null || !analysis.getHash().equals(hash)) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    timeSaved += analysis.getAnalysisTime();
+    entries.put(path, analysis);
+    return analysis;
+  }
+
+  public void put(String path, FileAnalysis analysis) {
+    entries.put(path, analysis);
+  }
+
+  public void save() {
+    File tmpFile = new File(file.getPath() + ".tmp");
+    DataOutputStream output = null;
+    try {
+      FileUtils.forceMkdir(file.getParentFile());
+      output = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile))));
+      output.writeInt(FORMAT_VERSION);
+      FileAnalysis.writeString(output, fingerprint);
+      output.writeInt(entries.size());
+      for (Map.Entry<String, FileAnalysis> entry : entries.entrySet()) {
+        FileAnalysis.writeString(output, entry.getKey());
+        entry.getValue().writeTo(output);
+      }
+      output.close();
+
+      FileUtils.deleteQuietly(file);
+      FileUtils.moveFile(tmpFile, file);
+    } catch (IOException e) {
+      LOG.warn("Unable to write the C# analysis cache: " + file, e);
+      FileUtils.deleteQuietly(tmpFile);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+
+  /**
+   * Logs the size of the cache, its hit rate and the analysis time it saved.
+   */
+  public void logStatistics() {
+    int lookups = hits + misses;
+    LOG.info("C# analysis cache: " + size() + " entries (" + file.length() / 1024 + " KB), "
+      + hits + "/" + lookups + " files found ("
+      + String.format(Locale.ENGLISH, "%.1f", lookups == 0 ? 0 : 100.0 * hits / lookups) + "% hit rate), "
+      + "about " + timeSaved + " ms saved");
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public int getHits() {
+    return hits;
+  }
+
+  public int getMisses() {
+    return misses;
+  }
+
+  /**
+   * Sum of the analysis times, in milliseconds, of the files found in the cache.
+   */
+  public long getTimeSaved() {
+    return timeSaved;
+  }
+
+  /**
+   * Returns null if the file cannot be read, or was written with another format.
+   */
+  @Nullable
+  private static Content read(File file) {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+      if (input.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      Content content = new Content(FileAnalysis.readString(input));
+      for (int i = FileAnalysis.readSize(input); i > 0; i--) {
+        content.entries.put(FileAnalysis.readString(input), FileAnalysis.readFrom(input));
+      }
+      return content;
+    } catch (IOException e) {
+      LOG.debug("Unable to read " + file, e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class Content {
+
+    private final String fingerprint;
+    private final Map<String, FileAnalysis> entries = Maps.newHashMap();
+
+    public Content(String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+  }
+
+}
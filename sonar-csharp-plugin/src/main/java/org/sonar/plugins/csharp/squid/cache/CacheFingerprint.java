@@ -0,0 +1,90 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.ActiveRuleParam;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything but the content of the files that the results of the analysis depend on: the version of the plugin, the
+ * configuration of the parser, the checks and the active rules of the repository with their parameters.
+ */
+public final class CacheFingerprint {
+
+  // Hashing the plugin JAR once is enough, whatever the number of modules
+  private static String pluginVersion;
+
+  private CacheFingerprint() {
+  }
+
+  public static String of(CSharpConfiguration conf, Collection<Class> checks, RulesProfile profile, String repositoryKey) {
+    List<String> parts = Lists.newArrayList();
+    parts.add(pluginVersion());
+    parts.add(conf.getCharset().name());
+    parts.add(Boolean.toString(conf.getIgnoreHeaderComments()));
+    parts.add(Long.toString(conf.getParseTimeLimit()));
+    parts.add(Integer.toString(conf.getParseTokenLimit()));
+    parts.add(conf.getPreprocessorSymbols() == null ? "" : Joiner.on(',').join(conf.getPreprocessorSymbols()));
+
+    for (Class check : checks) {
+      parts.add(check.getName());
+    }
+
+    List<String> activeRules = Lists.newArrayList();
+    for (ActiveRule activeRule : profile.getActiveRulesByRepository(repositoryKey)) {
+      List<String> params = Lists.newArrayList();
+      for (ActiveRuleParam param : activeRule.getActiveRuleParams()) {
+        params.add(param.getKey() + "=" + param.getValue());
+      }
+      Collections.sort(params);
+      activeRules.add(activeRule.getRuleKey() + params);
+    }
+    Collections.sort(activeRules);
+    parts.addAll(activeRules);
+
+    return AnalysisCache.hash(Joiner.on('\n').join(parts));
+  }
+
+  private static synchronized String pluginVersion() {
+    if (pluginVersion == null) {
+      Package pluginPackage = CacheFingerprint.class.getPackage();
+      String version = pluginPackage == null ? null : pluginPackage.getImplementationVersion();
+      if (version == null || version.endsWith("-SNAPSHOT")) {
+        // Snapshots are rebuilt without changing their version: rely on the content of the plugin JAR
+        File jar = FileUtils.toFile(CacheFingerprint.class.getProtectionDomain().getCodeSource().getLocation());
+        version = StringUtils.defaultString(version) + "@" + (jar != null && jar.isFile() ? AnalysisCache.hash(jar) : "classes");
+      }
+      pluginVersion = version;
+    }
+    return pluginVersion;
+  }
+
+}
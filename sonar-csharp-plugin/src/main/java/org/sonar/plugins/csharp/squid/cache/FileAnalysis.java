@@ -0,0 +1,245 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.api.CSharpMetric;
+
+import javax.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of the analysis of one file, as they are saved by the sensor: they can be replayed without parsing the file again.
+ */
+public class FileAnalysis {
+
+  private final String hash;
+  private long analysisTime;
+  private final Map<String, Double> measures = Maps.newHashMap();
+  private final List<Double> memberComplexities = Lists.newArrayList();
+  private final Set<Integer> noSonarLines = Sets.newHashSet();
+  private final Map<String, Map<Integer, Integer>> lineValues = Maps.newHashMap();
+  private final List<Issue> issues = Lists.newArrayList();
+
+  public FileAnalysis(String hash) {
+    this.hash = hash;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  /**
+   * Time, in milliseconds, that the analysis of this file took.
+   */
+  public long getAnalysisTime() {
+    return analysisTime;
+  }
+
+  public void setAnalysisTime(long analysisTime) {
+    this.analysisTime = analysisTime;
+  }
+
+  public double getMeasure(CSharpMetric metric) {
+    Double value = measures.get(metric.name());
+    return value == null ? 0 : value;
+  }
+
+  public void setMeasure(CSharpMetric metric, double value) {
+    measures.put(metric.name(), value);
+  }
+
+  public List<Double> getMemberComplexities() {
+    return Collections.unmodifiableList(memberComplexities);
+  }
+
+  public void addMemberComplexity(double complexity) {
+    memberComplexities.add(complexity);
+  }
+
+  public Set<Integer> getNoSonarLines() {
+    return Collections.unmodifiableSet(noSonarLines);
+  }
+
+  public void addNoSonarLines(@Nullable Set<Integer> lines) {
+    if (lines != null) {
+      noSonarLines.addAll(lines);
+    }
+  }
+
+  /**
+   * Line values saved through the {@link org.sonar.api.measures.FileLinesContext}, by metric key and then by line.
+   */
+  public Map<String, Map<Integer, Integer>> getLineValues() {
+    return Collections.unmodifiableMap(lineValues);
+  }
+
+  public void setLineValues(Map<String, Map<Integer, Integer>> lineValues) {
+    this.lineValues.clear();
+    this.lineValues.putAll(lineValues);
+  }
+
+  public List<Issue> getIssues() {
+    return Collections.unmodifiableList(issues);
+  }
+
+  public void addIssue(String ruleKey, @Nullable Integer line, String message) {
+    issues.add(new Issue(ruleKey, line, message));
+  }
+
+  /**
+   * Writes this analysis in the format read by {@link #readFrom(DataInput)}, which {@link AnalysisCache} versions.
+   */
+  void writeTo(DataOutput output) throws IOException {
+    writeString(output, hash);
+    output.writeLong(analysisTime);
+
+    output.writeInt(measures.size());
+    for (Map.Entry<String, Double> measure : measures.entrySet()) {
+      writeString(output, measure.getKey());
+      output.writeDouble(measure.getValue());
+    }
+
+    output.writeInt(memberComplexities.size());
+    for (Double complexity : memberComplexities) {
+      output.writeDouble(complexity);
+    }
+
+    output.writeInt(noSonarLines.size());
+    for (Integer line : noSonarLines) {
+      output.writeInt(line);
+    }
+
+    output.writeInt(lineValues.size());
+    for (Map.Entry<String, Map<Integer, Integer>> metricValues : lineValues.entrySet()) {
+      writeString(output, metricValues.getKey());
+      output.writeInt(metricValues.getValue().size());
+      for (Map.Entry<Integer, Integer> lineValue : metricValues.getValue().entrySet()) {
+        output.writeInt(lineValue.getKey());
+        output.writeInt(lineValue.getValue());
+      }
+    }
+
+    output.writeInt(issues.size());
+    for (Issue issue : issues) {
+      writeString(output, issue.ruleKey);
+      output.writeBoolean(issue.line != null);
+      if (issue.line != null) {
+        output.writeInt(issue.line);
+      }
+      writeString(output, issue.message);
+    }
+  }
+
+  static FileAnalysis readFrom(DataInput input) throws IOException {
+    FileAnalysis analysis = new FileAnalysis(readString(input));
+    analysis.analysisTime = input.readLong();
+
+    for (int i = readSize(input); i > 0; i--) {
+      analysis.measures.put(readString(input), input.readDouble());
+    }
+
+    for (int i = readSize(input); i > 0; i--) {
+      analysis.memberComplexities.add(input.readDouble());
+    }
+
+    for (int i = readSize(input); i > 0; i--) {
+      analysis.noSonarLines.add(input.readInt());
+    }
+
+    for (int i = readSize(input); i > 0; i--) {
+      String metricKey = readString(input);
+      Map<Integer, Integer> values = Maps.newHashMap();
+      for (int j = readSize(input); j > 0; j--) {
+        values.put(input.readInt(), input.readInt());
+      }
+      analysis.lineValues.put(metricKey, values);
+    }
+
+    for (int i = readSize(input); i > 0; i--) {
+      String ruleKey = readString(input);
+      Integer line = input.readBoolean() ? input.readInt() : null;
+      analysis.issues.add(new Issue(ruleKey, line, readString(input)));
+    }
+
+    return analysis;
+  }
+
+  /**
+   * Unlike {@link DataOutput#writeUTF(String)}, not limited to 64 KB, which the stack traces of some issues go over.
+   */
+  static void writeString(DataOutput output, String value) throws IOException {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  static String readString(DataInput input) throws IOException {
+    byte[] bytes = new byte[readSize(input)];
+    input.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  static int readSize(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size < 0) {
+      throw new IOException("Negative size: " + size);
+    }
+    return size;
+  }
+
+  public static class Issue {
+
+    private final String ruleKey;
+    private final Integer line;
+    private final String message;
+
+    public Issue(String ruleKey, @Nullable Integer line, String message) {
+      this.ruleKey = ruleKey;
+      this.line = line;
+      this.message = message;
+    }
+
+    public String getRuleKey() {
+      return ruleKey;
+    }
+
+    @Nullable
+    public Integer getLine() {
+      return line;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+  }
+
+}
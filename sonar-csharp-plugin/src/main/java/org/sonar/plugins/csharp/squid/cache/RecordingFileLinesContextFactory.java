@@ -0,0 +1,102 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.resources.Resource;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Keeps track of the line values saved through the created contexts, so that they can be stored in the {@link AnalysisCache}.
+ */
+public class RecordingFileLinesContextFactory implements FileLinesContextFactory {
+
+  private final FileLinesContextFactory delegate;
+  private final Map<String, Map<String, Map<Integer, Integer>>> lineValuesByResource = Collections.synchronizedMap(
+    Maps.<String, Map<String, Map<Integer, Integer>>>newHashMap());
+
+  public RecordingFileLinesContextFactory(FileLinesContextFactory delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public FileLinesContext createFor(Resource resource) {
+    Map<String, Map<Integer, Integer>> lineValues = Maps.newHashMap();
+    lineValuesByResource.put(resource.getKey(), lineValues);
+    return new RecordingFileLinesContext(delegate.createFor(resource), lineValues);
+  }
+
+  /**
+   * Returns the line values, by metric key and then by line, recorded for the given resource and forgets about them.
+   */
+  public Map<String, Map<Integer, Integer>> remove(Resource resource) {
+    Map<String, Map<Integer, Integer>> lineValues = lineValuesByResource.remove(resource.getKey());
+    return lineValues == null ? Collections.<String, Map<Integer, Integer>>emptyMap() : lineValues;
+  }
+
+  private static class RecordingFileLinesContext implements FileLinesContext {
+
+    private final FileLinesContext delegate;
+    private final Map<String, Map<Integer, Integer>> lineValues;
+
+    public RecordingFileLinesContext(FileLinesContext delegate, Map<String, Map<Integer, Integer>> lineValues) {
+      this.delegate = delegate;
+      this.lineValues = lineValues;
+    }
+
+    @Override
+    public void setIntValue(String metricKey, int line, int value) {
+      delegate.setIntValue(metricKey, line, value);
+
+      Map<Integer, Integer> values = lineValues.get(metricKey);
+      if (values == null) {
+        values = Maps.newHashMap();
+        lineValues.put(metricKey, values);
+      }
+      values.put(line, value);
+    }
+
+    @Override
+    public Integer getIntValue(String metricKey, int line) {
+      return delegate.getIntValue(metricKey, line);
+    }
+
+    @Override
+    public void setStringValue(String metricKey, int line, String value) {
+      delegate.setStringValue(metricKey, line, value);
+    }
+
+    @Override
+    public String getStringValue(String metricKey, int line) {
+      return delegate.getStringValue(metricKey, line);
+    }
+
+    @Override
+    public void save() {
+      delegate.save();
+    }
+
+  }
+
+}
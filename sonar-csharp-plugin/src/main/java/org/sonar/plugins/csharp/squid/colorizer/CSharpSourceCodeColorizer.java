@@ -19,22 +19,17 @@
  */
 package org.sonar.plugins.csharp.squid.colorizer;
 
-import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.google.common.collect.ImmutableList;
+import com.sonar.csharp.squid.colorizer.CSharpLexerTokenizer;
 import org.sonar.api.web.CodeColorizerFormat;
-import org.sonar.colorizer.CDocTokenizer;
-import org.sonar.colorizer.CppDocTokenizer;
-import org.sonar.colorizer.KeywordsTokenizer;
-import org.sonar.colorizer.LiteralTokenizer;
-import org.sonar.colorizer.RegexpTokenizer;
 import org.sonar.colorizer.Tokenizer;
 import org.sonar.plugins.csharp.api.CSharpConstants;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class CSharpSourceCodeColorizer extends CodeColorizerFormat {
 
-  private static final String SPAN = "</span>";
+  private final List<Tokenizer> tokenizers = ImmutableList.<Tokenizer>of(new CSharpLexerTokenizer());
 
   public CSharpSourceCodeColorizer() {
     super(CSharpConstants.LANGUAGE_KEY);
@@ -42,13 +37,6 @@ public class CSharpSourceCodeColorizer extends CodeColorizerFormat {
 
   @Override
   public List<Tokenizer> getTokenizers() {
-    List<Tokenizer> tokenizers = new ArrayList<Tokenizer>();
-    tokenizers.add(new CDocTokenizer("<span class=\"cd\">", SPAN));
-    tokenizers.add(new CppDocTokenizer("<span class=\"cppd\">", SPAN));
-    tokenizers.add(new KeywordsTokenizer("<span class=\"k\">", SPAN, CSharpKeyword.keywordValues()));
-    tokenizers.add(new LiteralTokenizer("<span class=\"s\">", SPAN));
-    tokenizers.add(new RegexpTokenizer("<span class=\"j\">", SPAN, "#[^\\n\\r]*+"));
-    tokenizers.add(new RegexpTokenizer("<span class=\"c\">", SPAN, "[+-]?[0-9]++(\\.[0-9]*+)?"));
     return tokenizers;
   }
 
@@ -19,25 +19,43 @@
  */
 package org.sonar.plugins.csharp.squid.cpd;
 
+import com.google.common.collect.ImmutableSortedSet;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
 import net.sourceforge.pmd.cpd.Tokenizer;
+import net.sourceforge.pmd.cpd.Tokens;
 import org.sonar.api.batch.AbstractCpdMapping;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Project;
 import org.sonar.plugins.csharp.api.CSharp;
-
-import java.nio.charset.Charset;
+import org.sonar.plugins.csharp.squid.CSharpSquidConstants;
 
 public class CSharpCPDMapping extends AbstractCpdMapping {
 
   private final CSharp csharp;
-  private final Charset charset;
+  private final CSharpCpdLexer lexer;
+  private final CSharpTokenCache tokenCache;
+  private final boolean duplicationsDetectedBySensor;
 
   public CSharpCPDMapping(CSharp csharp, Project project, Settings settings) {
+    this(csharp, project, settings, new CSharpTokenCache());
+  }
+
+  public CSharpCPDMapping(CSharp csharp, Project project, Settings settings, CSharpTokenCache tokenCache) {
     super();
     this.csharp = csharp;
     // FIXME: deprecated
-    this.charset = project.getFileSystem().getSourceCharset();
+    CSharpConfiguration conf = new CSharpConfiguration(project.getFileSystem().getSourceCharset());
+    // The code excluded from the build is left out, as it is by the C# sensor
+    String[] symbols = settings.getStringArray(CSharpSquidConstants.PREPROCESSOR_SYMBOLS);
+    if (symbols.length > 0) {
+      conf.setPreprocessorSymbols(ImmutableSortedSet.copyOf(symbols));
+    }
+    this.lexer = new CSharpCpdLexer(conf);
+    this.tokenCache = tokenCache;
+    this.duplicationsDetectedBySensor = settings.getBoolean(CSharpSquidConstants.DETECT_DUPLICATIONS);
   }
 
   @Override
@@ -47,7 +65,16 @@ public class CSharpCPDMapping extends AbstractCpdMapping {
 
   @Override
   public Tokenizer getTokenizer() {
-    return new CSharpCPDTokenizer(charset);
+    if (duplicationsDetectedBySensor) {
+      // The duplications are saved by the C# sensor: the platform gets no tokens, and finds no duplications to save
+      return new Tokenizer() {
+        @Override
+        public void tokenize(SourceCode source, Tokens tokens) {
+          tokens.add(TokenEntry.getEOF());
+        }
+      };
+    }
+    return new CSharpCPDTokenizer(lexer, tokenCache);
   }
 
 }
@@ -19,11 +19,8 @@
  */
 package org.sonar.plugins.csharp.squid.cpd;
 
-import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpTokenType;
-import com.sonar.csharp.squid.lexer.CSharpLexer;
 import com.sonar.sslr.api.Token;
-import com.sonar.sslr.impl.Lexer;
 import net.sourceforge.pmd.cpd.SourceCode;
 import net.sourceforge.pmd.cpd.TokenEntry;
 import net.sourceforge.pmd.cpd.Tokenizer;
@@ -32,34 +29,39 @@ import net.sourceforge.pmd.cpd.Tokens;
 import java.io.File;
 import java.nio.charset.Charset;
 
-import static com.sonar.sslr.api.GenericTokenType.EOF;
-
 public class CSharpCPDTokenizer implements Tokenizer {
 
-  private final Charset charset;
+  private final CSharpCpdLexer lexer;
+  private final CSharpTokenCache tokenCache;
 
   public CSharpCPDTokenizer(Charset charset) {
-    this.charset = charset;
+    this(charset, new CSharpTokenCache());
+  }
+
+  public CSharpCPDTokenizer(Charset charset, CSharpTokenCache tokenCache) {
+    this(new CSharpCpdLexer(charset), tokenCache);
+  }
+
+  public CSharpCPDTokenizer(CSharpCpdLexer lexer, CSharpTokenCache tokenCache) {
+    this.lexer = lexer;
+    this.tokenCache = tokenCache;
   }
 
   @Override
   public final void tokenize(SourceCode source, Tokens cpdTokens) {
-    CSharpConfiguration conf = new CSharpConfiguration(charset);
-    Lexer lexer = CSharpLexer.create(conf, new IgnoreUsingDirectivePreprocessor(conf));
-
     String fileName = source.getFileName();
-    for (Token token : lexer.lex(new File(fileName))) {
-      if (token.getType() == EOF) {
-        break;
-      }
-
-      TokenEntry cpdToken = new TokenEntry(getTokenImage(token), fileName, token.getLine());
-      cpdTokens.add(cpdToken);
+    File file = new File(fileName);
+    CSharpCpdTokens tokens = tokenCache.remove(file);
+    if (tokens == null) {
+      tokens = lexer.tokenize(file, tokenCache.getImages());
+    }
+    for (int i = 0; i < tokens.size(); i++) {
+      cpdTokens.add(new TokenEntry(tokens.getImage(i), fileName, tokens.getLine(i)));
     }
     cpdTokens.add(TokenEntry.getEOF());
   }
 
-  private String getTokenImage(Token token) {
+  static String getTokenImage(Token token) {
     if (token.getType() == CSharpTokenType.STRING_LITERAL) {
       return CSharpTokenType.STRING_LITERAL.getValue();
     }
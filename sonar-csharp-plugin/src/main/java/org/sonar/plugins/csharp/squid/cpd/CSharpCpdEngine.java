@@ -0,0 +1,304 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.resources.Resource;
+import org.sonar.duplications.DuplicationPredicates;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.index.MemoryCloneIndex;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Detects the duplications between the files of the project from their CPD tokens, with the same results as the detection of
+ * the platform, which gets the tokens from the {@link CSharpCPDTokenizer} one file at a time.
+ * <p>
+ * As on the platform, the tokens of each line are concatenated, runs of identical lines are reduced to their first and last
+ * lines, and each sequence of "block size" lines is indexed by a rolling hash of the hash codes of its lines. The duplications of
+ * each file are then found by the suffix tree algorithm over the sequences of blocks of the files sharing blocks with it, and
+ * only those spanning the minimum number of tokens are kept. The lines are hashed straight from the images of the tokens, without
+ * building their text, and both the hashing and the detection are spread over several threads.
+ */
+public class CSharpCpdEngine {
+
+  private static final long PRIME_BASE = 31;
+
+  private final int blockSize;
+  private final int minimumTokens;
+  private final int threads;
+
+  public CSharpCpdEngine(int blockSize, int minimumTokens, int threads) {
+    this.blockSize = blockSize;
+    this.minimumTokens = minimumTokens;
+    this.threads = threads;
+  }
+
+  /**
+   * @param tokensByResource tokens of each file, by the key of its resource in the project
+   * @return the duplications of each file which has some, by the key of its resource
+   */
+  public Map<String, List<CloneGroup>> detect(final Map<String, CSharpCpdTokens> tokensByResource) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("C# CPD worker %d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<List<Block>>> chunks = Lists.newArrayList();
+      for (final Map.Entry<String, CSharpCpdTokens> entry : tokensByResource.entrySet()) {
+        chunks.add(executor.submit(new Callable<List<Block>>() {
+          @Override
+          public List<Block> call() {
+            return chunk(entry.getKey(), entry.getValue(), blockSize);
+          }
+        }));
+      }
+
+      // The index is filled by this thread only, before the detections start, and is then only read by the workers
+      final CloneIndex index = new MemoryCloneIndex();
+      List<List<Block>> blocksByFile = Lists.newArrayList();
+      for (Future<List<Block>> chunk : chunks) {
+        List<Block> blocks = waitFor(chunk);
+        blocksByFile.add(blocks);
+        for (Block block : blocks) {
+          index.insert(block);
+        }
+      }
+
+      List<Future<List<CloneGroup>>> detections = Lists.newArrayList();
+      for (final List<Block> blocks : blocksByFile) {
+        detections.add(executor.submit(new Callable<List<CloneGroup>>() {
+          @Override
+          public List<CloneGroup> call() {
+            return ImmutableList.copyOf(Iterables.filter(SuffixTreeCloneDetectionAlgorithm.detect(index, blocks),
+              DuplicationPredicates.numberOfUnitsNotLessThan(minimumTokens)));
+          }
+        }));
+      }
+
+      Map<String, List<CloneGroup>> result = Maps.newLinkedHashMap();
+      int i = 0;
+      for (String resourceKey : tokensByResource.keySet()) {
+        List<CloneGroup> clones = waitFor(detections.get(i));
+        if (!clones.isEmpty()) {
+          result.put(resourceKey, clones);
+        }
+        i++;
+      }
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Same blocks as the ones of the platform's PmdBlockChunker, from the same lines as the ones of its TokenizerBridge.
+   */
+  static List<Block> chunk(String resourceId, CSharpCpdTokens tokens, int blockSize) {
+    List<Line> lines = Lists.newArrayList();
+    int from = 0;
+    while (from < tokens.size()) {
+      int to = from + 1;
+      while (to < tokens.size() && tokens.getLine(to) == tokens.getLine(from)) {
+        to++;
+      }
+      lines.add(new Line(tokens, from, to));
+      from = to;
+    }
+
+    // Runs of identical lines are reduced to their first and last lines
+    List<Line> filtered = Lists.newArrayList();
+    int i = 0;
+    while (i < lines.size()) {
+      Line first = lines.get(i);
+      int j = i + 1;
+      while (j < lines.size() && lines.get(j).hasSameText(first)) {
+        j++;
+      }
+      filtered.add(first);
+      if (i < j - 1) {
+        filtered.add(lines.get(j - 1));
+      }
+      i = j;
+    }
+
+    if (filtered.size() < blockSize) {
+      return ImmutableList.of();
+    }
+    long power = 1;
+    for (int k = 0; k < blockSize - 1; k++) {
+      power *= PRIME_BASE;
+    }
+    List<Block> blocks = Lists.newArrayListWithCapacity(filtered.size() - blockSize + 1);
+    long hash = 0;
+    int first = 0;
+    int last = 0;
+    for (; last < blockSize - 1; last++) {
+      hash = hash * PRIME_BASE + filtered.get(last).hash;
+    }
+    Block.Builder blockBuilder = Block.builder().setResourceId(resourceId);
+    for (; last < filtered.size(); last++, first++) {
+      Line firstLine = filtered.get(first);
+      Line lastLine = filtered.get(last);
+      hash = hash * PRIME_BASE + lastLine.hash;
+      blocks.add(blockBuilder.setBlockHash(new ByteArray(hash))
+        .setIndexInFile(first)
+        .setLines(firstLine.getLine(), lastLine.getLine())
+        .setUnit(firstLine.from + 1, lastLine.to)
+        .build());
+      hash -= power * firstLine.hash;
+    }
+    return blocks;
+  }
+
+  /**
+   * Saves the same measures as the platform does for the duplications of a file.
+   */
+  public static void save(SensorContext context, Resource resource, List<CloneGroup> duplications) {
+    Set<Integer> duplicatedLines = Sets.newHashSet();
+    double duplicatedBlocks = 0;
+    for (CloneGroup clone : duplications) {
+      ClonePart origin = clone.getOriginPart();
+      for (ClonePart part : clone.getCloneParts()) {
+        if (part.getResourceId().equals(origin.getResourceId())) {
+          duplicatedBlocks++;
+          for (int line = part.getStartLine(); line < part.getStartLine() + part.getLines(); line++) {
+            duplicatedLines.add(line);
+          }
+        }
+      }
+    }
+
+    context.saveMeasure(resource, CoreMetrics.DUPLICATED_FILES, 1.0);
+    context.saveMeasure(resource, CoreMetrics.DUPLICATED_LINES, (double) duplicatedLines.size());
+    context.saveMeasure(resource, CoreMetrics.DUPLICATED_BLOCKS, duplicatedBlocks);
+    context.saveMeasure(resource, new Measure(CoreMetrics.DUPLICATIONS_DATA, toXml(duplications)).setPersistenceMode(PersistenceMode.DATABASE));
+  }
+
+  static String toXml(List<CloneGroup> duplications) {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<duplications>");
+    for (CloneGroup duplication : duplications) {
+      xml.append("<g>");
+      for (ClonePart part : duplication.getCloneParts()) {
+        xml.append("<b s=\"").append(part.getStartLine())
+          .append("\" l=\"").append(part.getLines())
+          .append("\" r=\"").append(StringEscapeUtils.escapeXml(part.getResourceId()))
+          .append("\"/>");
+      }
+      xml.append("</g>");
+    }
+    xml.append("</duplications>");
+    return xml.toString();
+  }
+
+  private static <T> T waitFor(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the detection of duplications to complete", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Tokens [from, to) of a line. The hash is the hash code of the concatenation of their images, computed from the hash codes
+   * of the images.
+   */
+  private static class Line {
+
+    private final CSharpCpdTokens tokens;
+    private final int from;
+    private final int to;
+    private final int hash;
+
+    Line(CSharpCpdTokens tokens, int from, int to) {
+      this.tokens = tokens;
+      this.from = from;
+      this.to = to;
+      int h = 0;
+      for (int i = from; i < to; i++) {
+        String image = tokens.getImage(i);
+        int power = 1;
+        for (int k = 0; k < image.length(); k++) {
+          power *= 31;
+        }
+        h = h * power + image.hashCode();
+      }
+      this.hash = h;
+    }
+
+    int getLine() {
+      return tokens.getLine(from);
+    }
+
+    boolean hasSameText(Line other) {
+      if (hash != other.hash) {
+        return false;
+      }
+      if (to - from == other.to - other.from) {
+        boolean sameImages = true;
+        for (int i = 0; sameImages && i < to - from; i++) {
+          sameImages = tokens.getImageId(from + i) == other.tokens.getImageId(other.from + i);
+        }
+        if (sameImages) {
+          return true;
+        }
+      }
+      // The same text may be made of other tokens
+      return text().equals(other.text());
+    }
+
+    private String text() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = from; i < to; i++) {
+        sb.append(tokens.getImage(i));
+      }
+      return sb.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.lexer.ThreadLocalLexer;
+import com.sonar.csharp.squid.lexer.preprocessors.ConditionalCompilationPreprocessor;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.LexerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.sonar.sslr.api.GenericTokenType.EOF;
+
+/**
+ * Lexes files into their CPD tokens, skipping the using directives and, when the configuration has preprocessor symbols, the
+ * code excluded by the conditional compilation directives. Files can be tokenized by several threads at the same time.
+ */
+public class CSharpCpdLexer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpCpdLexer.class);
+
+  private final ThreadLocalLexer lexer;
+
+  public CSharpCpdLexer(Charset charset) {
+    this(new CSharpConfiguration(charset));
+  }
+
+  public CSharpCpdLexer(final CSharpConfiguration conf) {
+    this.lexer = new ThreadLocalLexer(conf) {
+      @Override
+      protected Preprocessor[] createPreprocessors() {
+        if (conf.getPreprocessorSymbols() == null) {
+          return new Preprocessor[] {new IgnoreUsingDirectivePreprocessor()};
+        }
+        // Excluded using directives must not be matched, so the code is excluded first
+        return new Preprocessor[] {new ConditionalCompilationPreprocessor(conf.getPreprocessorSymbols()),
+          new IgnoreUsingDirectivePreprocessor()};
+      }
+    };
+  }
+
+  public CSharpCpdTokens tokenize(File file, CpdTokenImages images) {
+    CSharpCpdTokens cpdTokens = new CSharpCpdTokens(images);
+    for (Token token : lexer.get().lex(file)) {
+      // Directives evaluated by the conditional compilation are turned into trivia, but are kept as tokens otherwise
+      for (Trivia trivia : token.getTrivia()) {
+        if (trivia.isSkippedText() && trivia.getToken().getType() == CSharpTokenType.PREPROCESSOR) {
+          cpdTokens.add(CSharpCPDTokenizer.getTokenImage(trivia.getToken()), trivia.getToken().getLine());
+        }
+      }
+      if (token.getType() == EOF) {
+        break;
+      }
+      cpdTokens.add(CSharpCPDTokenizer.getTokenImage(token), token.getLine());
+    }
+    cpdTokens.trim();
+    return cpdTokens;
+  }
+
+  /**
+   * Tokenizes the given files with the given number of threads, and stores their tokens in the given cache. Files which cannot
+   * be lexed are left to the CPD tokenizer, which reports the error.
+   */
+  public void tokenize(Collection<File> files, int threads, final CSharpTokenCache tokenCache) {
+    final Queue<File> queue = new ConcurrentLinkedQueue<File>(files);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("C# CPD tokenizer %d")
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            File file;
+            while ((file = queue.poll()) != null) {
+              try {
+                tokenCache.put(file, tokenize(file, tokenCache.getImages()));
+              } catch (LexerException e) {
+                LOG.debug("Unable to tokenize " + file + " for CPD", e);
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the CPD tokenization to complete", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+}
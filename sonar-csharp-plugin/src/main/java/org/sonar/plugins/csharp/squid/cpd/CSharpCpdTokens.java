@@ -0,0 +1,70 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import java.util.Arrays;
+
+/**
+ * Images and lines of the tokens of one file, as they are fed to CPD, packed as pairs of the identifier of the image in the
+ * project-wide {@link CpdTokenImages} and of the line.
+ */
+public class CSharpCpdTokens {
+
+  private final CpdTokenImages images;
+  private int[] tokens = new int[512];
+  private int size;
+
+  public CSharpCpdTokens(CpdTokenImages images) {
+    this.images = images;
+  }
+
+  public void add(String image, int line) {
+    if (2 * size == tokens.length) {
+      tokens = Arrays.copyOf(tokens, tokens.length * 2);
+    }
+    tokens[2 * size] = images.intern(image);
+    tokens[2 * size + 1] = line;
+    size++;
+  }
+
+  /**
+   * Releases the unused capacity, once all the tokens have been added.
+   */
+  public void trim() {
+    tokens = Arrays.copyOf(tokens, 2 * size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getImageId(int index) {
+    return tokens[2 * index];
+  }
+
+  public String getImage(int index) {
+    return images.getImage(getImageId(index));
+  }
+
+  public int getLine(int index) {
+    return tokens[2 * index + 1];
+  }
+
+}
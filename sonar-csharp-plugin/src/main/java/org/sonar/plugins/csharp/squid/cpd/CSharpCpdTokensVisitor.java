@@ -0,0 +1,102 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.api.CSharpTokenType;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.ParseBudgetExceeded;
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import org.sonar.squidbridge.SquidAstVisitor;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the CPD tokens of each file from the tokens of its AST, ignoring the using directives just as
+ * {@link IgnoreUsingDirectivePreprocessor} does, and stores them in the {@link CSharpTokenCache}.
+ * The result is the same as the one of {@link CSharpCpdLexer} lexing the file on its own with the configuration of the scanner.
+ */
+public class CSharpCpdTokensVisitor extends SquidAstVisitor<Grammar> implements AstAndTokenVisitor {
+
+  private final CSharpTokenCache tokenCache;
+  private final List<Token> tokens = Lists.newArrayList();
+  private final Set<Token> ignoredTokens = Sets.newIdentityHashSet();
+
+  public CSharpCpdTokensVisitor(CSharpTokenCache tokenCache) {
+    this.tokenCache = tokenCache;
+  }
+
+  @Override
+  public void init() {
+    subscribeTo(CSharpGrammar.USING_DIRECTIVE);
+  }
+
+  @Override
+  public void visitFile(AstNode astNode) {
+    tokens.clear();
+    ignoredTokens.clear();
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    // The first token of the directive may already have been visited from an enclosing node
+    ignoredTokens.addAll(astNode.getTokens());
+  }
+
+  @Override
+  public void visitToken(Token token) {
+    // Preprocessor directives are turned into trivia by the parser, but are kept as tokens by the CPD tokenizer
+    for (Trivia trivia : token.getTrivia()) {
+      if (trivia.isSkippedText() && trivia.getToken().getType() == CSharpTokenType.PREPROCESSOR) {
+        tokens.add(trivia.getToken());
+      }
+    }
+
+    if (token.getType() != GenericTokenType.EOF) {
+      tokens.add(token);
+    }
+  }
+
+  @Override
+  public void leaveFile(AstNode astNode) {
+    // Files which could not be parsed, or went over the parse budget, are lexed again by the CPD tokenizer
+    if (astNode != null && !astNode.is(ParseBudgetExceeded.values())) {
+      CSharpCpdTokens cpdTokens = new CSharpCpdTokens(tokenCache.getImages());
+      for (Token token : tokens) {
+        if (!ignoredTokens.contains(token)) {
+          cpdTokens.add(CSharpCPDTokenizer.getTokenImage(token), token.getLine());
+        }
+      }
+      cpdTokens.trim();
+      tokenCache.put(getContext().getFile(), cpdTokens);
+    }
+
+    tokens.clear();
+    ignoredTokens.clear();
+  }
+
+}
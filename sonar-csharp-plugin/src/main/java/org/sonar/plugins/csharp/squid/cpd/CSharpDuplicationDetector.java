@@ -0,0 +1,105 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.FileQuery;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.plugins.csharp.api.CSharpConstants;
+import org.sonar.plugins.csharp.squid.CSharpSquidConstants;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes over the detection of duplications from the platform, to which the CPD mapping then hands no tokens. The tokens of the
+ * files come from the token cache, and the files missing from it are lexed first.
+ */
+public class CSharpDuplicationDetector {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CSharpDuplicationDetector.class);
+  // Default number of lines of the blocks of the platform's detection of duplications
+  private static final int DEFAULT_CPD_BLOCK_SIZE = 10;
+
+  private final Settings settings;
+  private final ModuleFileSystem fileSystem;
+  private final CSharpTokenCache tokenCache;
+
+  public CSharpDuplicationDetector(Settings settings, ModuleFileSystem fileSystem, CSharpTokenCache tokenCache) {
+    this.settings = settings;
+    this.fileSystem = fileSystem;
+    this.tokenCache = tokenCache;
+  }
+
+  public void detect(CSharpConfiguration conf, Project project, SensorContext context) {
+    int threads = Math.max(1, settings.getInt(CSharpSquidConstants.ANALYSIS_THREADS));
+    List<java.io.File> files = fileSystem.files(FileQuery.onSource().onLanguage(CSharpConstants.LANGUAGE_KEY)
+      .withExclusions(settings.getStringArray(CoreProperties.CPD_EXCLUSIONS)));
+
+    List<java.io.File> filesToTokenize = Lists.newArrayList();
+    for (java.io.File file : files) {
+      if (!tokenCache.contains(file)) {
+        filesToTokenize.add(file);
+      }
+    }
+    if (!filesToTokenize.isEmpty()) {
+      new CSharpCpdLexer(conf).tokenize(filesToTokenize, threads, tokenCache);
+    }
+
+    Map<String, CSharpCpdTokens> tokensByResource = Maps.newLinkedHashMap();
+    Map<String, File> sonarFiles = Maps.newHashMap();
+    for (java.io.File file : files) {
+      CSharpCpdTokens tokens = tokenCache.remove(file);
+      if (tokens != null) {
+        File sonarFile = File.fromIOFile(file, project);
+        String resourceKey = project.getKey() + ":" + sonarFile.getKey();
+        tokensByResource.put(resourceKey, tokens);
+        sonarFiles.put(resourceKey, sonarFile);
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    String languageKey = CSharpConstants.LANGUAGE_KEY;
+    int blockSize = positiveOrDefault(settings.getInt("sonar.cpd." + languageKey + ".minimumLines"), DEFAULT_CPD_BLOCK_SIZE);
+    int minimumTokens = positiveOrDefault(settings.getInt("sonar.cpd." + languageKey + ".minimumTokens"),
+      positiveOrDefault(settings.getInt(CoreProperties.CPD_MINIMUM_TOKENS_PROPERTY), CoreProperties.CPD_MINIMUM_TOKENS_DEFAULT_VALUE));
+    Map<String, List<CloneGroup>> duplications = new CSharpCpdEngine(blockSize, minimumTokens, threads).detect(tokensByResource);
+    for (Map.Entry<String, List<CloneGroup>> entry : duplications.entrySet()) {
+      CSharpCpdEngine.save(context, sonarFiles.get(entry.getKey()), entry.getValue());
+    }
+    LOG.info("Duplications detected in " + duplications.size() + " of " + tokensByResource.size() + " C# files in "
+      + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  private static int positiveOrDefault(int value, int defaultValue) {
+    return value > 0 ? value : defaultValue;
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.BatchExtension;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Keeps the CPD tokens of the files collected during the squid scan, so that the CPD tokenizer does not have to lex them again.
+ * Tokens are handed over only once, to release the memory as soon as CPD is done with a file.
+ * Once CPD has started, tokens are not stored anymore, as they would never be consumed.
+ * The images of the tokens of all the files are interned in a single table.
+ */
+public class CSharpTokenCache implements BatchExtension {
+
+  private final Map<String, CSharpCpdTokens> tokensByFile = Maps.newConcurrentMap();
+  private final CpdTokenImages images = new CpdTokenImages();
+  private volatile boolean consumed;
+
+  public CpdTokenImages getImages() {
+    return images;
+  }
+
+  public void put(File file, CSharpCpdTokens tokens) {
+    if (!consumed) {
+      tokensByFile.put(file.getAbsolutePath(), tokens);
+    }
+  }
+
+  public boolean contains(File file) {
+    return tokensByFile.containsKey(file.getAbsolutePath());
+  }
+
+  @Nullable
+  public CSharpCpdTokens remove(File file) {
+    consumed = true;
+    return tokensByFile.remove(file.getAbsolutePath());
+  }
+
+  public int size() {
+    return tokensByFile.size();
+  }
+
+}
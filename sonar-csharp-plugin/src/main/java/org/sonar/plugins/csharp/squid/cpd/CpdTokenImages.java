@@ -0,0 +1,66 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Project-wide intern table of the images of the CPD tokens, so that the tokens of the files only hold their int identifiers,
+ * and each distinct image is kept in memory once.
+ */
+public class CpdTokenImages {
+
+  private final ConcurrentMap<String, Integer> ids = Maps.newConcurrentMap();
+  private volatile String[] images = new String[1024];
+  private int size;
+
+  /**
+   * @return the identifier of the given image, allocating it on its first occurrence
+   */
+  public int intern(String image) {
+    Integer id = ids.get(image);
+    return id == null ? add(image) : id;
+  }
+
+  private synchronized int add(String image) {
+    Integer id = ids.get(image);
+    if (id != null) {
+      return id;
+    }
+    if (size == images.length) {
+      images = Arrays.copyOf(images, size * 2);
+    }
+    images[size] = image;
+    ids.put(image, size);
+    return size++;
+  }
+
+  public String getImage(int id) {
+    return images[id];
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+}
@@ -19,43 +19,111 @@
  */
 package org.sonar.plugins.csharp.squid.cpd;
 
-import com.sonar.csharp.squid.CSharpConfiguration;
 import com.sonar.csharp.squid.api.CSharpKeyword;
-import com.sonar.csharp.squid.parser.CSharpGrammar;
-import com.sonar.csharp.squid.parser.CSharpParser;
-import com.sonar.sslr.api.AstNode;
-import com.sonar.sslr.api.Grammar;
+import com.sonar.csharp.squid.api.CSharpPunctuator;
+import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.api.PreprocessorAction;
-import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.api.Trivia;
-import com.sonar.sslr.impl.Parser;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Removes the using directives, which are the same in many files, from the CPD tokens. The directives are recognized by a
+ * state machine over the tokens following each "using" keyword, which accepts the same directives as the
+ * {@link com.sonar.csharp.squid.parser.CSharpGrammar#USING_DIRECTIVE} rule: "using" [identifier "="] name ";", where the name is
+ * made of dot separated identifiers, optionally followed by type arguments, the first one being optionally qualified by an alias.
+ * Using statements, and anything else not matching, are kept.
+ */
 public class IgnoreUsingDirectivePreprocessor extends Preprocessor {
 
-  private final Parser<Grammar> parser;
-
-  public IgnoreUsingDirectivePreprocessor(CSharpConfiguration conf) {
-    this.parser = CSharpParser.create(conf);
-    this.parser.setRootRule(this.parser.getGrammar().rule(CSharpGrammar.USING_DIRECTIVE));
-  }
-
   @Override
   public PreprocessorAction process(List<Token> tokens) {
     if (tokens.get(0).getType() == CSharpKeyword.USING) {
-      try {
-        AstNode usingDirectiveNode = this.parser.parse(tokens);
-        return new PreprocessorAction(usingDirectiveNode.getToIndex(), new ArrayList<Trivia>(), new ArrayList<Token>());
-      } catch (RecognitionException re) {
-        return PreprocessorAction.NO_OPERATION;
+      int length = matchUsingDirective(tokens);
+      if (length > 0) {
+        return new PreprocessorAction(length, new ArrayList<Trivia>(), new ArrayList<Token>());
+      }
+    }
+    return PreprocessorAction.NO_OPERATION;
+  }
+
+  /**
+   * @return the number of tokens of the using directive starting the given tokens, or -1 if they do not start with one
+   */
+  static int matchUsingDirective(List<Token> tokens) {
+    int i = 1;
+    if (is(tokens, i, GenericTokenType.IDENTIFIER) && is(tokens, i + 1, CSharpPunctuator.EQUAL)) {
+      i += 2;
+    }
+    i = matchName(tokens, i);
+    return i != -1 && is(tokens, i, CSharpPunctuator.SEMICOLON) ? i + 1 : -1;
+  }
+
+  private static int matchName(List<Token> tokens, int start) {
+    int i = start;
+    if (!is(tokens, i, GenericTokenType.IDENTIFIER)) {
+      return -1;
+    }
+    i++;
+    if (is(tokens, i, CSharpPunctuator.DOUBLE_COLON)) {
+      if (!is(tokens, i + 1, GenericTokenType.IDENTIFIER)) {
+        return -1;
       }
-    } else {
-      return PreprocessorAction.NO_OPERATION;
+      i += 2;
     }
+    i = matchTypeArguments(tokens, i);
+
+    while (i != -1 && is(tokens, i, CSharpPunctuator.DOT)) {
+      if (!is(tokens, i + 1, GenericTokenType.IDENTIFIER)) {
+        return -1;
+      }
+      i = matchTypeArguments(tokens, i + 2);
+    }
+    return i;
+  }
+
+  /**
+   * Type arguments are only checked to be balanced, and to be made of the tokens types can be made of.
+   */
+  private static int matchTypeArguments(List<Token> tokens, int start) {
+    if (!is(tokens, start, CSharpPunctuator.INFERIOR)) {
+      return start;
+    }
+    int depth = 1;
+    for (int i = start + 1; i < tokens.size(); i++) {
+      TokenType type = tokens.get(i).getType();
+      if (type == CSharpPunctuator.INFERIOR) {
+        depth++;
+      } else if (type == CSharpPunctuator.SUPERIOR) {
+        depth--;
+        if (depth == 0) {
+          return i + 1;
+        }
+      } else if (!isTypeToken(type)) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isTypeToken(TokenType type) {
+    return type == GenericTokenType.IDENTIFIER
+      || type instanceof CSharpKeyword
+      || type == CSharpPunctuator.COMMA
+      || type == CSharpPunctuator.DOT
+      || type == CSharpPunctuator.DOUBLE_COLON
+      || type == CSharpPunctuator.LBRACKET
+      || type == CSharpPunctuator.RBRACKET
+      || type == CSharpPunctuator.QUESTION
+      || type == CSharpPunctuator.STAR;
+  }
+
+  private static boolean is(List<Token> tokens, int index, TokenType type) {
+    return index < tokens.size() && tokens.get(index).getType() == type;
   }
 
 }
@@ -0,0 +1,218 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid;
+
+import com.google.common.collect.Lists;
+import com.sonar.csharp.checks.CheckList;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.checks.NoSonarFilter;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.api.rules.Violation;
+import org.sonar.api.scan.filesystem.FileQuery;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.plugins.csharp.api.CSharp;
+import org.sonar.plugins.csharp.squid.cpd.CSharpTokenCache;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CSharpSquidSensorTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final File sourceDir = new File("src/test/resources/solution/Example");
+  private final List<File> files = Lists.newArrayList(FileUtils.listFiles(sourceDir, new String[] {"cs"}, true));
+
+  private final Settings settings = new Settings();
+  private final RulesProfile profile = RulesProfile.create();
+  private final Project project = mock(Project.class);
+  private ModuleFileSystem fileSystem;
+
+  // Writes to the index, which must never be made by two threads at the same time
+  private final List<String> writes = Collections.synchronizedList(Lists.<String>newArrayList());
+  private final AtomicInteger writers = new AtomicInteger();
+  private final AtomicBoolean concurrentWrites = new AtomicBoolean();
+
+  @Before
+  public void setUp() {
+    for (Class check : CheckList.getChecks()) {
+      String key = ((org.sonar.check.Rule) check.getAnnotation(org.sonar.check.Rule.class)).key();
+      profile.activateRule(org.sonar.api.rules.Rule.create(CSharpSquidConstants.REPOSITORY_KEY, key, key), RulePriority.MAJOR);
+    }
+
+    ProjectFileSystem projectFileSystem = mock(ProjectFileSystem.class);
+    when(projectFileSystem.getSourceDirs()).thenReturn(Arrays.asList(sourceDir));
+    when(project.getFileSystem()).thenReturn(projectFileSystem);
+
+    fileSystem = mock(ModuleFileSystem.class);
+    when(fileSystem.files(any(FileQuery.class))).thenReturn(files);
+    when(fileSystem.sourceCharset()).thenReturn(Charset.forName("UTF-8"));
+    when(fileSystem.baseDir()).thenReturn(sourceDir);
+
+    settings.setProperty(CoreProperties.CPD_SKIP_PROPERTY, true);
+  }
+
+  @Test
+  public void should_save_the_same_results_from_several_threads_one_at_a_time() {
+    List<String> sequentialWrites = analyse(1);
+    assertThat(sequentialWrites).isNotEmpty();
+    assertThat(sequentialWrites.toString()).contains("saveViolation").contains("ncloc_data");
+
+    assertThat(analyse(4)).isEqualTo(sequentialWrites);
+    assertThat(concurrentWrites.get()).isFalse();
+  }
+
+  @Test
+  public void should_record_the_analysis_times_whatever_the_number_of_threads() throws Exception {
+    File analysisTimes = new File(tmp.getRoot(), CSharpFileScanner.ANALYSIS_TIMES_FILE);
+    for (int threads : new int[] {1, 4}) {
+      analyse(threads);
+      assertThat(FileUtils.readLines(analysisTimes)).hasSize(files.size());
+      assertThat(analysisTimes.delete()).isTrue();
+    }
+  }
+
+  @Test
+  public void should_save_the_same_results_from_the_cache_as_from_a_scan() {
+    List<String> scannedWrites = analyse(1);
+
+    settings.setProperty(CSharpSquidConstants.ANALYSIS_CACHE_DIRECTORY, new File(tmp.getRoot(), "cache").getAbsolutePath());
+    assertThat(analyse(4)).isEqualTo(scannedWrites);
+    File analysisTimes = new File(tmp.getRoot(), CSharpFileScanner.ANALYSIS_TIMES_FILE);
+    assertThat(analysisTimes.delete()).isTrue();
+
+    assertThat(analyse(4)).isEqualTo(scannedWrites);
+    // All the files were found in the cache, so none was scanned
+    assertThat(analysisTimes.exists()).isFalse();
+    assertThat(concurrentWrites.get()).isFalse();
+  }
+
+  /**
+   * Returns the writes to the index, sorted as their order depends on the scheduling of the threads.
+   */
+  private List<String> analyse(int threads) {
+    settings.setProperty(CSharpSquidConstants.ANALYSIS_THREADS, threads);
+    when(fileSystem.workingDir()).thenReturn(tmp.getRoot());
+    writes.clear();
+
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    when(fileLinesContextFactory.createFor(any(Resource.class))).thenAnswer(new Answer<FileLinesContext>() {
+      @Override
+      public FileLinesContext answer(InvocationOnMock invocation) {
+        write(invocation);
+        return mock(FileLinesContext.class, new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) {
+            String method = invocation.getMethod().getName();
+            if ("save".equals(method)) {
+              write(invocation);
+            } else if (!"finalize".equals(method)) {
+              // Only kept in the context until it is saved
+              writes.add(describe(invocation));
+            }
+            return null;
+          }
+        });
+      }
+    });
+    SensorContext context = mock(SensorContext.class, new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        if (!"finalize".equals(invocation.getMethod().getName())) {
+          write(invocation);
+        }
+        return null;
+      }
+    });
+
+    CSharpSquidSensor sensor = new CSharpSquidSensor(settings, new CSharp(settings), fileSystem, profile, new NoSonarFilter(),
+      fileLinesContextFactory, new CSharpTokenCache());
+    sensor.analyse(project, context);
+
+    List<String> result = Lists.newArrayList(writes);
+    Collections.sort(result);
+    return result;
+  }
+
+  private void write(InvocationOnMock invocation) {
+    if (writers.incrementAndGet() > 1) {
+      concurrentWrites.set(true);
+    }
+    try {
+      // Leaves time for another thread to come in
+      Thread.sleep(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writes.add(describe(invocation));
+    writers.decrementAndGet();
+  }
+
+  private static String describe(InvocationOnMock invocation) {
+    StringBuilder sb = new StringBuilder(invocation.getMethod().getName());
+    for (Object argument : invocation.getArguments()) {
+      sb.append(' ');
+      if (argument instanceof Resource) {
+        sb.append(((Resource) argument).getKey());
+      } else if (argument instanceof Metric) {
+        sb.append(((Metric) argument).getKey());
+      } else if (argument instanceof Measure) {
+        Measure measure = (Measure) argument;
+        sb.append(measure.getMetricKey()).append('=').append(measure.getValue()).append('/').append(measure.getData());
+      } else if (argument instanceof Violation) {
+        Violation violation = (Violation) argument;
+        sb.append(violation.getResource().getKey()).append(' ').append(violation.getRule().getKey())
+          .append(':').append(violation.getLineId()).append(' ').append(violation.getMessage());
+      } else {
+        sb.append(argument);
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.collect.Sets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AbandonedParseVisitorTest {
+
+  private final File file = FileUtils.toFile(getClass().getResource("/cpd/NUnitFramework.cs"));
+
+  @Test
+  public void should_collect_files_going_over_the_time_limit() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTimeLimit(1);
+
+    Set<String> paths = Sets.newHashSet();
+    CSharpAstScanner.scanSingleFile(file, conf, new AbandonedParseVisitor(paths));
+    assertThat(paths).containsOnly(file.getAbsolutePath());
+  }
+
+  @Test
+  public void should_not_collect_files_going_over_the_token_limit() {
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTokenLimit(1);
+
+    Set<String> paths = Sets.newHashSet();
+    CSharpAstScanner.scanSingleFile(file, conf, new AbandonedParseVisitor(paths));
+    assertThat(paths).isEmpty();
+  }
+
+}
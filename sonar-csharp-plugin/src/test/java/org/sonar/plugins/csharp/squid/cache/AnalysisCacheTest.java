@@ -0,0 +1,171 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.sonar.csharp.squid.api.CSharpMetric;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AnalysisCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_replay_saved_analysis() throws Exception {
+    File directory = temp.newFolder("cache");
+
+    AnalysisCache cache = AnalysisCache.load(directory, "fingerprint");
+    assertThat(cache.get("Foo.cs", "hash")).isNull();
+    cache.put("Foo.cs", analysis("hash"));
+    cache.save();
+    assertThat(cache.getFile()).exists();
+
+    cache = AnalysisCache.load(directory, "fingerprint");
+    FileAnalysis analysis = cache.get("Foo.cs", "hash");
+    assertThat(analysis).isNotNull();
+    assertThat(analysis.getMeasure(CSharpMetric.COMPLEXITY)).isEqualTo(3.0);
+    assertThat(analysis.getMeasure(CSharpMetric.LINES)).isEqualTo(0.0);
+    assertThat(analysis.getMemberComplexities()).containsExactly(1.0, 2.0);
+    assertThat(analysis.getNoSonarLines()).isEmpty();
+    assertThat(analysis.getLineValues().get("ncloc_data")).isEqualTo(ImmutableMap.of(1, 1, 2, 0));
+    assertThat(analysis.getIssues()).hasSize(1);
+    assertThat(analysis.getIssues().get(0).getRuleKey()).isEqualTo("LineLength");
+    assertThat(analysis.getIssues().get(0).getLine()).isEqualTo(2);
+    assertThat(analysis.getIssues().get(0).getMessage()).isEqualTo("Too long");
+
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(0);
+    assertThat(cache.getTimeSaved()).isEqualTo(42);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_miss_when_content_changed() throws Exception {
+    File directory = temp.newFolder("cache");
+
+    AnalysisCache cache = AnalysisCache.load(directory, "fingerprint");
+    cache.put("Foo.cs", analysis("hash"));
+    cache.save();
+
+    cache = AnalysisCache.load(directory, "fingerprint");
+    assertThat(cache.get("Foo.cs", "otherHash")).isNull();
+    assertThat(cache.get("Bar.cs", "hash")).isNull();
+    assertThat(cache.getMisses()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_discard_entries_when_fingerprint_changed() throws Exception {
+    File directory = temp.newFolder("cache");
+
+    AnalysisCache cache = AnalysisCache.load(directory, "fingerprint");
+    cache.put("Foo.cs", analysis("hash"));
+    cache.save();
+
+    cache = AnalysisCache.load(directory, "otherFingerprint");
+    assertThat(cache.get("Foo.cs", "hash")).isNull();
+  }
+
+  @Test
+  public void should_ignore_corrupted_cache() throws Exception {
+    File directory = temp.newFolder("cache");
+    FileUtils.write(new File(directory, "csharp-analysis.cache"), "corrupted");
+
+    AnalysisCache cache = AnalysisCache.load(directory, "fingerprint");
+    assertThat(cache.get("Foo.cs", "hash")).isNull();
+  }
+
+  @Test
+  public void should_replay_file_issues_and_long_messages() throws Exception {
+    File directory = temp.newFolder("cache");
+    String stackTrace = StringUtils.repeat("at Foo.bar(Foo.java:1)\n", 5000);
+
+    AnalysisCache cache = AnalysisCache.load(directory, "fingerprint");
+    FileAnalysis saved = analysis("hash");
+    saved.addIssue("ParsingError", null, stackTrace);
+    cache.put("Foo.cs", saved);
+    cache.save();
+
+    FileAnalysis analysis = AnalysisCache.load(directory, "fingerprint").get("Foo.cs", "hash");
+    assertThat(analysis.getIssues()).hasSize(2);
+    assertThat(analysis.getIssues().get(1).getRuleKey()).isEqualTo("ParsingError");
+    assertThat(analysis.getIssues().get(1).getLine()).isNull();
+    assertThat(analysis.getIssues().get(1).getMessage()).isEqualTo(stackTrace);
+  }
+
+  @Test
+  public void should_ignore_cache_written_with_another_format() throws Exception {
+    File directory = temp.newFolder("cache");
+    DataOutputStream output = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(new File(directory, "csharp-analysis.cache"))));
+    output.writeInt(0);
+    output.close();
+
+    AnalysisCache cache = AnalysisCache.load(directory, "fingerprint");
+    assertThat(cache.get("Foo.cs", "hash")).isNull();
+  }
+
+  @Test
+  public void should_hash_file_content() throws Exception {
+    File file = temp.newFile("Foo.cs");
+    FileUtils.write(file, "class Foo {}");
+    File sameContent = temp.newFile("Bar.cs");
+    FileUtils.write(sameContent, "class Foo {}");
+
+    assertThat(AnalysisCache.hash(file)).isEqualTo(AnalysisCache.hash(sameContent));
+
+    FileUtils.write(sameContent, "class Bar {}");
+    assertThat(AnalysisCache.hash(file)).isNotEqualTo(AnalysisCache.hash(sameContent));
+  }
+
+  @Test
+  public void should_hash_to_sha1_hex() throws Exception {
+    File file = temp.newFile("Foo.cs");
+    FileUtils.write(file, "abc");
+
+    assertThat(AnalysisCache.hash(file)).isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+    assertThat(AnalysisCache.hash("abc")).isEqualTo("a9993e364706816aba3e25717850c26c9cd0d89d");
+  }
+
+  private static FileAnalysis analysis(String hash) {
+    FileAnalysis analysis = new FileAnalysis(hash);
+    analysis.setAnalysisTime(42);
+    analysis.setMeasure(CSharpMetric.COMPLEXITY, 3);
+    analysis.addMemberComplexity(1);
+    analysis.addMemberComplexity(2);
+    analysis.addNoSonarLines(null);
+    analysis.setLineValues(ImmutableMap.<String, Map<Integer, Integer>>of("ncloc_data", ImmutableMap.of(1, 1, 2, 0)));
+    analysis.addIssue("LineLength", 2, "Too long");
+    return analysis;
+  }
+
+}
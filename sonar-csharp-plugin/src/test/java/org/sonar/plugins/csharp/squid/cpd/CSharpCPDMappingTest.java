@@ -19,6 +19,10 @@
  */
 package org.sonar.plugins.csharp.squid.cpd;
 
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -28,6 +32,9 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
 import org.sonar.plugins.csharp.api.CSharp;
 import org.sonar.plugins.csharp.core.CSharpCorePlugin;
+import org.sonar.plugins.csharp.squid.CSharpSquidConstants;
+
+import java.io.File;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -61,4 +68,15 @@ public class CSharpCPDMappingTest {
     assertThat(mapping.getTokenizer()).isInstanceOf(CSharpCPDTokenizer.class);
   }
 
+  @Test
+  public void should_not_provide_tokens_when_duplications_are_detected_by_the_sensor() throws Exception {
+    settings.setProperty(CSharpSquidConstants.DETECT_DUPLICATIONS, true);
+    CSharpCPDMapping mapping = new CSharpCPDMapping(language, project, settings);
+
+    Tokens tokens = new Tokens();
+    File file = FileUtils.toFile(getClass().getResource("/cpd/simpleFile.cs"));
+    mapping.getTokenizer().tokenize(new SourceCode(new SourceCode.FileCodeLoader(file, "UTF-8")), tokens);
+    assertThat(tokens.getTokens()).containsExactly(TokenEntry.getEOF());
+  }
+
 }
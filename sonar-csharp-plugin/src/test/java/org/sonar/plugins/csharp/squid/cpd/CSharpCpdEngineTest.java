@@ -0,0 +1,135 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.resources.Resource;
+import org.sonar.duplications.DuplicationPredicates;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
+import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+import org.sonar.duplications.internal.pmd.TokenizerBridge;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class CSharpCpdEngineTest {
+
+  @Test
+  public void should_chunk_like_the_platform() {
+    TokenizerBridge bridge = new TokenizerBridge(new CSharpCPDTokenizer(Charsets.UTF_8), "UTF-8", 10);
+    CSharpCpdLexer lexer = new CSharpCpdLexer(Charsets.UTF_8);
+    for (File file : files()) {
+      List<Block> blocks = CSharpCpdEngine.chunk(file.getPath(), lexer.tokenize(file, new CpdTokenImages()), 10);
+      assertThat(blocks).as(file.getName()).isEqualTo(bridge.chunk(file.getPath(), file));
+    }
+  }
+
+  @Test
+  public void should_detect_the_duplications_of_the_platform() {
+    assertSameDuplications(10, 100);
+    assertSameDuplications(3, 20);
+  }
+
+  private static void assertSameDuplications(int blockSize, int minimumTokens) {
+    List<File> files = files();
+
+    // Platform
+    TokenizerBridge bridge = new TokenizerBridge(new CSharpCPDTokenizer(Charsets.UTF_8), "UTF-8", blockSize);
+    PackedMemoryCloneIndex index = new PackedMemoryCloneIndex();
+    Map<String, List<Block>> blocksByFile = Maps.newLinkedHashMap();
+    for (File file : files) {
+      List<Block> blocks = bridge.chunk(file.getPath(), file);
+      blocksByFile.put(file.getPath(), blocks);
+      for (Block block : blocks) {
+        index.insert(block);
+      }
+    }
+    Map<String, List<CloneGroup>> expected = Maps.newLinkedHashMap();
+    for (Map.Entry<String, List<Block>> entry : blocksByFile.entrySet()) {
+      List<CloneGroup> clones = ImmutableList.copyOf(Iterables.filter(SuffixTreeCloneDetectionAlgorithm.detect(index, entry.getValue()),
+        DuplicationPredicates.numberOfUnitsNotLessThan(minimumTokens)));
+      if (!clones.isEmpty()) {
+        expected.put(entry.getKey(), clones);
+      }
+    }
+    assertThat(expected).isNotEmpty();
+
+    // Engine
+    CSharpCpdLexer lexer = new CSharpCpdLexer(Charsets.UTF_8);
+    CpdTokenImages images = new CpdTokenImages();
+    Map<String, CSharpCpdTokens> tokensByResource = Maps.newLinkedHashMap();
+    for (File file : files) {
+      tokensByResource.put(file.getPath(), lexer.tokenize(file, images));
+    }
+    Map<String, List<CloneGroup>> actual = new CSharpCpdEngine(blockSize, minimumTokens, 3).detect(tokensByResource);
+
+    assertThat(actual.keySet()).isEqualTo(expected.keySet());
+    for (String resourceId : expected.keySet()) {
+      assertThat(CSharpCpdEngine.toXml(actual.get(resourceId))).isEqualTo(CSharpCpdEngine.toXml(expected.get(resourceId)));
+    }
+  }
+
+  @Test
+  public void should_save_measures() {
+    File file = FileUtils.toFile(CSharpCpdEngineTest.class.getResource("/cpd/duplication-cSharpExample.cs"));
+    Map<String, CSharpCpdTokens> tokensByResource = Maps.newLinkedHashMap();
+    tokensByResource.put("project:A&B", new CSharpCpdLexer(Charsets.UTF_8).tokenize(file, new CpdTokenImages()));
+    List<CloneGroup> duplications = new CSharpCpdEngine(3, 20, 1).detect(tokensByResource).get("project:A&B");
+    assertThat(duplications).isNotEmpty();
+
+    SensorContext context = mock(SensorContext.class);
+    Resource resource = mock(Resource.class);
+    CSharpCpdEngine.save(context, resource, duplications);
+
+    verify(context).saveMeasure(resource, CoreMetrics.DUPLICATED_FILES, 1.0);
+    verify(context).saveMeasure(eq(resource), eq(CoreMetrics.DUPLICATED_LINES), any(Double.class));
+    verify(context).saveMeasure(resource, CoreMetrics.DUPLICATED_BLOCKS, (double) 2 * duplications.size());
+    ArgumentCaptor<Measure> data = ArgumentCaptor.forClass(Measure.class);
+    verify(context).saveMeasure(eq(resource), data.capture());
+    assertThat(data.getValue().getData()).startsWith("<duplications><g><b s=\"").contains("r=\"project:A&amp;B\"");
+  }
+
+  private static List<File> files() {
+    File resources = FileUtils.toFile(CSharpCpdEngineTest.class.getResource("/cpd")).getParentFile();
+    List<File> files = Lists.newArrayList(FileUtils.listFiles(resources, new String[] {"cs"}, true));
+    assertThat(files.size()).isGreaterThan(10);
+    return files;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpCpdLexerTest {
+
+  private final CSharpCpdLexer lexer = new CSharpCpdLexer(Charsets.UTF_8);
+
+  @Test
+  public void should_tokenize_files_in_parallel() {
+    List<File> files = Lists.newArrayList();
+    for (String path : new String[] {"/cpd/simpleFile.cs", "/cpd/usingDirective.cs", "/cpd/only-comments.cs", "/cpd/NUnitFramework.cs",
+      "/cpd/duplication-cSharpExample.cs", "/tree/TypesAllInOneFile.cs"}) {
+      files.add(FileUtils.toFile(getClass().getResource(path)));
+    }
+
+    CSharpTokenCache tokenCache = new CSharpTokenCache();
+    lexer.tokenize(files, 3, tokenCache);
+    assertThat(tokenCache.size()).isEqualTo(files.size());
+
+    for (File file : files) {
+      CSharpCpdTokens expected = lexer.tokenize(file, new CpdTokenImages());
+      CSharpCpdTokens actual = tokenCache.remove(file);
+      assertThat(images(actual)).as(file.getName()).isEqualTo(images(expected));
+    }
+  }
+
+  @Test
+  public void should_skip_excluded_code_when_symbols_are_defined() {
+    File file = FileUtils.toFile(getClass().getResource("/cpd/conditionalCompilation.cs"));
+    List<String> allBranches = images(lexer.tokenize(file, new CpdTokenImages()));
+    assertThat(allBranches).contains("0:10", "1:12", "2:14", "}:22", "}:24");
+
+    CSharpConfiguration conf = new CSharpConfiguration(Charsets.UTF_8);
+    conf.setPreprocessorSymbols(ImmutableSet.of("DEBUG"));
+    List<String> debug = images(new CSharpCpdLexer(conf).tokenize(file, new CpdTokenImages()));
+    assertThat(debug).contains("#define TRACE:1", "#if DEBUG:2", "#endif:4", "0:10", "}:22", "#endif:25");
+    assertThat(debug).excludes("1:12", "2:14", "}:24");
+  }
+
+  private static List<String> images(CSharpCpdTokens tokens) {
+    List<String> images = Lists.newArrayList();
+    for (int i = 0; i < tokens.size(); i++) {
+      images.add(tokens.getImage(i) + ":" + tokens.getLine(i));
+    }
+    return images;
+  }
+
+}
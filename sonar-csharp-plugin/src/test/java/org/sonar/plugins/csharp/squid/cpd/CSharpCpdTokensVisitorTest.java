@@ -0,0 +1,133 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.scanner.CSharpAstScanner;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokens;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CSharpCpdTokensVisitorTest {
+
+  @Test
+  public void should_produce_same_tokens_as_lexer() {
+    for (String path : new String[] {"/cpd/simpleFile.cs", "/cpd/usingDirective.cs", "/cpd/only-comments.cs", "/cpd/NUnitFramework.cs",
+      "/tree/TypesAllInOneFile.cs"}) {
+      File file = FileUtils.toFile(getClass().getResource(path));
+
+      CSharpTokenCache tokenCache = new CSharpTokenCache();
+      CSharpAstScanner.scanSingleFile(file, new CSharpCpdTokensVisitor(tokenCache));
+      assertThat(tokenCache.size()).isEqualTo(1);
+
+      List<String> cachedTokens = tokenize(file, tokenCache);
+      assertThat(tokenCache.size()).isEqualTo(0);
+
+      assertThat(cachedTokens).as(path).isEqualTo(tokenize(file, new CSharpTokenCache()));
+    }
+  }
+
+  @Test
+  public void should_produce_same_tokens_as_lexer_with_preprocessor_symbols() {
+    File file = FileUtils.toFile(getClass().getResource("/cpd/conditionalCompilation.cs"));
+    for (String symbol : new String[] {"DEBUG", "TRACE", "OTHER"}) {
+      CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+      conf.setPreprocessorSymbols(ImmutableSet.of(symbol));
+
+      CSharpTokenCache tokenCache = new CSharpTokenCache();
+      CSharpAstScanner.scanSingleFile(file, conf, new CSharpCpdTokensVisitor(tokenCache));
+      List<String> cachedTokens = tokenize(file, tokenCache);
+
+      CSharpTokenCache lexerTokenCache = new CSharpTokenCache();
+      lexerTokenCache.put(file, new CSharpCpdLexer(conf).tokenize(file, lexerTokenCache.getImages()));
+      assertThat(cachedTokens).as(symbol).isEqualTo(tokenize(file, lexerTokenCache));
+    }
+  }
+
+  @Test
+  public void should_not_keep_tokens_once_consumed() {
+    File file = FileUtils.toFile(getClass().getResource("/cpd/simpleFile.cs"));
+
+    CSharpTokenCache tokenCache = new CSharpTokenCache();
+    assertThat(tokenCache.remove(file)).isNull();
+
+    CSharpAstScanner.scanSingleFile(file, new CSharpCpdTokensVisitor(tokenCache));
+    assertThat(tokenCache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_not_keep_tokens_of_files_over_the_parse_budget() {
+    File file = FileUtils.toFile(getClass().getResource("/cpd/usingDirective.cs"));
+    CSharpConfiguration conf = new CSharpConfiguration(Charset.forName("UTF-8"));
+    conf.setParseTokenLimit(1);
+
+    CSharpTokenCache tokenCache = new CSharpTokenCache();
+    CSharpAstScanner.scanSingleFile(file, conf, new CSharpCpdTokensVisitor(tokenCache));
+    assertThat(tokenCache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_intern_images_of_all_files() {
+    CSharpTokenCache tokenCache = new CSharpTokenCache();
+    File first = FileUtils.toFile(getClass().getResource("/cpd/simpleFile.cs"));
+    File second = FileUtils.toFile(getClass().getResource("/cpd/NUnitFramework.cs"));
+    CSharpAstScanner.scanSingleFile(first, new CSharpCpdTokensVisitor(tokenCache));
+    CSharpAstScanner.scanSingleFile(second, new CSharpCpdTokensVisitor(tokenCache));
+
+    CSharpCpdTokens firstTokens = tokenCache.remove(first);
+    CSharpCpdTokens secondTokens = tokenCache.remove(second);
+    assertThat(tokenCache.getImages().size()).isLessThan(firstTokens.size() + secondTokens.size());
+
+    // The image of "public" is kept once
+    assertThat(firstTokens.getImage(0)).isEqualTo("public");
+    int occurrences = 0;
+    for (int i = 0; i < secondTokens.size(); i++) {
+      if ("public".equals(secondTokens.getImage(i))) {
+        assertThat(secondTokens.getImageId(i)).isEqualTo(firstTokens.getImageId(0));
+        assertThat(secondTokens.getImage(i)).isSameAs(firstTokens.getImage(0));
+        occurrences++;
+      }
+    }
+    assertThat(occurrences).isGreaterThan(0);
+  }
+
+  private static List<String> tokenize(File file, CSharpTokenCache tokenCache) {
+    Tokens tokens = new Tokens();
+    new CSharpCPDTokenizer(Charset.forName("UTF-8"), tokenCache).tokenize(
+      new SourceCode(new SourceCode.FileCodeLoader(file, "UTF-8")), tokens);
+
+    List<String> result = Lists.newArrayList();
+    for (TokenEntry token : tokens.getTokens()) {
+      result.add(token.getValue() + ":" + token.getBeginLine());
+    }
+    return result;
+  }
+
+}
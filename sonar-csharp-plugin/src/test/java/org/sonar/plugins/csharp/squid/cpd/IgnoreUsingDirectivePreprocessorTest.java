@@ -0,0 +1,119 @@
+/*
+ * Sonar C# Plugin :: Core
+ * Copyright (C) 2010 Jose Chillan, Alexandre Victoor and SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.csharp.squid.cpd;
+
+import com.google.common.base.Charsets;
+import com.sonar.csharp.squid.CSharpConfiguration;
+import com.sonar.csharp.squid.api.CSharpKeyword;
+import com.sonar.csharp.squid.lexer.CSharpLexer;
+import com.sonar.csharp.squid.parser.CSharpGrammar;
+import com.sonar.csharp.squid.parser.CSharpParser;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IgnoreUsingDirectivePreprocessorTest {
+
+  private final Lexer lexer = CSharpLexer.create(new CSharpConfiguration(Charsets.UTF_8), new KeepTokensPreprocessor());
+  private final Parser<Grammar> parser = CSharpParser.create(new CSharpConfiguration(Charsets.UTF_8));
+
+  public IgnoreUsingDirectivePreprocessorTest() {
+    parser.setRootRule(parser.getGrammar().rule(CSharpGrammar.USING_DIRECTIVE));
+  }
+
+  @Test
+  public void should_match_using_directives() {
+    assertThat(match("using System;")).isEqualTo(3);
+    assertThat(match("using System.Collections.Generic; class A {}")).isEqualTo(7);
+    assertThat(match("using global::System.IO;")).isEqualTo(7);
+    assertThat(match("using Dict = System.Collections.Generic.Dictionary<int, List<string[]>>;")).isEqualTo(21);
+    assertThat(match("using Nullable = Foo<int?, global::Bar.Baz*>.Inner;")).isEqualTo(18);
+  }
+
+  @Test
+  public void should_not_match_using_statements_or_invalid_directives() {
+    assertThat(match("using (var stream = Open()) {}")).isEqualTo(-1);
+    assertThat(match("using System")).isEqualTo(-1);
+    assertThat(match("using System.;")).isEqualTo(-1);
+    assertThat(match("using A = ;")).isEqualTo(-1);
+    assertThat(match("using A<B;")).isEqualTo(-1);
+    assertThat(match("using A<(B)>;")).isEqualTo(-1);
+    assertThat(match("using ;")).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_match_like_the_using_directive_rule() {
+    String[] sources = {
+      "using System;",
+      "using System.Collections.Generic;",
+      "using global::System.IO;",
+      "using Dict = System.Collections.Generic.Dictionary<int, List<string[]>>;",
+      "using (var stream = Open()) {}",
+      "using System",
+      "using A = ;",
+      "using A<B;"};
+    for (String source : sources) {
+      assertThat(match(source)).as(source).isEqualTo(parse(lexer.lex(source)));
+    }
+
+    for (String path : new String[] {"/cpd/usingDirective.cs", "/cpd/NUnitFramework.cs", "/tree/TypesAllInOneFile.cs", "/CSharpSquidSensor.cs"}) {
+      List<Token> tokens = lexer.lex(FileUtils.toFile(getClass().getResource(path)));
+      for (int i = 0; i < tokens.size(); i++) {
+        if (tokens.get(i).getType() == CSharpKeyword.USING) {
+          List<Token> remaining = tokens.subList(i, tokens.size());
+          assertThat(IgnoreUsingDirectivePreprocessor.matchUsingDirective(remaining)).as(path + " " + i).isEqualTo(parse(remaining));
+        }
+      }
+    }
+  }
+
+  private int match(String source) {
+    return IgnoreUsingDirectivePreprocessor.matchUsingDirective(lexer.lex(source));
+  }
+
+  private int parse(List<Token> tokens) {
+    try {
+      return parser.parse(tokens).getToIndex();
+    } catch (RecognitionException e) {
+      return -1;
+    }
+  }
+
+  private static class KeepTokensPreprocessor extends Preprocessor {
+
+    @Override
+    public PreprocessorAction process(List<Token> tokens) {
+      return PreprocessorAction.NO_OPERATION;
+    }
+
+  }
+
+}
@@ -0,0 +1,25 @@
+#define TRACE
+#if DEBUG
+using System.Diagnostics;
+#endif
+using System;
+
+public class Logger
+{
+#if DEBUG
+    private int level = 0;
+#elif TRACE
+    private int level = 1;
+#else
+    private int level = 2;
+#endif
+
+    public void Log(string message)
+    {
+        Console.WriteLine(message);
+    }
+#if DEBUG
+}
+#else
+}
+#endif
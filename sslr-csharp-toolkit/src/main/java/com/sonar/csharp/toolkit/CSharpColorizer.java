@@ -20,29 +20,20 @@
 package com.sonar.csharp.toolkit;
 
 import com.google.common.collect.ImmutableList;
-import com.sonar.csharp.squid.api.CSharpKeyword;
-import org.sonar.colorizer.CDocTokenizer;
-import org.sonar.colorizer.CppDocTokenizer;
-import org.sonar.colorizer.KeywordsTokenizer;
-import org.sonar.colorizer.LiteralTokenizer;
-import org.sonar.colorizer.RegexpTokenizer;
+import com.sonar.csharp.squid.colorizer.CSharpLexerTokenizer;
 import org.sonar.colorizer.Tokenizer;
 
 import java.util.List;
 
 public final class CSharpColorizer {
 
+  private static final List<Tokenizer> TOKENIZERS = ImmutableList.<Tokenizer>of(new CSharpLexerTokenizer());
+
   private CSharpColorizer() {
   }
 
   public static List<Tokenizer> getTokenizers() {
-    return ImmutableList.of(
-        new CDocTokenizer("<span class=\"cd\">", "</span>"),
-        new CppDocTokenizer("<span class=\"cppd\">", "</span>"),
-        new KeywordsTokenizer("<span class=\"k\">", "</span>", CSharpKeyword.keywordValues()),
-        new LiteralTokenizer("<span class=\"s\">", "</span>"),
-        new RegexpTokenizer("<span class=\"j\">", "</span>", "#[^\\n\\r]*+"),
-        new RegexpTokenizer("<span class=\"c\">", "</span>", "[+-]?[0-9]++(\\.[0-9]*+)?"));
+    return TOKENIZERS;
   }
 
 }